@@ -0,0 +1,188 @@
+package model.alert;
+
+import android.os.Handler;
+import android.util.Log;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves alerts off the detection thread: {@link #dispatch(String, long, int)} only writes
+ * into a bounded lock-free ring and posts a drain to the handler, normally the main looper,
+ * where the {@link AlertSink sinks} do the slow work of vibrating, notifying and messaging.
+ * Detection latency therefore does not depend on what an alert costs.
+ * <p>
+ * Bursts are coalesced on the producer side: an alert within {@code coalesceMillis} of the
+ * previous alert of a kind is folded into it for that kind. Vibrations coalesce whatever
+ * their labels, so one whistle that the whistle and clap detectors both report gives one
+ * vibration; the other kinds only coalesce equal labels, see {@link AlertKind#isPerLabel()}.
+ * An alert whose kinds were all coalesced is not queued.
+ * When the handler falls so far behind that the ring is full, new alerts are dropped and
+ * counted.
+ * <p>
+ * Single producer: dispatch from one thread only, as the detector thread does.
+ */
+public final class AlertDispatcher {
+
+    private static final String TAG = "AlertDispatcher";
+    private static final AlertKind[] KINDS = AlertKind.values();
+
+    private final Handler handler;
+    private final long coalesceMillis;
+    private final int capacity;
+    private final String[] labels;
+    private final long[] times;
+    private final int[] kinds;
+    private final AlertSink[] sinks = new AlertSink[KINDS.length];
+
+    // producer only
+    private final long[] lastQueued = new long[KINDS.length];
+    private final String[] lastLabels = new String[KINDS.length];
+
+    private final AtomicLong writeSequence = new AtomicLong();
+    private final AtomicLong readSequence = new AtomicLong();
+    private final AtomicBoolean drainPosted = new AtomicBoolean();
+    private final Runnable drainTask = this::drain;
+
+    private volatile long coalescedCount;
+    private volatile long droppedCount;
+    private volatile long deliveredCount;
+
+    /**
+     * @param handler        thread the sinks run on
+     * @param coalesceMillis minimum time between two alerts of the same kind, and of the same
+     *                       label for kinds coalesced per label
+     * @param capacity       alerts queued at most while the handler is busy
+     */
+    public AlertDispatcher(Handler handler, long coalesceMillis, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.handler = handler;
+        this.coalesceMillis = coalesceMillis;
+        this.capacity = capacity;
+        this.labels = new String[capacity];
+        this.times = new long[capacity];
+        this.kinds = new int[capacity];
+        for (int i = 0; i < lastQueued.length; i++) {
+            lastQueued[i] = Long.MIN_VALUE / 2;
+        }
+    }
+
+    /**
+     * Sets the sink of one alert kind, or null to disable it; call before dispatching.
+     */
+    public void setSink(AlertKind kind, AlertSink sink) {
+        sinks[kind.ordinal()] = sink;
+    }
+
+    /**
+     * Queues an alert of every kind that has a sink.
+     */
+    public boolean dispatch(String label, long timeMillis) {
+        return dispatch(label, timeMillis, AlertKind.ALL);
+    }
+
+    /**
+     * Queues an alert for the kinds in {@code kindMask}, a combination of {@link AlertKind#bit()}.
+     *
+     * @param label constant describing the detection; equal labels are coalesced for every kind
+     * @return false if every kind was coalesced into an earlier alert or the queue was full
+     */
+    public boolean dispatch(String label, long timeMillis, int kindMask) {
+        int mask = 0;
+        for (int k = 0; k < KINDS.length; k++) {
+            if ((kindMask & (1 << k)) == 0 || sinks[k] == null) {
+                continue;
+            }
+            if (timeMillis - lastQueued[k] < coalesceMillis
+                    && (!KINDS[k].isPerLabel() || label.equals(lastLabels[k]))) {
+                coalescedCount++;
+                continue;
+            }
+            mask |= 1 << k;
+        }
+        if (mask == 0) {
+            return false;
+        }
+        long write = writeSequence.get();
+        if (write - readSequence.get() >= capacity) {
+            droppedCount++;
+            return false;
+        }
+        for (int k = 0; k < KINDS.length; k++) {
+            if ((mask & (1 << k)) != 0) {
+                lastQueued[k] = timeMillis;
+                lastLabels[k] = label;
+            }
+        }
+        int slot = (int) (write % capacity);
+        labels[slot] = label;
+        times[slot] = timeMillis;
+        kinds[slot] = mask;
+        writeSequence.lazySet(write + 1);
+        if (drainPosted.compareAndSet(false, true)) {
+            handler.post(drainTask);
+        }
+        return true;
+    }
+
+    /**
+     * Runs on the handler: fires the queued alerts, all of one kind before the next kind.
+     */
+    private void drain() {
+        // cleared first, so an alert queued while draining posts a new drain
+        drainPosted.set(false);
+        long read = readSequence.get();
+        long write = writeSequence.get();
+        for (int k = 0; k < KINDS.length; k++) {
+            AlertSink sink = sinks[k];
+            for (long s = read; s < write && sink != null; s++) {
+                int slot = (int) (s % capacity);
+                if ((kinds[slot] & (1 << k)) == 0) {
+                    continue;
+                }
+                try {
+                    sink.alert(labels[slot], times[slot]);
+                    deliveredCount++;
+                } catch (RuntimeException e) {
+                    Log.w(TAG, KINDS[k] + " alert failed", e);
+                }
+            }
+        }
+        for (long s = read; s < write; s++) {
+            labels[(int) (s % capacity)] = null;
+        }
+        readSequence.lazySet(write);
+    }
+
+    /**
+     * Drops queued alerts that have not been delivered yet; call on the handler thread.
+     */
+    public void cancel() {
+        handler.removeCallbacks(drainTask);
+        drainPosted.set(false);
+        readSequence.lazySet(writeSequence.get());
+    }
+
+    /**
+     * Alert kinds folded into an earlier alert of the same kind.
+     */
+    public long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    /**
+     * Alerts dropped because the queue was full.
+     */
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * Alerts handed to a sink, counted per kind.
+     */
+    public long getDeliveredCount() {
+        return deliveredCount;
+    }
+}
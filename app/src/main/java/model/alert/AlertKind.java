@@ -0,0 +1,36 @@
+package model.alert;
+
+/**
+ * Ways of telling the wearer about a detection, declared from the highest priority down:
+ * a batch of alerts fires every vibration before any notification, and every notification
+ * before any companion message.
+ */
+public enum AlertKind {
+    // one buzz per sound, even when several detectors report it
+    VIBRATION(false),
+    NOTIFICATION(true),
+    COMPANION_MESSAGE(true);
+
+    public static final int ALL = (1 << values().length) - 1;
+
+    private final boolean perLabel;
+
+    AlertKind(boolean perLabel) {
+        this.perLabel = perLabel;
+    }
+
+    /**
+     * Whether alerts of this kind are only coalesced with earlier ones of the same label;
+     * otherwise any label counts.
+     */
+    public boolean isPerLabel() {
+        return perLabel;
+    }
+
+    /**
+     * Bit of this kind in the kind masks of {@link AlertDispatcher}.
+     */
+    public int bit() {
+        return 1 << ordinal();
+    }
+}
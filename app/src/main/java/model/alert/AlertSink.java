@@ -0,0 +1,13 @@
+package model.alert;
+
+/**
+ * Delivers one kind of alert; called on the dispatcher's handler thread.
+ */
+public interface AlertSink {
+
+    /**
+     * @param label      what was detected, e.g. a detector type or a whistle pattern
+     * @param timeMillis {@link System#currentTimeMillis()} of the detection
+     */
+    void alert(String label, long timeMillis);
+}
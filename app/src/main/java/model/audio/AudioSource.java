@@ -0,0 +1,44 @@
+package model.audio;
+
+/**
+ * Source of fixed-size 16 bit mono PCM frames for the detector.
+ * <p>
+ * Frames are addressed by their sample offset into {@link #getSamples()}: the consumer calls
+ * {@link #takeFrame(long)}, reads {@link #getFrameSize()} samples at the returned offset and
+ * hands the frame back with {@link #releaseFrame()}. The live microphone and recorded files
+ * implement the same contract, so the detection path can be replayed offline.
+ */
+public interface AudioSource {
+
+    /**
+     * Returned by {@link #takeFrame(long)} once a finite source has no more frames.
+     */
+    int END_OF_STREAM = -2;
+
+    int getSampleRate();
+
+    int getFrameSize();
+
+    /**
+     * Array that the offsets returned by {@link #takeFrame(long)} point into.
+     */
+    short[] getSamples();
+
+    /**
+     * Waits up to {@code timeoutMillis} for the next frame.
+     *
+     * @return the frame offset in {@link #getSamples()}, -1 on timeout or
+     * {@link #END_OF_STREAM}
+     */
+    int takeFrame(long timeoutMillis) throws InterruptedException;
+
+    /**
+     * Returns the frame obtained from {@link #takeFrame(long)} to the source.
+     */
+    void releaseFrame();
+
+    /**
+     * Number of frames dropped because the consumer could not keep up.
+     */
+    long getOverrunCount();
+}
@@ -0,0 +1,52 @@
+package model.audio;
+
+/**
+ * Sample rate and frame size choices for the capture front-end.
+ * <p>
+ * The detectors were tuned on 1024-sample frames at 44.1 kHz, about 23 ms. At other rates
+ * frames keep roughly that duration, rounded to a power of 2 for the FFT. Rates the
+ * microphone does not offer are reached by decimating one it always offers by an integer
+ * factor.
+ */
+public final class CaptureRates {
+
+    public static final int REFERENCE_SAMPLE_RATE = 44100;
+    public static final int REFERENCE_FRAME_SIZE = 1024;
+
+    // rates every device captures natively, preferred in this order
+    private static final int[] NATIVE_RATES = {44100, 48000};
+
+    private CaptureRates() {
+    }
+
+    /**
+     * Power of 2 frame size whose duration at {@code sampleRate} is closest, on a log
+     * scale, to the reference frame: 512 at 16 or 22.05 kHz, 1024 at 44.1 or 48 kHz.
+     */
+    public static int frameSizeFor(int sampleRate) {
+        double ideal = (double) REFERENCE_FRAME_SIZE * sampleRate / REFERENCE_SAMPLE_RATE;
+        int lower = Integer.highestOneBit(Math.max(8, (int) ideal));
+        return ideal / lower > (2.0 * lower) / ideal ? 2 * lower : lower;
+    }
+
+    /**
+     * Native capture rate to decimate from to reach {@code targetRate} exactly, or 0 if
+     * none divides evenly.
+     */
+    public static int exactCaptureRate(int targetRate) {
+        for (int rate : NATIVE_RATES) {
+            if (rate >= targetRate && rate % targetRate == 0) {
+                return rate;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Largest decimation of 44.1 kHz that still reaches {@code targetRate}, for targets no
+     * native rate divides; 16 kHz gives 2, i.e. 22.05 kHz.
+     */
+    public static int fallbackFactor(int targetRate) {
+        return Math.max(1, REFERENCE_SAMPLE_RATE / targetRate);
+    }
+}
@@ -0,0 +1,61 @@
+package model.audio;
+
+import model.dsp.Decimator;
+
+/**
+ * {@link AudioSource} that low-pass filters and decimates the frames of another source by
+ * an integer factor, e.g. to replay 44.1 kHz recordings through a 22.05 kHz detection
+ * path. The wrapped source's frames must be {@code factor} times the output frame size.
+ */
+public final class DecimatingSource implements AudioSource {
+
+    private final AudioSource source;
+    private final Decimator decimator;
+    private final int frameSize;
+    private final short[] frame;
+
+    public DecimatingSource(AudioSource source, int factor) {
+        if (source.getFrameSize() % factor != 0) {
+            throw new IllegalArgumentException("source frame size not a multiple of " + factor);
+        }
+        this.source = source;
+        this.decimator = new Decimator(factor);
+        this.frameSize = source.getFrameSize() / factor;
+        this.frame = new short[frameSize];
+    }
+
+    @Override
+    public int getSampleRate() {
+        return source.getSampleRate() / decimator.getFactor();
+    }
+
+    @Override
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    @Override
+    public short[] getSamples() {
+        return frame;
+    }
+
+    @Override
+    public int takeFrame(long timeoutMillis) throws InterruptedException {
+        int offset = source.takeFrame(timeoutMillis);
+        if (offset < 0) {
+            return offset;
+        }
+        decimator.process(source.getSamples(), offset, source.getFrameSize(), frame, 0);
+        source.releaseFrame();
+        return 0;
+    }
+
+    @Override
+    public void releaseFrame() {
+    }
+
+    @Override
+    public long getOverrunCount() {
+        return source.getOverrunCount();
+    }
+}
@@ -0,0 +1,252 @@
+package model.audio;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Preallocated single-producer/single-consumer ring of fixed-size 16 bit PCM frames.
+ * <p>
+ * All frames live in one contiguous {@code short[]}; a frame is addressed by its sample
+ * offset into {@link #getSamples()}. The producer (capture thread) calls {@link #claim()},
+ * fills the returned frame and calls {@link #publish()}. The consumer (analysis thread)
+ * calls {@link #take(long)} or {@link #poll()}, reads the frame and calls {@link #release()}.
+ * <p>
+ * For batched capture the producer can claim several contiguous frames at once with
+ * {@link #claim(int)} and publish them together; the consumer is then woken once per batch.
+ * <p>
+ * When the consumer falls behind and the ring is full, {@link #claim()} hands out a spare
+ * overflow frame instead of blocking, so capture never stalls; the frame written there is
+ * dropped on publish and counted as an overrun.
+ * <p>
+ * Released frames stay in place until the producer wraps around to them, so a ring larger
+ * than the live backlog doubles as a history of the most recent audio, which
+ * {@link #copyFrames} reads without any copying on the capture path.
+ */
+public final class PcmFrameRing {
+
+    private final int frameSize;
+    private final int capacity;
+    private final int mask;
+    private final int overflowOffset;
+    private final short[] samples;
+
+    // next sequence the producer will publish / the consumer will read
+    private final AtomicLong writeSequence = new AtomicLong();
+    private final AtomicLong readSequence = new AtomicLong();
+    // end of the last claim; frames before claimSequence - capacity may be overwritten
+    private final AtomicLong claimSequence = new AtomicLong();
+    private final AtomicLong overrunCount = new AtomicLong();
+    private final AtomicLong consumerWakeups = new AtomicLong();
+
+    private boolean claimedOverflow;
+    private int claimedFrames;
+    private volatile Thread waitingConsumer;
+
+    /**
+     * @param frameSize number of samples per frame
+     * @param capacity  number of frames, rounded up to a power of 2
+     */
+    public PcmFrameRing(int frameSize, int capacity) {
+        if (frameSize <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("frameSize and capacity must be positive");
+        }
+        this.frameSize = frameSize;
+        this.capacity = Integer.bitCount(capacity) == 1 ? capacity : Integer.highestOneBit(capacity) << 1;
+        this.mask = this.capacity - 1;
+        this.overflowOffset = this.capacity * frameSize;
+        // one extra frame at the end is the overflow frame
+        this.samples = new short[(this.capacity + 1) * frameSize];
+    }
+
+    public short[] getSamples() {
+        return samples;
+    }
+
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // ---- producer side ----
+
+    /**
+     * Returns the offset of the frame to fill next. Never blocks; if the ring is full the
+     * overflow frame is returned and its contents will be dropped by {@link #publish()}.
+     */
+    public int claim() {
+        return claim(1);
+    }
+
+    /**
+     * Claims up to {@code maxFrames} contiguous free frames, fewer when the ring is nearly
+     * full or the run would wrap around; see {@link #getClaimedFrames()}. If no frame is
+     * free a single overflow frame is returned.
+     */
+    public int claim(int maxFrames) {
+        long write = writeSequence.get();
+        int free = (int) (capacity - (write - readSequence.get()));
+        if (free <= 0) {
+            claimedOverflow = true;
+            claimedFrames = 1;
+            return overflowOffset;
+        }
+        int slot = (int) (write & mask);
+        claimedOverflow = false;
+        claimedFrames = Math.min(Math.min(maxFrames, free), capacity - slot);
+        claimSequence.set(write + claimedFrames);
+        return slot * frameSize;
+    }
+
+    /**
+     * Number of frames covered by the last claim.
+     */
+    public int getClaimedFrames() {
+        return claimedFrames;
+    }
+
+    /**
+     * Makes the frame returned by the last {@link #claim()} visible to the consumer.
+     */
+    public void publish() {
+        publish(1);
+    }
+
+    /**
+     * Makes the first {@code frames} claimed frames visible to the consumer and wakes it once.
+     */
+    public void publish(int frames) {
+        if (claimedOverflow) {
+            overrunCount.addAndGet(frames);
+            return;
+        }
+        if (frames <= 0) {
+            return;
+        }
+        // a full volatile store: it must not be reordered after the read of waitingConsumer,
+        // or this side and take() can each miss the other's store and lose the wakeup
+        writeSequence.set(writeSequence.get() + Math.min(frames, claimedFrames));
+        Thread consumer = waitingConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    // ---- consumer side ----
+
+    /**
+     * Returns the offset of the oldest unread frame, or -1 if the ring is empty.
+     */
+    public int poll() {
+        long read = readSequence.get();
+        if (read >= writeSequence.get()) {
+            return -1;
+        }
+        return (int) (read & mask) * frameSize;
+    }
+
+    /**
+     * Waits up to {@code timeoutMillis} for a frame and returns its offset, or -1 on timeout.
+     */
+    public int take(long timeoutMillis) throws InterruptedException {
+        int offset = poll();
+        if (offset >= 0) {
+            return offset;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        waitingConsumer = Thread.currentThread();
+        try {
+            while ((offset = poll()) < 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return -1;
+                }
+                LockSupport.parkNanos(this, remaining);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            consumerWakeups.incrementAndGet();
+            return offset;
+        } finally {
+            waitingConsumer = null;
+        }
+    }
+
+    /**
+     * Hands the frame returned by the last {@link #poll()} / {@link #take(long)} back to the producer.
+     */
+    public void release() {
+        readSequence.lazySet(readSequence.get() + 1);
+    }
+
+    // ---- history ----
+
+    /**
+     * Sequence number of the oldest unreleased frame, i.e. the one the consumer is
+     * working on; frame {@code n} is the n-th frame ever published.
+     */
+    public long getReadSequence() {
+        return readSequence.get();
+    }
+
+    /**
+     * Copies {@code frames} published frames, starting with frame {@code fromSequence},
+     * oldest first. May be called from any thread.
+     *
+     * @return false if some of the frames are not published yet or have already been
+     * overwritten by the producer, in which case {@code destination} holds garbage
+     */
+    public boolean copyFrames(long fromSequence, int frames, short[] destination, int destinationOffset) {
+        long end = fromSequence + frames;
+        if (fromSequence < 0 || end > writeSequence.get() || !isRetained(fromSequence)) {
+            return false;
+        }
+        for (long sequence = fromSequence; sequence < end; ) {
+            int slot = (int) (sequence & mask);
+            int run = (int) Math.min(end - sequence, capacity - slot);
+            System.arraycopy(samples, slot * frameSize, destination, destinationOffset, run * frameSize);
+            destinationOffset += run * frameSize;
+            sequence += run;
+        }
+        // the producer may have lapped the copy meanwhile
+        return isRetained(fromSequence);
+    }
+
+    private boolean isRetained(long sequence) {
+        return sequence >= claimSequence.get() - capacity;
+    }
+
+    // ---- statistics ----
+
+    /**
+     * Number of frames currently waiting to be analysed.
+     */
+    public int size() {
+        return (int) (writeSequence.get() - readSequence.get());
+    }
+
+    /**
+     * Number of frames captured while the ring was full and therefore dropped.
+     */
+    public long getOverrunCount() {
+        return overrunCount.get();
+    }
+
+    /**
+     * Number of times the consumer had to wait in {@link #take(long)} and was woken by new frames.
+     */
+    public long getConsumerWakeups() {
+        return consumerWakeups.get();
+    }
+
+    /**
+     * Total number of frames published to the consumer.
+     */
+    public long getPublishedCount() {
+        return writeSequence.get();
+    }
+}
@@ -0,0 +1,184 @@
+package model.audio;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import model.journal.RotatingFiles;
+
+/**
+ * Saves the audio around a detection to a WAV file: {@code preFrames} before the trigger
+ * and {@code postFrames} after it, read straight from the history kept in the capture
+ * {@link PcmFrameRing}.
+ * <p>
+ * {@link #trigger()} only records the current ring position and wakes a background thread,
+ * so the detection thread is never delayed. That thread waits until the post-trigger audio
+ * has been captured, copies the span out of the ring into a preallocated buffer and writes
+ * it to {@code directory}. Triggers arriving while a capture is pending are ignored. The
+ * ring must hold at least {@code preFrames + postFrames} frames beyond the live backlog.
+ */
+public final class PreTriggerCapture {
+
+    public static final String FILE_PREFIX = "capture-";
+    public static final String FILE_SUFFIX = ".wav";
+
+    private static final int WAV_HEADER_SIZE = 44;
+    private static final long POLL_INTERVAL_MS = 100;
+    private static final long NONE = -1;
+
+    private final PcmFrameRing ring;
+    private final int sampleRate;
+    private final int preFrames;
+    private final int postFrames;
+    private final RotatingFiles files;
+    private final short[] pcm;
+    private final ByteBuffer wav;
+
+    // first frame after the trigger point, or NONE
+    private final AtomicLong pendingSequence = new AtomicLong(NONE);
+    private final Thread writer;
+    private volatile boolean running;
+    private volatile int savedCount;
+    private volatile int failedCount;
+    private volatile IOException lastError;
+    private volatile File lastFile;
+
+    /**
+     * @param maxFiles captures kept in {@code directory}, the oldest are deleted first
+     */
+    public PreTriggerCapture(PcmFrameRing ring, int sampleRate, int preFrames, int postFrames,
+                             File directory, int maxFiles) {
+        if (preFrames < 0 || postFrames < 0 || preFrames + postFrames == 0) {
+            throw new IllegalArgumentException("need a positive capture length");
+        }
+        if (preFrames + postFrames > ring.getCapacity()) {
+            throw new IllegalArgumentException("capture of " + (preFrames + postFrames)
+                    + " frames does not fit a ring of " + ring.getCapacity());
+        }
+        this.ring = ring;
+        this.sampleRate = sampleRate;
+        this.preFrames = preFrames;
+        this.postFrames = postFrames;
+        this.files = new RotatingFiles(directory, FILE_PREFIX, FILE_SUFFIX, maxFiles);
+        this.pcm = new short[(preFrames + postFrames) * ring.getFrameSize()];
+        this.wav = ByteBuffer.allocateDirect(WAV_HEADER_SIZE + pcm.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+        this.writer = new Thread(this::writeLoop, "PreTriggerCapture");
+        this.writer.setDaemon(true);
+    }
+
+    public void start() {
+        running = true;
+        writer.start();
+    }
+
+    public void stop() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Marks the frame the consumer is currently analysing as the trigger point. Call from
+     * the consumer thread; returns false if a capture is already pending.
+     */
+    public boolean trigger() {
+        long sequence = ring.getReadSequence() + 1;
+        if (!pendingSequence.compareAndSet(NONE, sequence)) {
+            return false;
+        }
+        LockSupport.unpark(writer);
+        return true;
+    }
+
+    private void writeLoop() {
+        while (running) {
+            long sequence = pendingSequence.get();
+            if (sequence == NONE) {
+                LockSupport.park(this);
+                continue;
+            }
+            if (ring.getPublishedCount() < sequence + postFrames) {
+                // wait for the post-trigger audio
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(POLL_INTERVAL_MS));
+                continue;
+            }
+            long from = Math.max(0, sequence - preFrames);
+            int frames = (int) (sequence + postFrames - from);
+            if (ring.copyFrames(from, frames, pcm, 0)) {
+                try {
+                    save(frames * ring.getFrameSize());
+                    savedCount++;
+                } catch (IOException e) {
+                    lastError = e;
+                    failedCount++;
+                }
+            } else {
+                // the history was overwritten, e.g. after a long stall of this thread
+                failedCount++;
+            }
+            pendingSequence.set(NONE);
+        }
+    }
+
+    private void save(int numSamples) throws IOException {
+        int dataSize = numSamples * 2;
+        wav.clear();
+        wav.put((byte) 'R').put((byte) 'I').put((byte) 'F').put((byte) 'F')
+                .putInt(36 + dataSize)
+                .put((byte) 'W').put((byte) 'A').put((byte) 'V').put((byte) 'E')
+                .put((byte) 'f').put((byte) 'm').put((byte) 't').put((byte) ' ')
+                .putInt(16)
+                .putShort((short) 1) // PCM
+                .putShort((short) 1) // mono
+                .putInt(sampleRate)
+                .putInt(sampleRate * 2)
+                .putShort((short) 2)
+                .putShort((short) 16)
+                .put((byte) 'd').put((byte) 'a').put((byte) 't').put((byte) 'a')
+                .putInt(dataSize);
+        wav.asShortBuffer().put(pcm, 0, numSamples);
+        wav.limit(WAV_HEADER_SIZE + dataSize).position(0);
+
+        File file = files.newFile(System.currentTimeMillis());
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE)) {
+            while (wav.hasRemaining()) {
+                channel.write(wav);
+            }
+        }
+        lastFile = file;
+        files.deleteOldFiles();
+    }
+
+    public int getSavedCount() {
+        return savedCount;
+    }
+
+    /**
+     * Captures lost to I/O errors or to history overwritten before it could be copied.
+     */
+    public int getFailedCount() {
+        return failedCount;
+    }
+
+    public IOException getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Most recently written capture, or null.
+     */
+    public File getLastFile() {
+        return lastFile;
+    }
+}
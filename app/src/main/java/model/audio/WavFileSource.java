@@ -0,0 +1,201 @@
+package model.audio;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * {@link AudioSource} over a 16 bit PCM WAV or headerless raw PCM file.
+ * <p>
+ * The sample data is memory-mapped and read as a little-endian {@link ShortBuffer}, so frames
+ * are delivered as fast as the consumer takes them, never waiting for real time. Only the first
+ * channel of multi-channel files is used; a trailing partial frame is dropped.
+ */
+public final class WavFileSource implements AudioSource, Closeable {
+
+    private static final int WAVE_FORMAT_PCM = 1;
+    private static final int WAVE_FORMAT_EXTENSIBLE = 0xFFFE;
+
+    private final FileChannel channel;
+    private final ShortBuffer data;
+    private final int sampleRate;
+    private final int channels;
+    private final int frameSize;
+    private final short[] frame;
+    private long framesRead;
+
+    /**
+     * Opens a RIFF/WAVE file with 16 bit PCM samples.
+     */
+    public WavFileSource(File file, int frameSize) throws IOException {
+        this(FileChannel.open(file.toPath(), StandardOpenOption.READ), frameSize, 0);
+    }
+
+    /**
+     * Opens a headerless file of 16 bit little-endian mono samples.
+     */
+    public static WavFileSource openRaw(File file, int sampleRate, int frameSize) throws IOException {
+        return new WavFileSource(FileChannel.open(file.toPath(), StandardOpenOption.READ), frameSize, sampleRate);
+    }
+
+    private WavFileSource(FileChannel channel, int frameSize, int rawSampleRate) throws IOException {
+        if (frameSize <= 0) {
+            throw new IllegalArgumentException("frameSize must be positive");
+        }
+        this.channel = channel;
+        this.frameSize = frameSize;
+        this.frame = new short[frameSize];
+        try {
+            long dataOffset;
+            long dataLength;
+            if (rawSampleRate > 0) {
+                sampleRate = rawSampleRate;
+                channels = 1;
+                dataOffset = 0;
+                dataLength = channel.size();
+            } else {
+                ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+                readFully(header, 0);
+                if (header.getInt(0) != fourCc("RIFF") || header.getInt(8) != fourCc("WAVE")) {
+                    throw new IOException("not a RIFF/WAVE file");
+                }
+                int rate = 0;
+                int numChannels = 0;
+                dataOffset = -1;
+                dataLength = 0;
+                ByteBuffer chunk = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+                long position = 12;
+                while (position + 8 <= channel.size()) {
+                    chunk.clear().limit(8);
+                    readFully(chunk, position);
+                    int id = chunk.getInt(0);
+                    long size = chunk.getInt(4) & 0xFFFFFFFFL;
+                    if (id == fourCc("fmt ")) {
+                        chunk.clear();
+                        readFully(chunk, position + 8);
+                        int format = chunk.getShort(0) & 0xFFFF;
+                        numChannels = chunk.getShort(2);
+                        rate = chunk.getInt(4);
+                        int bitsPerSample = chunk.getShort(14);
+                        if ((format != WAVE_FORMAT_PCM && format != WAVE_FORMAT_EXTENSIBLE) || bitsPerSample != 16) {
+                            throw new IOException("only 16 bit PCM is supported, got format "
+                                    + format + " with " + bitsPerSample + " bits");
+                        }
+                    } else if (id == fourCc("data")) {
+                        dataOffset = position + 8;
+                        // streaming writers may leave the size unset
+                        dataLength = Math.min(size, channel.size() - dataOffset);
+                        break;
+                    }
+                    // chunks are padded to an even length
+                    position += 8 + size + (size & 1);
+                }
+                if (rate <= 0 || numChannels <= 0 || dataOffset < 0) {
+                    throw new IOException("missing fmt or data chunk");
+                }
+                sampleRate = rate;
+                channels = numChannels;
+            }
+            if (dataLength > Integer.MAX_VALUE) {
+                throw new IOException("files over 2 GB are not supported");
+            }
+            data = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset, dataLength & ~1L)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .asShortBuffer();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("unexpected end of file");
+            }
+        }
+    }
+
+    private static int fourCc(String id) {
+        return id.charAt(0) | id.charAt(1) << 8 | id.charAt(2) << 16 | id.charAt(3) << 24;
+    }
+
+    @Override
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    @Override
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    @Override
+    public short[] getSamples() {
+        return frame;
+    }
+
+    /**
+     * Copies the next frame out of the mapped file; never waits.
+     */
+    @Override
+    public int takeFrame(long timeoutMillis) {
+        if (data.remaining() < frameSize * channels) {
+            return END_OF_STREAM;
+        }
+        if (channels == 1) {
+            data.get(frame);
+        } else {
+            int position = data.position();
+            for (int i = 0; i < frameSize; i++) {
+                frame[i] = data.get(position + i * channels);
+            }
+            data.position(position + frameSize * channels);
+        }
+        framesRead++;
+        return 0;
+    }
+
+    @Override
+    public void releaseFrame() {
+    }
+
+    @Override
+    public long getOverrunCount() {
+        return 0;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    /**
+     * Number of whole frames in the file.
+     */
+    public long getTotalFrames() {
+        return data.limit() / channels / frameSize;
+    }
+
+    public long getFramesRead() {
+        return framesRead;
+    }
+
+    /**
+     * Starts again from the first frame.
+     */
+    public void rewind() {
+        data.rewind();
+        framesRead = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -9,6 +9,34 @@ public class Constant {
             250, 500, 250, 1000, 500, 250, 500, 250, 1000, 500, 250, 500
     };
     public  static final int vibrationRepeat=-1;
+    // detection sample rate; whistles sit below 5 kHz, and 22050 halves the work, but its decimator
+    // passes fs/4..fs/2 into the analysis band, so decisions differ from 44.1 kHz on a few percent of
+    // windows. Rates the microphone lacks are decimated from 44.1 or 48 kHz
+    public static final int captureSampleRate = 44100;
+    // duty cycle while quiet: listen for listenMs, then switch the microphone off for sleepMs;
+    // sound past the energy gate keeps it on until quietMs pass. sleepMs 0 listens continuously
+    public static final int dutyCycleListenMs = 500;
+    public static final int dutyCycleSleepMs = 0;
+    public static final int dutyCycleQuietMs = 10000;
+    // audio collected per capture wakeup, added to the alert latency at most; 0 reads frame by frame
+    // (~23 ms) and keeps a wake lock, 250 wakes the capture thread about four times a second
+    public static final int captureBatchLatencyMs = 250;
+    // hot-path counters and histograms; when false the instrumentation compiles away
+    public static final boolean metricsEnabled = true;
+    // integer spectrum and whistle scoring instead of musicg's double path, for low-end cores
+    public static final boolean fixedPointDetection = false;
+    // int8 classifier over spectral features instead of musicg's whistle thresholds
+    public static final boolean classifierWhistleDetection = false;
+    // run only the silence gate here and detect on the paired phone over the Wearable Data Layer;
+    // detects on the watch while no phone answers or after the link drops, and retries the link
+    // every offloadRetryMs
+    public static final boolean offloadDetection = false;
+    public static final int offloadConnectTimeoutMs = 5000;
+    public static final int offloadRetryMs = 30000;
+    // save the audio around each detection to files/captures, for field debugging
+    public static final boolean captureOnDetection = false;
+    public static final int preTriggerMs = 3000;
+    public static final int postTriggerMs = 2000;
    // public static final String ABOUT_PREFERENCE = "about_preference";
 
     //public static final String APP_NAME = "Phone Finder";
@@ -0,0 +1,35 @@
+package model.detection;
+
+/**
+ * Clap detector with the thresholds of musicg's {@code ClapApi}.
+ */
+public class ClapEngine extends SpectralDetectionEngine {
+
+    public ClapEngine(int sampleRate, int frameSize) {
+        super(sampleRate, frameSize);
+    }
+
+    public ClapEngine(SharedSpectrum sharedSpectrum) {
+        super(sharedSpectrum);
+    }
+
+    @Override
+    protected void init() {
+        minFrequency = 1000;
+        maxFrequency = Double.MAX_VALUE;
+
+        minIntensity = 10000;
+        maxIntensity = 100000;
+
+        minStandardDeviation = 0;
+        maxStandardDeviation = 0.05F;
+
+        highPass = 100;
+        lowPass = 10000;
+
+        minNumZeroCross = 100;
+        maxNumZeroCross = 500;
+
+        numRobust = 4;
+    }
+}
@@ -0,0 +1,122 @@
+package model.detection;
+
+import java.nio.ShortBuffer;
+
+/**
+ * Whistle detector that runs a {@link QuantizedClassifier} over feature vectors instead of
+ * musicg's fixed thresholds.
+ * <p>
+ * The engine reads the newest vector of a {@link FeatureBuffer}. The pipeline extracts that
+ * vector from the same window before its detectors run, so {@link #analyze(short[], int)}
+ * does not read the samples. The classifier sees the {@link FeatureExtractor} vector plus two
+ * changes since the previous window, see {@link #buildInputs}. Those changes are 0 when the
+ * previous window did not pass the silence gate. The band and zero crossing limits are those
+ * of the {@link WhistleEngine} the engine is built with. They set the silence gate and the
+ * whistle pitch tracker.
+ */
+public final class ClassifierEngine implements SpectralStage {
+
+    // the feature vector, then the changes since the previous window
+    public static final int PEAK_CHANGE = FeatureExtractor.FEATURE_COUNT;
+    public static final int LEVEL_CHANGE = FeatureExtractor.FEATURE_COUNT + 1;
+    public static final int INPUT_COUNT = FeatureExtractor.FEATURE_COUNT + 2;
+
+    // vectors the engine needs held: the newest and its predecessor
+    public static final int HISTORY = 2;
+
+    private final FeatureBuffer features;
+    private final QuantizedClassifier classifier;
+    private final int hopSize;
+    private final SpectralDetectionEngine band;
+    private final float[] inputs = new float[INPUT_COUNT];
+    private double peakFrequency;
+
+    /**
+     * @param hopSize samples between the starts of consecutive windows
+     * @param band    whistle engine whose band and zero crossing limits are reported
+     */
+    public ClassifierEngine(FeatureBuffer features, QuantizedClassifier classifier, int hopSize,
+                            SpectralDetectionEngine band) {
+        if (classifier.getInputCount() != INPUT_COUNT) {
+            throw new IllegalArgumentException("classifier expects " + classifier.getInputCount()
+                    + " inputs, not " + INPUT_COUNT);
+        }
+        features.ensureCapacity(HISTORY);
+        this.features = features;
+        this.classifier = classifier;
+        this.hopSize = hopSize;
+        this.band = band;
+    }
+
+    /**
+     * Classifier inputs for vector {@code index} of {@code features}.
+     */
+    public static void buildInputs(FeatureBuffer features, long index, int hopSize, float[] out) {
+        float[] data = features.getData();
+        int current = features.getOffset(index);
+        System.arraycopy(data, current, out, 0, FeatureExtractor.FEATURE_COUNT);
+        out[PEAK_CHANGE] = 0;
+        out[LEVEL_CHANGE] = 0;
+        if (index > 0 && features.getEndSample(index - 1) == features.getEndSample(index) - hopSize) {
+            int previous = features.getOffset(index - 1);
+            float peak = data[current + FeatureExtractor.PEAK_FREQUENCY];
+            float previousPeak = data[previous + FeatureExtractor.PEAK_FREQUENCY];
+            if (peak > 0 && previousPeak > 0) {
+                // in semitones
+                out[PEAK_CHANGE] = (float) Math.abs(12 * Math.log(peak / previousPeak) / Math.log(2));
+            }
+            out[LEVEL_CHANGE] = data[current + FeatureExtractor.LEVEL] - data[previous + FeatureExtractor.LEVEL];
+        }
+    }
+
+    @Override
+    public int getFrameSize() {
+        return band.getFrameSize();
+    }
+
+    @Override
+    public boolean analyze(short[] samples, int offset) {
+        long count = features.getCount();
+        if (count == 0) {
+            peakFrequency = 0;
+            return false;
+        }
+        buildInputs(features, count - 1, hopSize, inputs);
+        peakFrequency = inputs[FeatureExtractor.PEAK_FREQUENCY];
+        return classifier.classify(inputs, 0);
+    }
+
+    @Override
+    public boolean analyze(ShortBuffer samples) {
+        return analyze(null, 0);
+    }
+
+    public QuantizedClassifier getClassifier() {
+        return classifier;
+    }
+
+    @Override
+    public double getPeakFrequency() {
+        return peakFrequency;
+    }
+
+    @Override
+    public int getMinNumZeroCross() {
+        return band.getMinNumZeroCross();
+    }
+
+    @Override
+    public int getMaxNumZeroCross() {
+        return band.getMaxNumZeroCross();
+    }
+
+    @Override
+    public double getMinFrequency() {
+        return band.getMinFrequency();
+    }
+
+    @Override
+    public int getLowPass() {
+        return band.getLowPass();
+    }
+}
@@ -0,0 +1,185 @@
+package model.detection;
+
+/**
+ * Streaming state machine that turns per-window whistle decisions and pitches into whistle
+ * segments and matches the finished sequence against {@link WhistlePattern} templates.
+ * <p>
+ * A segment starts at the first voiced window and ends once the pitch has been missing for
+ * longer than a short dropout; segments shorter than a blip are ignored. A sequence ends
+ * when no new segment starts within the longest gap any template allows, and is then
+ * compared with the templates in order. Memory is bounded: only the last
+ * {@link #MAX_SEGMENTS} segments of a sequence are kept, each as duration, pitch bend and
+ * preceding gap.
+ */
+public final class ContourMatcher {
+
+    static final int MAX_SEGMENTS = 8;
+    // windows without a pitch bridged inside one whistle, e.g. a breath or a gated window
+    private static final int MAX_DROPOUT_MS = 60;
+    // voiced runs shorter than this are clicks, not whistles
+    private static final int MIN_SEGMENT_MS = 80;
+    // windows averaged for the start and end pitch of a segment
+    private static final int EDGE_WINDOWS = 3;
+
+    private final double windowMillis;
+    private final int maxDropout;
+    private WhistlePattern[] patterns;
+    private int sequenceGap;
+
+    // segment in progress
+    private boolean inSegment;
+    private int segmentLength;
+    private int voicedLength;
+    private int gapBefore;
+    private double startSum;
+    private int startCount;
+    private final double[] endPitches = new double[EDGE_WINDOWS];
+    private int endCount;
+
+    // closed segments of the current sequence
+    private final double[] durationsMillis = new double[MAX_SEGMENTS];
+    private final double[] bendsCents = new double[MAX_SEGMENTS];
+    private final double[] gapsMillis = new double[MAX_SEGMENTS];
+    private int numSegments;
+    private int silentWindows;
+
+    private WhistlePattern lastPattern;
+    private long patternCount;
+
+    /**
+     * @param hopSize samples between consecutive windows passed to {@link #update}
+     */
+    public ContourMatcher(int sampleRate, int hopSize, WhistlePattern... patterns) {
+        this.windowMillis = 1000.0 * hopSize / sampleRate;
+        this.maxDropout = (int) Math.ceil(MAX_DROPOUT_MS / windowMillis);
+        setPatterns(patterns);
+    }
+
+    /**
+     * Replaces the templates; earlier ones win when several match.
+     */
+    public void setPatterns(WhistlePattern... patterns) {
+        int maxGap = 0;
+        for (WhistlePattern pattern : patterns) {
+            maxGap = Math.max(maxGap, pattern.getMaxGapMillis());
+        }
+        this.patterns = patterns.clone();
+        this.sequenceGap = (int) Math.ceil(maxGap / windowMillis);
+    }
+
+    /**
+     * Feeds one window.
+     *
+     * @param voiced whether the window holds a whistle
+     * @param pitch  its pitch in Hz, ignored when not voiced
+     * @return the pattern the sequence matched when this window ended it, otherwise null
+     */
+    public WhistlePattern update(boolean voiced, double pitch) {
+        if (voiced) {
+            if (!inSegment) {
+                startSegment();
+            }
+            segmentLength++;
+            voicedLength = segmentLength;
+            if (startCount < EDGE_WINDOWS) {
+                startSum += pitch;
+                startCount++;
+            }
+            endPitches[endCount % EDGE_WINDOWS] = pitch;
+            endCount++;
+            return null;
+        }
+        if (inSegment) {
+            segmentLength++;
+            if (segmentLength - voicedLength <= maxDropout) {
+                return null;
+            }
+            closeSegment();
+        }
+        // saturates once any sequence would have ended
+        silentWindows = Math.min(silentWindows + 1, sequenceGap + 1);
+        if (numSegments > 0 && silentWindows > sequenceGap) {
+            return endSequence();
+        }
+        return null;
+    }
+
+    private void startSegment() {
+        inSegment = true;
+        segmentLength = 0;
+        voicedLength = 0;
+        gapBefore = silentWindows;
+        startSum = 0;
+        startCount = 0;
+        endCount = 0;
+    }
+
+    private void closeSegment() {
+        inSegment = false;
+        int dropout = segmentLength - voicedLength;
+        double duration = voicedLength * windowMillis;
+        if (duration < MIN_SEGMENT_MS) {
+            // a blip counts as silence
+            silentWindows = gapBefore + segmentLength - 1;
+            return;
+        }
+        if (numSegments == MAX_SEGMENTS) {
+            System.arraycopy(durationsMillis, 1, durationsMillis, 0, MAX_SEGMENTS - 1);
+            System.arraycopy(bendsCents, 1, bendsCents, 0, MAX_SEGMENTS - 1);
+            System.arraycopy(gapsMillis, 1, gapsMillis, 0, MAX_SEGMENTS - 1);
+            numSegments--;
+        }
+        int ends = Math.min(endCount, EDGE_WINDOWS);
+        double endSum = 0;
+        for (int i = 0; i < ends; i++) {
+            endSum += endPitches[i];
+        }
+        double startPitch = startSum / startCount;
+        double endPitch = endSum / ends;
+        durationsMillis[numSegments] = duration;
+        bendsCents[numSegments] = 1200 * Math.log(endPitch / startPitch) / Math.log(2);
+        gapsMillis[numSegments] = gapBefore * windowMillis;
+        numSegments++;
+        silentWindows = dropout - 1;
+    }
+
+    private WhistlePattern endSequence() {
+        WhistlePattern matched = null;
+        for (WhistlePattern pattern : patterns) {
+            if (pattern.matches(numSegments, durationsMillis, bendsCents, gapsMillis)) {
+                matched = pattern;
+                break;
+            }
+        }
+        numSegments = 0;
+        if (matched != null) {
+            lastPattern = matched;
+            patternCount++;
+        }
+        return matched;
+    }
+
+    /**
+     * Drops any segment or sequence in progress.
+     */
+    public void reset() {
+        inSegment = false;
+        numSegments = 0;
+        silentWindows = 0;
+    }
+
+    /**
+     * Whistles closed so far in the current sequence.
+     */
+    public int getSegmentCount() {
+        return numSegments;
+    }
+
+    public WhistlePattern getLastPattern() {
+        return lastPattern;
+    }
+
+    public long getPatternCount() {
+        return patternCount;
+    }
+}
@@ -0,0 +1,109 @@
+package model.detection;
+
+import java.nio.ShortBuffer;
+
+/**
+ * Runs detection stages in order of increasing cost and stops at the first stage that
+ * rejects the frame, e.g. energy gate, then tone screen, then full spectral confirmation.
+ * <p>
+ * Each stage keeps its own thresholds; the cascade counts how many frames reached and
+ * passed every stage so the expensive stages can be seen to run only on a small
+ * fraction of the input.
+ */
+public class DetectionCascade implements DetectionEngine {
+
+    private final DetectionEngine[] stages;
+    private final long[] passCounts;
+    private final short[] bufferFrame;
+    private long frameCount;
+    private int stagesPassed;
+
+    public DetectionCascade(DetectionEngine... stages) {
+        if (stages.length == 0) {
+            throw new IllegalArgumentException("a cascade needs at least one stage");
+        }
+        for (DetectionEngine stage : stages) {
+            if (stage.getFrameSize() != stages[0].getFrameSize()) {
+                throw new IllegalArgumentException("all stages must use the same frame size");
+            }
+        }
+        this.stages = stages.clone();
+        this.passCounts = new long[stages.length];
+        this.bufferFrame = new short[stages[0].getFrameSize()];
+    }
+
+    @Override
+    public int getFrameSize() {
+        return stages[0].getFrameSize();
+    }
+
+    @Override
+    public boolean analyze(short[] samples, int offset) {
+        frameCount++;
+        for (int i = 0; i < stages.length; i++) {
+            if (!stages[i].analyze(samples, offset)) {
+                stagesPassed = i;
+                return false;
+            }
+            passCounts[i]++;
+        }
+        stagesPassed = stages.length;
+        return true;
+    }
+
+    @Override
+    public boolean analyze(ShortBuffer samples) {
+        if (samples.hasArray()) {
+            return analyze(samples.array(), samples.arrayOffset() + samples.position());
+        }
+        int position = samples.position();
+        for (int i = 0; i < bufferFrame.length; i++) {
+            bufferFrame[i] = samples.get(position + i);
+        }
+        return analyze(bufferFrame, 0);
+    }
+
+    public int getStageCount() {
+        return stages.length;
+    }
+
+    public DetectionEngine getStage(int stage) {
+        return stages[stage];
+    }
+
+    /**
+     * Number of stages the last frame passed; equal to the stage count if it was accepted.
+     */
+    public int getStagesPassed() {
+        return stagesPassed;
+    }
+
+    /**
+     * Number of frames given to the cascade.
+     */
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Number of frames accepted by {@code stage} (and therefore by every stage before it).
+     */
+    public long getPassCount(int stage) {
+        return passCounts[stage];
+    }
+
+    /**
+     * Fraction of the frames reaching {@code stage} that it accepted.
+     */
+    public double getPassRate(int stage) {
+        long reached = stage == 0 ? frameCount : passCounts[stage - 1];
+        return reached == 0 ? 0 : (double) passCounts[stage] / reached;
+    }
+
+    public void resetCounters() {
+        frameCount = 0;
+        for (int i = 0; i < passCounts.length; i++) {
+            passCounts[i] = 0;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package model.detection;
+
+import java.nio.ShortBuffer;
+
+/**
+ * Per-frame sound detector working directly on 16 bit PCM samples.
+ * <p>
+ * Implementations preallocate everything they need for a fixed frame size and must not
+ * allocate while analysing, so they can run on every captured frame without GC pressure.
+ */
+public interface DetectionEngine {
+
+    /**
+     * Number of samples expected by {@link #analyze(short[], int)}.
+     */
+    int getFrameSize();
+
+    /**
+     * Analyses {@link #getFrameSize()} samples starting at {@code offset}.
+     *
+     * @return true if the frame contains the sound this engine detects
+     */
+    boolean analyze(short[] samples, int offset);
+
+    /**
+     * Analyses {@link #getFrameSize()} samples from the buffer's current position.
+     * The position is left unchanged.
+     */
+    boolean analyze(ShortBuffer samples);
+}
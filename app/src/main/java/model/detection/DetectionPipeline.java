@@ -0,0 +1,525 @@
+package model.detection;
+
+import model.dsp.StftStream;
+import model.helper.DetectorType;
+
+/**
+ * Frame-in, event-out detection path with no Android dependencies: overlapping analysis
+ * windows, a shared silence gate, then one cascade and vote window per registered detector.
+ * {@code DetectorThread} feeds it live microphone frames; the offline replay tools feed it
+ * recorded files.
+ * <p>
+ * All detectors see the same window, and their spectral engines share one
+ * {@link SharedSpectrum}, so the FFT runs at most once per window however many detectors
+ * are registered. With the fixed-point path the engines are {@link FixedPointEngine}s
+ * sharing one {@link FixedSpectrum} instead.
+ * <p>
+ * The first whistle detector also drives a {@link PitchTracker} and a {@link ContourMatcher},
+ * which recognise whistle signals such as one long or two short whistles. The tracker
+ * transforms the windows that detector accepts once more, into a real spectrum.
+ */
+public final class DetectionPipeline {
+
+    /**
+     * Receives every analysis window decision, e.g. for a decision log.
+     */
+    public interface WindowListener {
+        /**
+         * @param samples   array holding the window
+         * @param offset    window start in {@code samples}
+         * @param endSample stream position just past the window, in samples
+         * @param detected  whether any detector accepted this window
+         * @param event     whether any detector confirmed an event with this window
+         */
+        void onWindow(short[] samples, int offset, long endSample, boolean detected, boolean event);
+    }
+
+    /**
+     * Receives the whistle patterns recognised by the contour matcher.
+     */
+    public interface PatternListener {
+        /**
+         * @param endSample stream position at which the sequence was complete, in samples
+         */
+        void onPattern(WhistlePattern pattern, long endSample);
+    }
+
+    // frames must be 6 dB above the background, and never below this mean level
+    private static final double NOISE_FLOOR_FACTOR = 2.0;
+    private static final int MIN_MEAN_ABS = 40;
+    // screened tone must be 12 dB above its own bin's background
+    private static final double MIN_TONE_SNR = 16.0;
+    // after an event ends, ignore new ones for this long so the vibrator isn't retriggered
+    private static final int EVENT_COOLDOWN_MS = 1000;
+    // frames' worth of audio that must all vote positive for a sustained sound: 3 windows
+    // without overlap, 5 at 50% overlap
+    private static final int CHECK_FRAMES = 3;
+    // a clap lasts a single window, whatever the hop
+    private static final int CLAP_CHECK_LENGTH = 1;
+
+    private final StftStream stft;
+    private final EnergyGate energyGate;
+    // one-stage cascade around the gate, for its counters
+    private final DetectionCascade gate;
+    private final SharedSpectrum sharedSpectrum;
+    // null unless the fixed-point path is used
+    private final FixedSpectrum fixedSpectrum;
+    private final DetectorType[] types;
+    private final DetectionCascade[] cascades;
+    private final VoteWindow[] voteWindows;
+    private final SpectralStage[] spectralEngines;
+    private final int[] spectralStages;
+    // index of the detector whose decisions feed the contour, or -1
+    private final int contourDetector;
+    private final PitchTracker pitchTracker;
+    private final ContourMatcher contourMatcher;
+    private final int frameSize;
+    // null unless enableFeatures was called or a classifier detector needs them
+    private FeatureExtractor featureExtractor;
+    private FeatureBuffer features;
+    private boolean lastWindowFeatures;
+    private long positiveWindows;
+    private boolean lastWindowDetected;
+    // windows starting before this stream position hold skipped frames and bypass the gate
+    private long skippedEnd;
+    private double skippedLevel;
+    private short[] skippedFrame;
+    private WindowListener windowListener;
+    private PatternListener patternListener;
+
+    private DetectionPipeline(EnergyGate energyGate, SharedSpectrum sharedSpectrum, FixedSpectrum fixedSpectrum,
+                              FeatureBuffer features, int hopSize, DetectorType[] types, DetectionCascade[] cascades,
+                              VoteWindow[] voteWindows) {
+        this.energyGate = energyGate;
+        this.gate = new DetectionCascade(energyGate);
+        this.sharedSpectrum = sharedSpectrum;
+        this.fixedSpectrum = fixedSpectrum;
+        if (features != null) {
+            this.featureExtractor = new FeatureExtractor(sharedSpectrum);
+            this.features = features;
+        }
+        this.frameSize = energyGate.getFrameSize();
+        this.stft = new StftStream(frameSize, hopSize);
+        this.types = types;
+        this.cascades = cascades;
+        this.voteWindows = voteWindows;
+        // the stage of each detector whose spectral peak is worth reporting
+        this.spectralEngines = new SpectralStage[cascades.length];
+        this.spectralStages = new int[cascades.length];
+        for (int d = 0; d < cascades.length; d++) {
+            for (int i = 0; i < cascades[d].getStageCount(); i++) {
+                if (cascades[d].getStage(i) instanceof SpectralStage) {
+                    spectralEngines[d] = (SpectralStage) cascades[d].getStage(i);
+                    spectralStages[d] = i;
+                    break;
+                }
+            }
+        }
+        int contour = -1;
+        for (int d = 0; d < types.length && contour < 0; d++) {
+            if (types[d] != DetectorType.CLAP && spectralEngines[d] != null) {
+                contour = d;
+            }
+        }
+        this.contourDetector = contour;
+        if (contour >= 0) {
+            // the tracker computes its own real spectrum, of voiced windows only
+            SpectralStage engine = spectralEngines[contour];
+            this.pitchTracker = new PitchTracker(sharedSpectrum.getSampleRate(), sharedSpectrum.getFrameSize(),
+                    engine.getMinFrequency(), engine.getLowPass());
+            this.contourMatcher = new ContourMatcher(sharedSpectrum.getSampleRate(), hopSize, WhistlePattern.defaults());
+        } else {
+            this.pitchTracker = null;
+            this.contourMatcher = null;
+        }
+    }
+
+    /**
+     * Builds the detection path used on the watch for a single detector.
+     *
+     * @param hopSize samples between the starts of consecutive analysis windows;
+     *                half the frame size gives 50% overlap, the frame size none
+     */
+    public static DetectionPipeline create(DetectorType type, int sampleRate, int frameSize, int hopSize) {
+        return create(sampleRate, frameSize, hopSize, false, type);
+    }
+
+    /**
+     * Builds the floating-point detection path for several detectors sharing one capture stream.
+     */
+    public static DetectionPipeline create(int sampleRate, int frameSize, int hopSize, DetectorType... types) {
+        return create(sampleRate, frameSize, hopSize, false, types);
+    }
+
+    /**
+     * Builds the detection path for several detectors sharing one capture stream. The
+     * detector thresholds follow the sample rate and frame size, see
+     * {@link SpectralDetectionEngine#rescaleThresholds()}.
+     *
+     * @param fixedPoint run the spectral checks in integer arithmetic, see {@link FixedPointEngine}
+     * @throws IllegalArgumentException for {@link DetectorType#WHISTLE_CLASSIFIER} at a sample
+     *                                  rate or frame size its model was not trained at
+     */
+    public static DetectionPipeline create(int sampleRate, int frameSize, int hopSize, boolean fixedPoint,
+                                           DetectorType... types) {
+        if (types.length == 0 || types.length > 32) {
+            throw new IllegalArgumentException("need 1 to 32 detectors");
+        }
+        SharedSpectrum sharedSpectrum = new SharedSpectrum(sampleRate, frameSize);
+        FixedSpectrum fixedSpectrum = fixedPoint ? new FixedSpectrum(sampleRate, frameSize) : null;
+        FeatureBuffer features = null;
+        DetectionCascade[] cascades = new DetectionCascade[types.length];
+        VoteWindow[] voteWindows = new VoteWindow[types.length];
+        int minNumZeroCross = Integer.MAX_VALUE;
+        int maxNumZeroCross = 0;
+        for (int d = 0; d < types.length; d++) {
+            SpectralDetectionEngine engine;
+            // keep the voting span at the same duration of audio whatever the hop
+            int checkLength = (CHECK_FRAMES - 1) * frameSize / hopSize + 1;
+            switch (types[d]) {
+                case CLAP:
+                    engine = new ClapEngine(sharedSpectrum);
+                    checkLength = CLAP_CHECK_LENGTH;
+                    break;
+                case WHISTLE_CLASSIFIER:
+                    // the whistle engine only lends its band and zero crossing limits
+                    engine = new WhistleEngine(sharedSpectrum);
+                    if (features == null) {
+                        features = new FeatureBuffer(ClassifierEngine.HISTORY);
+                    }
+                    break;
+                case WHISTLE_LOW_POWER:
+                case WHISTLE:
+                default:
+                    engine = new WhistleEngine(sharedSpectrum);
+                    break;
+            }
+            engine.rescaleThresholds();
+            DetectionEngine spectralStage;
+            if (types[d] == DetectorType.WHISTLE_CLASSIFIER) {
+                // integer arithmetic already, on either path
+                QuantizedClassifier classifier = WhistleClassifierModel.create();
+                if (!classifier.matches(sampleRate, frameSize)) {
+                    throw new IllegalArgumentException("whistle classifier was trained at "
+                            + classifier.getSampleRate() + " Hz, frame " + classifier.getFrameSize() + ", not "
+                            + sampleRate + " Hz, frame " + frameSize);
+                }
+                spectralStage = new ClassifierEngine(features, classifier, hopSize, engine);
+            } else {
+                spectralStage = fixedPoint ? new FixedPointEngine(fixedSpectrum, engine) : engine;
+            }
+            if (types[d] == DetectorType.WHISTLE_LOW_POWER) {
+                cascades[d] = new DetectionCascade(
+                        new ToneScreen(sampleRate, frameSize).setWhitening(MIN_TONE_SNR),
+                        spectralStage);
+            } else if (types[d] == DetectorType.WHISTLE && !fixedPoint) {
+                // whitens the spectrum the engine reads anyway; the fixed-point path has no
+                // float spectrum to whiten and keeps musicg's thresholds alone
+                cascades[d] = new DetectionCascade(
+                        new WhitenedPeakScreen(sharedSpectrum, engine.getMinFrequency(), MIN_TONE_SNR),
+                        spectralStage);
+            } else {
+                cascades[d] = new DetectionCascade(spectralStage);
+            }
+            minNumZeroCross = Math.min(minNumZeroCross, engine.getMinNumZeroCross());
+            maxNumZeroCross = Math.max(maxNumZeroCross, engine.getMaxNumZeroCross());
+            int cooldownVotes = (int) ((long) EVENT_COOLDOWN_MS * sampleRate / 1000 / hopSize);
+            voteWindows[d] = new VoteWindow(checkLength, checkLength, 0, cooldownVotes);
+        }
+        return new DetectionPipeline(createGate(frameSize, minNumZeroCross, maxNumZeroCross), sharedSpectrum,
+                fixedSpectrum, features, hopSize, types.clone(), cascades, voteWindows);
+    }
+
+    /**
+     * The silence gate a pipeline for {@code types} starts with, on its own; the offload
+     * client runs just this on the watch.
+     */
+    public static EnergyGate createGate(int sampleRate, int frameSize, DetectorType... types) {
+        SharedSpectrum spectrum = new SharedSpectrum(sampleRate, frameSize);
+        int minNumZeroCross = Integer.MAX_VALUE;
+        int maxNumZeroCross = 0;
+        for (DetectorType type : types) {
+            SpectralDetectionEngine engine = type == DetectorType.CLAP
+                    ? new ClapEngine(spectrum) : new WhistleEngine(spectrum);
+            engine.rescaleThresholds();
+            minNumZeroCross = Math.min(minNumZeroCross, engine.getMinNumZeroCross());
+            maxNumZeroCross = Math.max(maxNumZeroCross, engine.getMaxNumZeroCross());
+        }
+        return createGate(frameSize, minNumZeroCross, maxNumZeroCross);
+    }
+
+    private static EnergyGate createGate(int frameSize, int minNumZeroCross, int maxNumZeroCross) {
+        // windows no detector could accept are dropped by the gate already
+        return new EnergyGate(frameSize)
+                .setMinMeanAbs(MIN_MEAN_ABS)
+                .setAdaptiveFloor(NOISE_FLOOR_FACTOR)
+                .setZeroCrossRange(minNumZeroCross, maxNumZeroCross);
+    }
+
+    public DetectionPipeline setWindowListener(WindowListener windowListener) {
+        this.windowListener = windowListener;
+        return this;
+    }
+
+    public DetectionPipeline setPatternListener(PatternListener patternListener) {
+        this.patternListener = patternListener;
+        return this;
+    }
+
+    /**
+     * Extracts a {@link FeatureExtractor} vector from every window that passes the silence
+     * gate, before the detectors run, into a pool of the last {@code capacity} vectors; see
+     * {@link #getFeatures()}. The detectors reuse the spectrum this computes. A
+     * {@link DetectorType#WHISTLE_CLASSIFIER} detector turns this on by itself; the pool
+     * then grows to {@code capacity}.
+     */
+    public DetectionPipeline enableFeatures(int capacity) {
+        if (features == null) {
+            this.featureExtractor = new FeatureExtractor(sharedSpectrum);
+            this.features = new FeatureBuffer(capacity);
+        } else {
+            features.ensureCapacity(capacity);
+        }
+        return this;
+    }
+
+    /**
+     * Slides the analysis window over one frame, one hop at a time.
+     *
+     * @return bit {@code d} set for every detector {@code d} that confirmed an event within
+     * this frame, see {@link #getType(int)}
+     */
+    public int process(short[] samples, int offset) {
+        int events = 0;
+        int consumed = 0;
+        while (consumed < frameSize) {
+            consumed += stft.write(samples, offset + consumed, frameSize - consumed);
+            if (stft.isWindowReady()) {
+                short[] window = stft.getSamples();
+                int windowOffset = stft.getWindowOffset();
+                int windowEvents = analyzeWindow(window, windowOffset);
+                events |= windowEvents;
+                if (windowListener != null) {
+                    windowListener.onWindow(window, windowOffset, stft.getTotalSamples(),
+                            lastWindowDetected, windowEvents != 0);
+                }
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Advances the stream by one frame known only by its level, such as silence the offload
+     * client left out. Every window holding part of it is rejected without reaching the
+     * silence gate, so votes, cooldowns and pattern gaps move on, and the gate's noise floor
+     * is fed {@code level} for it instead of the level of a placeholder.
+     *
+     * @param level mean absolute amplitude of the frame, NaN to leave the floor alone
+     * @return as {@link #process(short[], int)}
+     */
+    public int skipFrame(double level) {
+        if (skippedFrame == null) {
+            skippedFrame = new short[frameSize];
+        }
+        skippedEnd = stft.getTotalSamples() + frameSize;
+        skippedLevel = level;
+        return process(skippedFrame, 0);
+    }
+
+    private int analyzeWindow(short[] window, int offset) {
+        boolean skipped = stft.getTotalSamples() - stft.getWindowSize() < skippedEnd;
+        if (skipped) {
+            energyGate.updateNoiseFloor(skippedLevel);
+        }
+        boolean passedGate = !skipped && gate.analyze(window, offset);
+        sharedSpectrum.invalidate();
+        if (fixedSpectrum != null) {
+            fixedSpectrum.invalidate();
+        }
+        lastWindowFeatures = passedGate && features != null;
+        if (lastWindowFeatures) {
+            featureExtractor.extract(window, offset, features.getData(), features.add(stft.getTotalSamples()));
+        }
+        int events = 0;
+        boolean detected = false;
+        for (int d = 0; d < cascades.length; d++) {
+            boolean accepted = passedGate && cascades[d].analyze(window, offset);
+            detected |= accepted;
+            // fires once per confirmed event, however long the sound lasts
+            if (voteWindows[d].vote(accepted)) {
+                events |= 1 << d;
+            }
+            if (d == contourDetector) {
+                trackContour(window, offset, accepted);
+            }
+        }
+        if (detected) {
+            positiveWindows++;
+        }
+        lastWindowDetected = detected;
+        return events;
+    }
+
+    private void trackContour(short[] window, int offset, boolean voiced) {
+        double pitch = 0;
+        if (voiced) {
+            pitch = pitchTracker.track(window, offset);
+        } else {
+            pitchTracker.reset();
+        }
+        WhistlePattern pattern = contourMatcher.update(voiced, pitch);
+        if (pattern != null && patternListener != null) {
+            patternListener.onPattern(pattern, stft.getTotalSamples());
+        }
+    }
+
+    /**
+     * Clears the analysis window, vote and contour state, e.g. before a new stream.
+     */
+    public void reset() {
+        stft.reset();
+        skippedEnd = 0;
+        if (features != null) {
+            features.clear();
+        }
+        lastWindowFeatures = false;
+        for (VoteWindow voteWindow : voteWindows) {
+            voteWindow.reset();
+        }
+        if (contourMatcher != null) {
+            pitchTracker.reset();
+            contourMatcher.reset();
+        }
+    }
+
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    public int getDetectorCount() {
+        return types.length;
+    }
+
+    public DetectorType getType(int detector) {
+        return types[detector];
+    }
+
+    /**
+     * Stages run after the shared gate for {@code detector}.
+     */
+    public DetectionCascade getCascade(int detector) {
+        return cascades[detector];
+    }
+
+    public VoteWindow getVoteWindow(int detector) {
+        return voteWindows[detector];
+    }
+
+    /**
+     * Whistle pattern matcher, or null when no whistle detector is registered.
+     */
+    public ContourMatcher getContourMatcher() {
+        return contourMatcher;
+    }
+
+    public PitchTracker getPitchTracker() {
+        return pitchTracker;
+    }
+
+    /**
+     * The shared silence gate with its frame and pass counters.
+     */
+    public DetectionCascade getGate() {
+        return gate;
+    }
+
+    /**
+     * Windows accepted by at least one detector.
+     */
+    public long getPositiveWindowCount() {
+        return positiveWindows;
+    }
+
+    /**
+     * Events confirmed by all detectors since the last {@link #reset()}.
+     */
+    public long getEventCount() {
+        long events = 0;
+        for (VoteWindow voteWindow : voteWindows) {
+            events += voteWindow.getEventCount();
+        }
+        return events;
+    }
+
+    /**
+     * Highest vote score among the detectors after the last window.
+     */
+    public int getVoteScore() {
+        int score = 0;
+        for (VoteWindow voteWindow : voteWindows) {
+            score = Math.max(score, voteWindow.getScore());
+        }
+        return score;
+    }
+
+    /**
+     * Stages the last window passed: 0 if the gate rejected it, otherwise 1 plus the most
+     * stages any detector's cascade passed.
+     */
+    public int getStagesPassed() {
+        if (gate.getStagesPassed() == 0) {
+            return 0;
+        }
+        int stages = 0;
+        for (DetectionCascade cascade : cascades) {
+            stages = Math.max(stages, cascade.getStagesPassed());
+        }
+        return 1 + stages;
+    }
+
+    /**
+     * Mean absolute sample value of the last window.
+     */
+    public double getEnergy() {
+        return energyGate.getMeanAbs();
+    }
+
+    /**
+     * Spectral peak of the last window in Hz from the first detector whose spectral stage
+     * ran on it, or 0.
+     */
+    public double getPeakFrequency() {
+        if (gate.getStagesPassed() == 0) {
+            return 0;
+        }
+        for (int d = 0; d < cascades.length; d++) {
+            if (spectralEngines[d] != null && cascades[d].getStagesPassed() >= spectralStages[d]
+                    && spectralEngines[d].getPeakFrequency() > 0) {
+                return spectralEngines[d].getPeakFrequency();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Feature vectors of the recent windows that passed the gate, or null unless
+     * {@link #enableFeatures(int)} was called.
+     */
+    public FeatureBuffer getFeatures() {
+        return features;
+    }
+
+    /**
+     * Whether the last window has a vector, the newest in {@link #getFeatures()}.
+     */
+    public boolean hasWindowFeatures() {
+        return lastWindowFeatures;
+    }
+
+    /**
+     * Samples consumed since the last {@link #reset()}.
+     */
+    public long getTotalSamples() {
+        return stft.getTotalSamples();
+    }
+}
@@ -0,0 +1,145 @@
+package model.detection;
+
+import java.nio.ShortBuffer;
+
+import model.dsp.NoiseFloorTracker;
+
+/**
+ * First cascade stage: rejects silent frames and frames whose zero crossing count
+ * is outside the range any target sound can have. Costs one pass over the samples.
+ * <p>
+ * With {@link #setAdaptiveFloor(double)} the silence level follows the background: a frame
+ * must be {@code factor} times louder than the tracked noise floor, and never quieter
+ * than {@link #setMinMeanAbs(int)}. Quiet rooms then let faint whistles through while
+ * noisy rooms stop constant full analysis.
+ */
+public class EnergyGate implements DetectionEngine {
+
+    /**
+     * Mean absolute amplitude below which a frame counts as silence; the same level as
+     * the original {@code averageAbsValue < 30} check, which divided by four times the frame size.
+     */
+    public static final int DEFAULT_MIN_MEAN_ABS = 120;
+
+    // floor follows quieter frames within a few frames and louder ones over ~10 s
+    private static final double DEFAULT_FLOOR_RISE_RATE = 0.002;
+    private static final double DEFAULT_FLOOR_FALL_RATE = 0.2;
+
+    private final int frameSize;
+    private int minMeanAbs = DEFAULT_MIN_MEAN_ABS;
+    private int minNumZeroCross = 0;
+    private int maxNumZeroCross = Integer.MAX_VALUE;
+    private NoiseFloorTracker noiseFloor;
+    private double floorFactor;
+
+    private int meanAbs;
+    private int numZeroCross;
+
+    public EnergyGate(int frameSize) {
+        this.frameSize = frameSize;
+    }
+
+    public EnergyGate setMinMeanAbs(int minMeanAbs) {
+        this.minMeanAbs = minMeanAbs;
+        return this;
+    }
+
+    /**
+     * Requires frames to be {@code factor} times above the tracked background level.
+     */
+    public EnergyGate setAdaptiveFloor(double factor) {
+        this.noiseFloor = new NoiseFloorTracker(1, DEFAULT_FLOOR_RISE_RATE, DEFAULT_FLOOR_FALL_RATE);
+        this.floorFactor = factor;
+        return this;
+    }
+
+    public EnergyGate setZeroCrossRange(int minNumZeroCross, int maxNumZeroCross) {
+        this.minNumZeroCross = minNumZeroCross;
+        this.maxNumZeroCross = maxNumZeroCross;
+        return this;
+    }
+
+    @Override
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    @Override
+    public boolean analyze(short[] samples, int offset) {
+        int totalAbsValue = 0;
+        int crossings = 0;
+        int end = offset + frameSize;
+        boolean wasNegative = samples[offset] < 0;
+        for (int i = offset; i < end; i++) {
+            short sample = samples[i];
+            totalAbsValue += Math.abs(sample);
+            boolean isNegative = sample < 0;
+            if (isNegative != wasNegative) {
+                crossings++;
+            }
+            wasNegative = isNegative;
+        }
+        return decide(totalAbsValue, crossings);
+    }
+
+    @Override
+    public boolean analyze(ShortBuffer samples) {
+        int position = samples.position();
+        int totalAbsValue = 0;
+        int crossings = 0;
+        boolean wasNegative = samples.get(position) < 0;
+        for (int i = position; i < position + frameSize; i++) {
+            short sample = samples.get(i);
+            totalAbsValue += Math.abs(sample);
+            boolean isNegative = sample < 0;
+            if (isNegative != wasNegative) {
+                crossings++;
+            }
+            wasNegative = isNegative;
+        }
+        return decide(totalAbsValue, crossings);
+    }
+
+    private boolean decide(int totalAbsValue, int crossings) {
+        meanAbs = totalAbsValue / frameSize;
+        numZeroCross = crossings;
+        int threshold = minMeanAbs;
+        if (noiseFloor != null) {
+            double floor = noiseFloor.getFloor(0);
+            if (floor > 0) {
+                threshold = Math.max(threshold, (int) (floor * floorFactor));
+            }
+            noiseFloor.update(0, meanAbs);
+        }
+        return meanAbs >= threshold && crossings >= minNumZeroCross && crossings <= maxNumZeroCross;
+    }
+
+    /**
+     * Tracked background level in mean absolute amplitude, or NaN when not adaptive
+     * or before the first frame.
+     */
+    public double getNoiseFloor() {
+        return noiseFloor == null ? Double.NaN : noiseFloor.getFloor(0);
+    }
+
+    /**
+     * Feeds the noise floor a frame that is not analysed, at mean absolute amplitude
+     * {@code meanAbs}, e.g. one known only by its level; ignored when not adaptive or for NaN.
+     */
+    public void updateNoiseFloor(double meanAbs) {
+        if (noiseFloor != null && !Double.isNaN(meanAbs)) {
+            noiseFloor.update(0, meanAbs);
+        }
+    }
+
+    /**
+     * Mean absolute amplitude of the last analysed frame.
+     */
+    public int getMeanAbs() {
+        return meanAbs;
+    }
+
+    public int getNumZeroCross() {
+        return numZeroCross;
+    }
+}
@@ -0,0 +1,104 @@
+package model.detection;
+
+/**
+ * Pool of the last few feature vectors, kept in one flat float array so consumers read them
+ * in place instead of copying: vector {@code i} of the stream sits at
+ * {@link #getOffset(long)} in {@link #getData()}, {@link FeatureExtractor#FEATURE_COUNT}
+ * floats long, until it is overwritten {@link #getCapacity()} vectors later.
+ * <p>
+ * Written and read on the detection thread; nothing is allocated after set-up.
+ */
+public final class FeatureBuffer {
+
+    private int capacity;
+    private float[] data;
+    private long[] endSamples;
+    private long count;
+
+    /**
+     * @param capacity vectors kept
+     */
+    public FeatureBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.data = new float[capacity * FeatureExtractor.FEATURE_COUNT];
+        this.endSamples = new long[capacity];
+    }
+
+    /**
+     * Claims the slot for the next vector, overwriting the oldest when full.
+     *
+     * @param endSample stream position just past the window the vector describes
+     * @return offset of the slot in {@link #getData()}
+     */
+    public int add(long endSample) {
+        int slot = (int) (count % capacity);
+        endSamples[slot] = endSample;
+        count++;
+        return slot * FeatureExtractor.FEATURE_COUNT;
+    }
+
+    /**
+     * Grows the pool to hold at least {@code capacity} vectors, dropping those it holds;
+     * for set-up, before the stream starts.
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > this.capacity) {
+            this.capacity = capacity;
+            this.data = new float[capacity * FeatureExtractor.FEATURE_COUNT];
+            this.endSamples = new long[capacity];
+            count = 0;
+        }
+    }
+
+    public float[] getData() {
+        return data;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Vectors added since the last {@link #clear()}, including overwritten ones.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Offset in {@link #getData()} of vector {@code index}, counted from the last
+     * {@link #clear()}; only the last {@link #getCapacity()} are still held.
+     */
+    public int getOffset(long index) {
+        if (index < 0 || index >= count || index < count - capacity) {
+            throw new IndexOutOfBoundsException("vector " + index + " not held, count " + count);
+        }
+        return (int) (index % capacity) * FeatureExtractor.FEATURE_COUNT;
+    }
+
+    /**
+     * Offset of the newest vector, or -1 if there is none.
+     */
+    public int getLatestOffset() {
+        return count == 0 ? -1 : getOffset(count - 1);
+    }
+
+    /**
+     * Stream position just past the window of vector {@code index}.
+     */
+    public long getEndSample(long index) {
+        getOffset(index);
+        return endSamples[(int) (index % capacity)];
+    }
+
+    public float get(long index, int feature) {
+        return data[getOffset(index) + feature];
+    }
+
+    public void clear() {
+        count = 0;
+    }
+}
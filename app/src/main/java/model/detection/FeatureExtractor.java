@@ -0,0 +1,175 @@
+package model.detection;
+
+/**
+ * Turns an analysis window into a fixed-size vector of spectral features, read from the
+ * {@link SharedSpectrum} so the FFT the detectors need is not repeated:
+ * <ul>
+ * <li>{@link #NUM_BANDS} band energies in dB relative to full scale, log-spaced from
+ * {@value #BAND_LOW_HZ} to {@value #BAND_HIGH_HZ} Hz, so they mean the same at every
+ * capture rate and frame size;</li>
+ * <li>the level in dBFS and the zero crossing rate per second;</li>
+ * <li>the spectral peak in Hz, refined as in {@link PitchTracker}, and its sharpness, the
+ * peak power over the mean power around it in dB;</li>
+ * <li>the spectral flatness, 0 for a pure tone and 1 for white noise;</li>
+ * <li>the harmonic ratio, the share of the power within one bin of the peak and its
+ * harmonics.</li>
+ * </ul>
+ * {@link #extract} writes into a caller's array, usually a slot of a {@link FeatureBuffer},
+ * and allocates nothing.
+ */
+public final class FeatureExtractor {
+
+    public static final int NUM_BANDS = 8;
+    public static final int BAND_LOW_HZ = 250;
+    // top of the spectrum at 22.05 kHz, the lowest detection rate
+    public static final int BAND_HIGH_HZ = 5500;
+
+    // vector layout; the bands come first
+    public static final int LEVEL = NUM_BANDS;
+    public static final int ZERO_CROSS_RATE = NUM_BANDS + 1;
+    public static final int PEAK_FREQUENCY = NUM_BANDS + 2;
+    public static final int PEAK_SHARPNESS = NUM_BANDS + 3;
+    public static final int FLATNESS = NUM_BANDS + 4;
+    public static final int HARMONIC_RATIO = NUM_BANDS + 5;
+    public static final int FEATURE_COUNT = NUM_BANDS + 6;
+
+    private static final String[] NAMES = {
+            "band0_db", "band1_db", "band2_db", "band3_db", "band4_db", "band5_db", "band6_db", "band7_db",
+            "level_dbfs", "zcr_hz", "peak_hz", "peak_sharpness_db", "flatness", "harmonic_ratio"};
+
+    // bins either side of the peak left out of the sharpness background, its main lobe
+    private static final int PEAK_LOBE_BINS = 2;
+    private static final int SHARPNESS_SPAN_BINS = 16;
+    private static final int MAX_HARMONIC = 4;
+    // keeps the logarithms finite on digital silence
+    private static final double MIN_POWER = 1e-3;
+
+    private final SharedSpectrum sharedSpectrum;
+    private final int frameSize;
+    private final double binFrequency;
+    private final double framesPerSecond;
+    // about the power of a full-scale tone's peak bin
+    private final double fullScalePower;
+    private final int lowBin;
+    private final int highBin;
+    private final int[] bandEdges = new int[NUM_BANDS + 1];
+    private final double[] power;
+
+    public FeatureExtractor(SharedSpectrum sharedSpectrum) {
+        this.sharedSpectrum = sharedSpectrum;
+        this.frameSize = sharedSpectrum.getFrameSize();
+        this.binFrequency = sharedSpectrum.getUnitFrequency();
+        this.framesPerSecond = (double) sharedSpectrum.getSampleRate() / frameSize;
+        this.fullScalePower = Math.pow(frameSize / 4.0 * 32768, 2);
+        this.lowBin = Math.max(1, (int) Math.round(BAND_LOW_HZ / binFrequency));
+        this.highBin = (int) Math.min(sharedSpectrum.getNumBins() - 1, Math.round(BAND_HIGH_HZ / binFrequency));
+        if (highBin - lowBin < NUM_BANDS) {
+            throw new IllegalArgumentException("spectrum too coarse for " + NUM_BANDS + " bands");
+        }
+        double ratio = Math.pow((double) BAND_HIGH_HZ / BAND_LOW_HZ, 1.0 / NUM_BANDS);
+        bandEdges[0] = lowBin;
+        for (int b = 1; b < NUM_BANDS; b++) {
+            int edge = (int) Math.round(BAND_LOW_HZ * Math.pow(ratio, b) / binFrequency);
+            // every band keeps at least one bin at coarse resolutions
+            bandEdges[b] = Math.min(Math.max(edge, bandEdges[b - 1] + 1), highBin - (NUM_BANDS - b));
+        }
+        bandEdges[NUM_BANDS] = highBin + 1;
+        this.power = new double[sharedSpectrum.getNumBins()];
+    }
+
+    /**
+     * Writes the {@link #FEATURE_COUNT} features of the window to {@code out} from
+     * {@code outOffset}. Reuses the shared magnitudes when an engine has already computed
+     * them for this window.
+     */
+    public void extract(short[] samples, int offset, float[] out, int outOffset) {
+        double[] magnitudes = sharedSpectrum.getMagnitudes(samples, offset);
+        double total = 0;
+        double logSum = 0;
+        int peak = lowBin;
+        for (int k = lowBin; k <= highBin; k++) {
+            double p = Math.max(magnitudes[k] * magnitudes[k], MIN_POWER);
+            power[k] = p;
+            total += p;
+            logSum += Math.log(p);
+            if (p > power[peak]) {
+                peak = k;
+            }
+        }
+        int bins = highBin - lowBin + 1;
+
+        for (int b = 0; b < NUM_BANDS; b++) {
+            double sum = 0;
+            for (int k = bandEdges[b]; k < bandEdges[b + 1]; k++) {
+                sum += power[k];
+            }
+            out[outOffset + b] = (float) (10 * Math.log10(sum / fullScalePower));
+        }
+
+        double squares = 0;
+        for (int i = offset, end = offset + frameSize; i < end; i++) {
+            squares += (double) samples[i] * samples[i];
+        }
+        double rms = Math.sqrt(squares / frameSize);
+        out[outOffset + LEVEL] = (float) (20 * Math.log10(Math.max(rms, 1) / 32768));
+        out[outOffset + ZERO_CROSS_RATE] = (float) (sharedSpectrum.getNumZeroCross(samples, offset) * framesPerSecond);
+
+        double refined = peak;
+        if (peak > lowBin && peak < highBin) {
+            refined += PitchTracker.interpolate(magnitudes[peak - 1], magnitudes[peak], magnitudes[peak + 1]);
+        }
+        out[outOffset + PEAK_FREQUENCY] = (float) (refined * binFrequency);
+        out[outOffset + PEAK_SHARPNESS] = (float) (10 * Math.log10(power[peak] / background(peak)));
+
+        // geometric over arithmetic mean of the power
+        out[outOffset + FLATNESS] = (float) (Math.exp(logSum / bins) / (total / bins));
+        out[outOffset + HARMONIC_RATIO] = (float) (harmonicPower(peak) / total);
+    }
+
+    /**
+     * Mean power around the peak, its main lobe left out.
+     */
+    private double background(int peak) {
+        double sum = 0;
+        int count = 0;
+        int from = Math.max(lowBin, peak - SHARPNESS_SPAN_BINS);
+        int to = Math.min(highBin, peak + SHARPNESS_SPAN_BINS);
+        for (int k = from; k <= to; k++) {
+            if (Math.abs(k - peak) > PEAK_LOBE_BINS) {
+                sum += power[k];
+                count++;
+            }
+        }
+        return count > 0 ? sum / count : power[peak];
+    }
+
+    private double harmonicPower(int peak) {
+        double sum = 0;
+        int previousEnd = lowBin - 1;
+        for (int h = 1; h <= MAX_HARMONIC; h++) {
+            int centre = (int) Math.round(peak * (double) h);
+            if (centre - 1 > highBin) {
+                break;
+            }
+            // neighbouring harmonics of a low peak must not count a bin twice
+            int from = Math.max(centre - 1, previousEnd + 1);
+            int to = Math.min(centre + 1, highBin);
+            for (int k = from; k <= to; k++) {
+                sum += power[k];
+            }
+            previousEnd = Math.max(previousEnd, to);
+        }
+        return sum;
+    }
+
+    /**
+     * Short name of feature {@code index}, e.g. for a CSV header.
+     */
+    public static String getName(int index) {
+        return NAMES[index];
+    }
+
+    public SharedSpectrum getSharedSpectrum() {
+        return sharedSpectrum;
+    }
+}
@@ -0,0 +1,266 @@
+package model.detection;
+
+import java.nio.ShortBuffer;
+
+/**
+ * Fixed-point port of a {@link SpectralDetectionEngine}: the same checks and thresholds,
+ * evaluated on a {@link FixedSpectrum} with integer arithmetic only.
+ * <p>
+ * Magnitudes are normalized in the log domain, where musicg's
+ * {@code log(x / min) / log(max / min)} is a difference of Q16 logs divided once per robust
+ * value, and the standard deviation check compares {@code n * sum(v^2) - sum(v)^2} with
+ * precomputed integer thresholds, so no square root is taken.
+ * <p>
+ * Errors against the floating-point engine on the same frame:
+ * <ul>
+ * <li>zero crossings, and therefore the early rejections, are identical;</li>
+ * <li>the intensity (mean magnitude) is within 1 unit plus 2e-4 relative;</li>
+ * <li>the standard deviation of the normalized robust values has no derived bound: window
+ * rounding moves the weakest bins, which set the normalization floor, and a bin near zero
+ * power can move its log by any amount. Measured, it stays near 1e-2 (1.1e-2 worst case on
+ * the 36 synthetic corpus recordings, usually below 1e-5), and the
+ * {@code fixedPointParityCheck} task holds the committed fixture to 2e-2;</li>
+ * <li>the robust values are the true top {@code numRobust} bins, where musicg may pick
+ * equal-valued bins in a different order; the values, and so the result, are the same.</li>
+ * </ul>
+ * Decisions can differ only for frames within these margins of a threshold; the
+ * {@code FixedPointParityMain} tool measures how often that happens on recordings.
+ */
+public class FixedPointEngine implements SpectralStage {
+
+    // float literal as in musicg, squared and in FixedSpectrum power units
+    private static final double MIN_VALID_POWER = (double) 0.00000000001F * 0.00000000001F
+            * (1 << 2 * FixedSpectrum.INPUT_FRACTION_BITS);
+
+    private final SpectralDetectionEngine reference;
+    private final FixedSpectrum spectrum;
+    private final boolean ownsSpectrum;
+    private final int frameSize;
+    private final double unitFrequency;
+    private final int lowerBoundary;
+    private final int upperBoundary;
+    // by peak index relative to the lower boundary, as musicg reports it
+    private final boolean[] peakAllowed;
+    private final long minMagnitudeSum;
+    private final long maxMagnitudeSum;
+    private final int numRobust;
+    private final int minValidLog;
+    private final long minSpread;
+    private final long maxSpread;
+    // ascending top numRobust log powers of the current frame
+    private final int[] robustLogs;
+    private final short[] bufferFrame;
+
+    private double peakFrequency;
+    private long magnitudeSum;
+    private long spread;
+
+    /**
+     * Engine with its own spectrum and the thresholds of {@code reference}.
+     */
+    public FixedPointEngine(SpectralDetectionEngine reference) {
+        this(new FixedSpectrum(reference.getSampleRate(), reference.getFrameSize()), reference, true);
+    }
+
+    /**
+     * Engine reading the window from {@code spectrum}; its owner must
+     * {@link FixedSpectrum#invalidate() invalidate} it before each new window.
+     */
+    public FixedPointEngine(FixedSpectrum spectrum, SpectralDetectionEngine reference) {
+        this(spectrum, reference, false);
+    }
+
+    private FixedPointEngine(FixedSpectrum spectrum, SpectralDetectionEngine reference, boolean ownsSpectrum) {
+        if (spectrum.getFrameSize() != reference.getFrameSize()) {
+            throw new IllegalArgumentException("spectrum and reference frame sizes differ");
+        }
+        this.reference = reference;
+        this.spectrum = spectrum;
+        this.ownsSpectrum = ownsSpectrum;
+        this.frameSize = spectrum.getFrameSize();
+        this.unitFrequency = spectrum.getUnitFrequency();
+        int numBins = spectrum.getNumBins();
+        this.lowerBoundary = (int) (reference.highPass / unitFrequency);
+        this.upperBoundary = Math.min((int) (reference.lowPass / unitFrequency), numBins - 1);
+
+        // the frequency checks, evaluated once for every possible peak
+        peakAllowed = new boolean[Math.max(0, upperBoundary - lowerBoundary + 1)];
+        for (int i = 0; i < peakAllowed.length; i++) {
+            double frequency = i * unitFrequency;
+            peakAllowed[i] = frequency >= reference.minFrequency && frequency <= reference.maxFrequency;
+        }
+        // intensity <= min or > max on the mean, as whole sums of fixed-point magnitudes
+        double magnitudeScale = numBins * (double) (1 << FixedSpectrum.MAGNITUDE_FRACTION_BITS);
+        this.minMagnitudeSum = (long) Math.floor(Math.min(reference.minIntensity * magnitudeScale, Long.MAX_VALUE));
+        this.maxMagnitudeSum = (long) Math.floor(Math.min(reference.maxIntensity * magnitudeScale, Long.MAX_VALUE));
+
+        this.numRobust = reference.numRobust;
+        this.minValidLog = (int) Math.ceil(Math.log(MIN_VALID_POWER) / Math.log(2) * (1 << 16));
+        // std = sqrt(spread / n^2) with values in Q16, so spread bounds are std^2 n^2 2^32
+        double spreadScale = (double) numRobust * numRobust * (1L << 32);
+        this.minSpread = (long) Math.ceil(reference.minStandardDeviation * reference.minStandardDeviation * spreadScale);
+        this.maxSpread = (long) Math.floor(Math.min(
+                reference.maxStandardDeviation * reference.maxStandardDeviation * spreadScale, Long.MAX_VALUE));
+        this.robustLogs = new int[numRobust];
+        this.bufferFrame = new short[frameSize];
+    }
+
+    @Override
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    public FixedSpectrum getSpectrum() {
+        return spectrum;
+    }
+
+    /**
+     * The floating-point engine whose thresholds this one applies.
+     */
+    public SpectralDetectionEngine getReference() {
+        return reference;
+    }
+
+    @Override
+    public int getMinNumZeroCross() {
+        return reference.getMinNumZeroCross();
+    }
+
+    @Override
+    public int getMaxNumZeroCross() {
+        return reference.getMaxNumZeroCross();
+    }
+
+    @Override
+    public double getMinFrequency() {
+        return reference.getMinFrequency();
+    }
+
+    @Override
+    public int getLowPass() {
+        return reference.getLowPass();
+    }
+
+    @Override
+    public double getPeakFrequency() {
+        return peakFrequency;
+    }
+
+    /**
+     * Mean spectrum magnitude of the last frame, or NaN if it failed the zero crossing check.
+     */
+    public double getIntensity() {
+        return magnitudeSum < 0 ? Double.NaN
+                : (double) magnitudeSum / (1 << FixedSpectrum.MAGNITUDE_FRACTION_BITS) / spectrum.getNumBins();
+    }
+
+    /**
+     * Spread of the strongest normalized bins of the last frame, or NaN if an earlier check
+     * rejected it.
+     */
+    public double getStandardDeviation() {
+        return spread < 0 ? Double.NaN : Math.sqrt(spread / (double) (1L << 32)) / numRobust;
+    }
+
+    @Override
+    public boolean analyze(ShortBuffer samples) {
+        if (samples.hasArray()) {
+            return analyze(samples.array(), samples.arrayOffset() + samples.position());
+        }
+        int position = samples.position();
+        for (int i = 0; i < frameSize; i++) {
+            bufferFrame[i] = samples.get(position + i);
+        }
+        return analyze(bufferFrame, 0);
+    }
+
+    @Override
+    public boolean analyze(short[] samples, int offset) {
+        if (ownsSpectrum) {
+            spectrum.invalidate();
+        }
+        spread = -1;
+        int numZeroCross = spectrum.getNumZeroCross(samples, offset);
+        if (numZeroCross < reference.minNumZeroCross || numZeroCross > reference.maxNumZeroCross) {
+            peakFrequency = 0;
+            magnitudeSum = -1;
+            return false;
+        }
+
+        spectrum.compute(samples, offset);
+        long[] power = spectrum.getPower();
+        // first strongest bin, reported relative to the band start as musicg does
+        int peak = lowerBoundary;
+        for (int i = lowerBoundary + 1; i <= upperBoundary; i++) {
+            if (power[i] > power[peak]) {
+                peak = i;
+            }
+        }
+        int relativePeak = peak - lowerBoundary;
+        peakFrequency = relativePeak * unitFrequency;
+
+        magnitudeSum = spectrum.getMagnitudeSum();
+        if (magnitudeSum <= minMagnitudeSum || magnitudeSum > maxMagnitudeSum
+                || relativePeak >= peakAllowed.length || !peakAllowed[relativePeak]) {
+            return false;
+        }
+        return isPassedStandardDeviation(power, spectrum.getLogPower());
+    }
+
+    private boolean isPassedStandardDeviation(long[] power, int[] logPower) {
+        // musicg's extremes search: a new maximum is never also taken as the minimum
+        long maxPower = 0;
+        long minPower = Long.MAX_VALUE;
+        int maxLog = 0;
+        int minLog = 0;
+        for (int k = 0; k < power.length; k++) {
+            long p = power[k];
+            if (p > maxPower) {
+                maxPower = p;
+                maxLog = logPower[k];
+            } else if (p < minPower) {
+                minPower = p;
+                minLog = logPower[k];
+            }
+        }
+        if (maxPower == 0 || minPower == Long.MAX_VALUE) {
+            return false;
+        }
+        if (minPower == 0) {
+            minLog = minValidLog;
+        }
+        long range = (long) maxLog - minLog;
+        if (range <= 0) {
+            // musicg divides by zero and rejects the NaN deviation
+            return false;
+        }
+
+        // top values by log; empty bins normalize to 0, i.e. rank like the minimum
+        int[] top = robustLogs;
+        for (int i = 0; i < numRobust; i++) {
+            top[i] = Integer.MIN_VALUE;
+        }
+        for (int k = 0; k < logPower.length; k++) {
+            int key = logPower[k] == FixedSpectrum.ZERO_LOG ? minLog : logPower[k];
+            if (key > top[0]) {
+                int i = 1;
+                while (i < numRobust && top[i] < key) {
+                    top[i - 1] = top[i];
+                    i++;
+                }
+                top[i - 1] = key;
+            }
+        }
+
+        long sum = 0;
+        long sumOfSquares = 0;
+        for (int i = 0; i < numRobust; i++) {
+            // normalized value in Q16
+            long value = (((long) top[i] - minLog) << 16) / range;
+            sum += value;
+            sumOfSquares += value * value;
+        }
+        spread = numRobust * sumOfSquares - sum * sum;
+        return spread >= minSpread && spread <= maxSpread;
+    }
+}
@@ -0,0 +1,163 @@
+package model.detection;
+
+import model.dsp.FixedFft;
+import model.dsp.FixedPoint;
+
+/**
+ * Integer counterpart of {@link SharedSpectrum}: the same musicg spectrum layout (Hamming
+ * window, complex FFT of half the frame size over the samples, a quarter of the bins kept),
+ * computed without floating point and shared by the {@link FixedPointEngine}s of a window.
+ * <p>
+ * Samples are multiplied by a Q15 window and kept with {@link #INPUT_FRACTION_BITS} fraction
+ * bits, so the windowed input is within 2^-5 of the floating-point one. The FFT runs on
+ * {@code int}, and each bin is kept as its exact 64-bit power, its Q16 log2 power and a
+ * magnitude with 8 fraction bits taken from the log. Against {@link SharedSpectrum}:
+ * <ul>
+ * <li>bin magnitudes differ by less than 1 unit plus 2e-4 relative,</li>
+ * <li>the peak bin matches except between bins within that error of each other,</li>
+ * <li>logs of powers are within 2^-14 (base 2) of the exact logs of the integer powers.</li>
+ * </ul>
+ * Arrays are {@code int} and {@code long} instead of {@code double}, which halves the
+ * memory traffic of the windowed frame and the FFT.
+ */
+public final class FixedSpectrum {
+
+    public static final int WINDOW_BITS = 15;
+    public static final int INPUT_FRACTION_BITS = 4;
+    public static final int MAGNITUDE_FRACTION_BITS = 8;
+    // a power of 0 has no log; below every real log, including that of 1
+    public static final int ZERO_LOG = Integer.MIN_VALUE / 2;
+
+    private static final int WINDOW_SHIFT = WINDOW_BITS - INPUT_FRACTION_BITS;
+
+    private final int sampleRate;
+    private final int frameSize;
+    private final double unitFrequency;
+    private final FixedFft fft;
+    private final int[] window;
+    private final int[] re;
+    private final int[] im;
+    private final long[] power;
+    private final int[] logPower;
+
+    private boolean hasZeroCross;
+    private boolean hasSpectrum;
+    private int numZeroCross;
+    private long magnitudeSum;
+
+    /**
+     * @param sampleRate sample rate of the analysed audio in Hz
+     * @param frameSize  samples per window, a power of 2 from 8 to 4096 so that the FFT
+     *                   of the scaled input fits in 32 bits
+     */
+    public FixedSpectrum(int sampleRate, int frameSize) {
+        if (frameSize < 8 || frameSize > 4096 || Integer.bitCount(frameSize) != 1) {
+            throw new IllegalArgumentException("frame size must be a power of 2 from 8 to 4096: " + frameSize);
+        }
+        this.sampleRate = sampleRate;
+        this.frameSize = frameSize;
+        this.unitFrequency = (double) sampleRate / 2 / (frameSize / 2);
+        this.fft = new FixedFft(frameSize / 2);
+        this.window = new int[frameSize];
+        int half = frameSize / 2;
+        double scale = Math.PI / half;
+        for (int n = -half; n < half; n++) {
+            // musicg's float coefficients
+            window[half + n] = (int) Math.round((0.54F + 0.46F * Math.cos(n * scale)) * (1 << WINDOW_BITS));
+        }
+        this.re = new int[half];
+        this.im = new int[half];
+        this.power = new long[frameSize / 4];
+        this.logPower = new int[frameSize / 4];
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    public double getUnitFrequency() {
+        return unitFrequency;
+    }
+
+    public int getNumBins() {
+        return power.length;
+    }
+
+    /**
+     * Forgets the previous window; the next request recomputes from the samples it is given.
+     */
+    public void invalidate() {
+        hasZeroCross = false;
+        hasSpectrum = false;
+    }
+
+    public int getNumZeroCross(short[] samples, int offset) {
+        if (!hasZeroCross) {
+            int count = 0;
+            int end = offset + frameSize - 1;
+            for (int i = offset; i < end; i++) {
+                if ((samples[i] >= 0 && samples[i + 1] < 0) || (samples[i] < 0 && samples[i + 1] >= 0)) {
+                    count++;
+                }
+            }
+            numZeroCross = count;
+            hasZeroCross = true;
+        }
+        return numZeroCross;
+    }
+
+    /**
+     * Computes the spectrum of the window if it is not known yet.
+     */
+    public void compute(short[] samples, int offset) {
+        if (hasSpectrum) {
+            return;
+        }
+        int round = 1 << (WINDOW_SHIFT - 1);
+        for (int j = 0, i = 0; j < re.length; j++, i += 2) {
+            re[j] = (samples[offset + i] * window[i] + round) >> WINDOW_SHIFT;
+            im[j] = (samples[offset + i + 1] * window[i + 1] + round) >> WINDOW_SHIFT;
+        }
+        fft.transform(re, im);
+        long sum = 0;
+        for (int k = 0; k < power.length; k++) {
+            long p = (long) re[k] * re[k] + (long) im[k] * im[k];
+            power[k] = p;
+            if (p == 0) {
+                logPower[k] = ZERO_LOG;
+            } else {
+                int log = FixedPoint.log2(p);
+                logPower[k] = log;
+                // |X| = 2^(log / 2) in units of 2^-INPUT_FRACTION_BITS
+                sum += FixedPoint.pow2(log >> 1, MAGNITUDE_FRACTION_BITS - INPUT_FRACTION_BITS);
+            }
+        }
+        magnitudeSum = sum;
+        hasSpectrum = true;
+    }
+
+    /**
+     * Bin powers in units of 2^(-2 * INPUT_FRACTION_BITS); shared, callers must not modify it.
+     */
+    public long[] getPower() {
+        return power;
+    }
+
+    /**
+     * Q16 log2 of {@link #getPower()}, {@link #ZERO_LOG} for empty bins; shared.
+     */
+    public int[] getLogPower() {
+        return logPower;
+    }
+
+    /**
+     * Sum of all bin magnitudes with {@link #MAGNITUDE_FRACTION_BITS} fraction bits.
+     */
+    public long getMagnitudeSum() {
+        return magnitudeSum;
+    }
+}
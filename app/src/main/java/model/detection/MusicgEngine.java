@@ -0,0 +1,50 @@
+package model.detection;
+
+import java.nio.ShortBuffer;
+
+import com.musicg.api.DetectionApi;
+
+/**
+ * Adapts a musicg {@link DetectionApi} to {@link DetectionEngine}.
+ * <p>
+ * Samples are packed into a reused little-endian byte frame, but musicg itself still
+ * allocates its wave, spectrogram and result arrays on every call. Kept as the reference
+ * implementation for parity checks and for detectors not yet ported in-tree.
+ */
+public class MusicgEngine implements DetectionEngine {
+
+    private final DetectionApi detectionApi;
+    private final int frameSize;
+    private final byte[] frameBytes;
+
+    public MusicgEngine(DetectionApi detectionApi, int frameSize) {
+        this.detectionApi = detectionApi;
+        this.frameSize = frameSize;
+        this.frameBytes = new byte[frameSize * 2];
+    }
+
+    @Override
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    @Override
+    public boolean analyze(short[] samples, int offset) {
+        for (int i = 0, j = offset; i < frameBytes.length; i += 2, j++) {
+            frameBytes[i] = (byte) samples[j];
+            frameBytes[i + 1] = (byte) (samples[j] >> 8);
+        }
+        return detectionApi.isSpecificSound(frameBytes);
+    }
+
+    @Override
+    public boolean analyze(ShortBuffer samples) {
+        int position = samples.position();
+        for (int i = 0, j = position; i < frameBytes.length; i += 2, j++) {
+            short sample = samples.get(j);
+            frameBytes[i] = (byte) sample;
+            frameBytes[i + 1] = (byte) (sample >> 8);
+        }
+        return detectionApi.isSpecificSound(frameBytes);
+    }
+}
@@ -0,0 +1,110 @@
+package model.detection;
+
+import model.dsp.RealFft;
+
+/**
+ * Per-window whistle pitch: the strongest bin in the band, refined to a fraction of a bin by
+ * the vertex of a parabola through the log magnitudes of that bin and its neighbours.
+ * <p>
+ * The pitch needs no musicg parity, so it is read from the real spectrum of the
+ * Hamming-windowed frame, computed with a {@link RealFft} plan for voiced windows only. Up to
+ * a quarter of the sample rate that spectrum has the bins of {@link SharedSpectrum}; unlike
+ * musicg's layout it does not fold tones between a quarter and half the sample rate into the
+ * band.
+ * <p>
+ * The reported pitch is the median of the last three estimates, so a single window that
+ * locks onto a harmonic does not break the contour; {@link #reset()} between whistles.
+ */
+public final class PitchTracker {
+
+    private static final int MEDIAN_LENGTH = 3;
+
+    private final int frameSize;
+    private final RealFft fft;
+    private final float[] window;
+    private final float[] frame;
+    private final float[] power;
+    private final double binFrequency;
+    private final int lowBin;
+    private final int highBin;
+    private final double[] recent = new double[MEDIAN_LENGTH];
+    private int count;
+    private double rawPitch;
+
+    /**
+     * @param minFrequency lowest pitch tracked, in Hz
+     * @param maxFrequency highest pitch tracked, in Hz; clamped to the spectrum
+     */
+    public PitchTracker(int sampleRate, int frameSize, double minFrequency, double maxFrequency) {
+        this.frameSize = frameSize;
+        this.fft = new RealFft(frameSize);
+        this.window = new float[frameSize];
+        for (int i = 0; i < frameSize; i++) {
+            window[i] = (float) (0.54 - 0.46 * Math.cos(2 * Math.PI * i / frameSize));
+        }
+        this.frame = new float[frameSize];
+        this.power = new float[fft.getNumBins()];
+        this.binFrequency = (double) sampleRate / frameSize;
+        // keep a neighbour on both sides of every candidate peak
+        this.lowBin = Math.max(1, (int) Math.ceil(minFrequency / binFrequency));
+        this.highBin = (int) Math.min(power.length - 2, maxFrequency / binFrequency);
+        if (lowBin > highBin) {
+            throw new IllegalArgumentException("pitch band outside the spectrum");
+        }
+    }
+
+    /**
+     * Pitch of the window in Hz, median-filtered over the windows since the last reset.
+     */
+    public double track(short[] samples, int offset) {
+        for (int i = 0; i < frameSize; i++) {
+            frame[i] = samples[offset + i] * window[i];
+        }
+        fft.powerSpectrum(frame, 0, power);
+        int peak = lowBin;
+        for (int k = lowBin + 1; k <= highBin; k++) {
+            if (power[k] > power[peak]) {
+                peak = k;
+            }
+        }
+        // the log of the power is twice that of the magnitude, which leaves the vertex in place
+        rawPitch = (peak + interpolate(power[peak - 1], power[peak], power[peak + 1])) * binFrequency;
+        recent[count % MEDIAN_LENGTH] = rawPitch;
+        count++;
+        return count < MEDIAN_LENGTH ? rawPitch : median(recent[0], recent[1], recent[2]);
+    }
+
+    /**
+     * Unfiltered pitch of the last window in Hz.
+     */
+    public double getRawPitch() {
+        return rawPitch;
+    }
+
+    public void reset() {
+        count = 0;
+    }
+
+    /**
+     * Offset of the true peak from the centre bin, within half a bin either way. On log
+     * magnitudes the parabola is exact for a Gaussian main lobe and close for Hamming.
+     */
+    static double interpolate(double left, double centre, double right) {
+        if (left <= 0 || centre <= 0 || right <= 0) {
+            return 0;
+        }
+        double a = Math.log(left);
+        double b = Math.log(centre);
+        double c = Math.log(right);
+        double curvature = a - 2 * b + c;
+        if (curvature >= 0) {
+            return 0;
+        }
+        double delta = 0.5 * (a - c) / curvature;
+        return Math.max(-0.5, Math.min(0.5, delta));
+    }
+
+    private static double median(double a, double b, double c) {
+        return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+    }
+}
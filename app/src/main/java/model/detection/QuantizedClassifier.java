@@ -0,0 +1,147 @@
+package model.detection;
+
+/**
+ * Binary classifier with one hidden layer, run in 8 bit integer arithmetic.
+ * <p>
+ * Each input is standardised and quantised to int8, {@value #INPUT_RANGE} standard
+ * deviations mapping to 127. The hidden layer multiplies int8 weights, scaled per unit, into
+ * int32 sums, applies ReLU and rescales to 0..127 with a fixed-point multiplier of
+ * {@value #MULTIPLIER_SHIFT} fraction bits. The output unit sums int8 weights over the hidden
+ * activations, and the window is positive when that sum reaches the integer threshold. The
+ * only floating-point step is the standardisation of the inputs.
+ * <p>
+ * Weights and scratch arrays are allocated once; {@link #classify} allocates nothing. The
+ * parameters come from {@code tools.TrainClassifierMain}, see {@link WhistleClassifierModel}.
+ * They hold only for the sample rate and frame size of the training windows, which the
+ * classifier records; see {@link #matches(int, int)}.
+ */
+public final class QuantizedClassifier {
+
+    public static final int INPUT_RANGE = 4;
+    public static final int MULTIPLIER_SHIFT = 24;
+
+    private final int sampleRate;
+    private final int frameSize;
+    private final int inputCount;
+    private final int hiddenCount;
+    private final float[] inputMeans;
+    // 127 / (INPUT_RANGE * standard deviation)
+    private final float[] inputScales;
+    // row per hidden unit
+    private final byte[] hiddenWeights;
+    private final int[] hiddenBiases;
+    private final int[] hiddenMultipliers;
+    private final byte[] outputWeights;
+    private final int outputBias;
+    // logit per unit of the output sum
+    private final float outputScale;
+    private final int threshold;
+
+    private final byte[] input;
+    private final byte[] hidden;
+    private int lastSum;
+
+    /**
+     * @param sampleRate        sample rate of the training windows
+     * @param frameSize         samples per training window
+     * @param inputMeans        mean of each input over the training set
+     * @param inputScales       int8 steps per unit of each input
+     * @param hiddenWeights     int8 weights, {@code inputCount} per hidden unit
+     * @param hiddenBiases      hidden biases in units of the hidden sums
+     * @param hiddenMultipliers rescaling of each hidden sum to 0..127, with
+     *                          {@value #MULTIPLIER_SHIFT} fraction bits
+     * @param outputWeights     int8 weight of each hidden unit
+     * @param outputBias        output bias in units of the output sum
+     * @param outputScale       logit per unit of the output sum
+     * @param threshold         output sums from this one up are positive
+     */
+    public QuantizedClassifier(int sampleRate, int frameSize, float[] inputMeans, float[] inputScales,
+                               byte[] hiddenWeights, int[] hiddenBiases, int[] hiddenMultipliers, byte[] outputWeights,
+                               int outputBias, float outputScale, int threshold) {
+        this.sampleRate = sampleRate;
+        this.frameSize = frameSize;
+        this.inputCount = inputMeans.length;
+        this.hiddenCount = hiddenBiases.length;
+        if (inputScales.length != inputCount || hiddenWeights.length != inputCount * hiddenCount
+                || hiddenMultipliers.length != hiddenCount || outputWeights.length != hiddenCount) {
+            throw new IllegalArgumentException("inconsistent layer sizes");
+        }
+        this.inputMeans = inputMeans.clone();
+        this.inputScales = inputScales.clone();
+        this.hiddenWeights = hiddenWeights.clone();
+        this.hiddenBiases = hiddenBiases.clone();
+        this.hiddenMultipliers = hiddenMultipliers.clone();
+        this.outputWeights = outputWeights.clone();
+        this.outputBias = outputBias;
+        this.outputScale = outputScale;
+        this.threshold = threshold;
+        this.input = new byte[inputCount];
+        this.hidden = new byte[hiddenCount];
+    }
+
+    /**
+     * Classifies {@link #getInputCount()} inputs starting at {@code offset}.
+     */
+    public boolean classify(float[] inputs, int offset) {
+        for (int i = 0; i < inputCount; i++) {
+            int q = Math.round((inputs[offset + i] - inputMeans[i]) * inputScales[i]);
+            input[i] = (byte) Math.max(-127, Math.min(127, q));
+        }
+        for (int j = 0, w = 0; j < hiddenCount; j++) {
+            int sum = hiddenBiases[j];
+            for (int i = 0; i < inputCount; i++, w++) {
+                sum += hiddenWeights[w] * input[i];
+            }
+            if (sum <= 0) {
+                hidden[j] = 0;
+            } else {
+                long scaled = ((long) sum * hiddenMultipliers[j] + (1L << (MULTIPLIER_SHIFT - 1))) >> MULTIPLIER_SHIFT;
+                hidden[j] = (byte) Math.min(127, scaled);
+            }
+        }
+        int sum = outputBias;
+        for (int j = 0; j < hiddenCount; j++) {
+            sum += outputWeights[j] * hidden[j];
+        }
+        lastSum = sum;
+        return sum >= threshold;
+    }
+
+    /**
+     * Logit of the last {@link #classify} call; positive means more likely than not.
+     */
+    public float getLastLogit() {
+        return lastSum * outputScale;
+    }
+
+    /**
+     * Decision threshold as a logit.
+     */
+    public float getThresholdLogit() {
+        return threshold * outputScale;
+    }
+
+    /**
+     * Whether windows of {@code frameSize} samples at {@code sampleRate} look like the
+     * training windows; band energies and the zero crossing rate shift at other settings.
+     */
+    public boolean matches(int sampleRate, int frameSize) {
+        return sampleRate == this.sampleRate && frameSize == this.frameSize;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    public int getInputCount() {
+        return inputCount;
+    }
+
+    public int getHiddenCount() {
+        return hiddenCount;
+    }
+}
@@ -0,0 +1,129 @@
+package model.detection;
+
+import model.dsp.Fft;
+
+/**
+ * Per-window analysis shared by every {@link SpectralDetectionEngine} that looks at the same
+ * window: zero crossing count and musicg's magnitude spectrum (Hamming window, then a complex
+ * FFT of half the frame size over the samples, keeping a quarter of the bins).
+ * <p>
+ * Each quantity is computed on first request and reused until {@link #invalidate()}, which
+ * the owner calls once per window. With several detectors the FFT therefore runs at most
+ * once per window, and not at all if every detector rejects the window on its zero
+ * crossings.
+ */
+public final class SharedSpectrum {
+
+    private final int sampleRate;
+    private final int frameSize;
+    private final double unitFrequency;
+    private final Fft fft;
+    private final double[] window;
+    private final double[] fftData;
+    private final double[] magnitudes;
+
+    private boolean hasZeroCross;
+    private boolean hasMagnitudes;
+    private int numZeroCross;
+    private double meanMagnitude;
+
+    /**
+     * @param sampleRate sample rate of the analysed audio in Hz
+     * @param frameSize  samples per window, a power of 2 of at least 8
+     */
+    public SharedSpectrum(int sampleRate, int frameSize) {
+        if (frameSize < 8 || Integer.bitCount(frameSize) != 1) {
+            throw new IllegalArgumentException("frame size must be a power of 2: " + frameSize);
+        }
+        this.sampleRate = sampleRate;
+        this.frameSize = frameSize;
+        this.unitFrequency = (double) sampleRate / 2 / (frameSize / 2);
+        this.fft = new Fft(frameSize / 2);
+        this.window = hammingWindow(frameSize);
+        this.fftData = new double[frameSize];
+        this.magnitudes = new double[frameSize / 4];
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    /**
+     * Width of one spectrum bin in musicg's frequency units.
+     */
+    public double getUnitFrequency() {
+        return unitFrequency;
+    }
+
+    public int getNumBins() {
+        return magnitudes.length;
+    }
+
+    /**
+     * Forgets the previous window; the next request recomputes from the samples it is given.
+     */
+    public void invalidate() {
+        hasZeroCross = false;
+        hasMagnitudes = false;
+    }
+
+    public int getNumZeroCross(short[] samples, int offset) {
+        if (!hasZeroCross) {
+            int count = 0;
+            int end = offset + frameSize - 1;
+            for (int i = offset; i < end; i++) {
+                if ((samples[i] >= 0 && samples[i + 1] < 0) || (samples[i] < 0 && samples[i + 1] >= 0)) {
+                    count++;
+                }
+            }
+            numZeroCross = count;
+            hasZeroCross = true;
+        }
+        return numZeroCross;
+    }
+
+    /**
+     * Magnitude spectrum of the window exactly as musicg's Spectrogram computes it.
+     * Shared by all engines, so callers must not modify it.
+     */
+    public double[] getMagnitudes(short[] samples, int offset) {
+        if (!hasMagnitudes) {
+            for (int i = 0; i < frameSize; i++) {
+                fftData[i] = samples[offset + i] * window[i];
+            }
+            fft.transform(fftData);
+            double sum = 0;
+            for (int i = 0, k = 0; k < magnitudes.length; i += 2, k++) {
+                magnitudes[k] = Math.sqrt(fftData[i] * fftData[i] + fftData[i + 1] * fftData[i + 1]);
+                sum += magnitudes[k];
+            }
+            meanMagnitude = sum / magnitudes.length;
+            hasMagnitudes = true;
+        }
+        return magnitudes;
+    }
+
+    /**
+     * Mean of {@link #getMagnitudes}, musicg's intensity; valid once the magnitudes are computed.
+     */
+    public double getMeanMagnitude() {
+        return meanMagnitude;
+    }
+
+    /**
+     * musicg's Hamming window, including its float coefficients.
+     */
+    private static double[] hammingWindow(int size) {
+        int half = size / 2;
+        double[] window = new double[size];
+        double scale = Math.PI / half;
+        for (int n = -half; n < half; n++) {
+            window[half + n] = 0.54F + 0.46F * Math.cos(n * scale);
+        }
+        return window;
+    }
+}
@@ -0,0 +1,301 @@
+package model.detection;
+
+import java.nio.ShortBuffer;
+
+import model.audio.CaptureRates;
+
+/**
+ * Allocation-free port of musicg's {@code DetectionApi.isSpecificSound}.
+ * <p>
+ * The checks, thresholds and numerics follow musicg so that subclasses give the same
+ * decisions as the corresponding musicg API, but all buffers (window, FFT data, spectrum,
+ * robust values) are allocated once in the constructor. The cheapest check (zero crossing
+ * rate) runs before the FFT, and the frequency check before the standard deviation check;
+ * since all checks must pass, the order does not change the result.
+ * <p>
+ * Subclasses set the thresholds in {@link #init()}, as with musicg.
+ */
+public class SpectralDetectionEngine implements SpectralStage {
+
+    // float literal as in musicg
+    private static final double MIN_VALID_AMPLITUDE = 0.00000000001F;
+
+    protected double minFrequency = 0;
+    protected double maxFrequency = Double.MAX_VALUE;
+    protected double minIntensity = 0;
+    protected double maxIntensity = 100000;
+    protected double minStandardDeviation = 0;
+    protected double maxStandardDeviation = 1;
+    protected int highPass = 100;
+    protected int lowPass = 10000;
+    protected int minNumZeroCross = 0;
+    protected int maxNumZeroCross = 10000;
+    protected int numRobust = 10;
+
+    private final SharedSpectrum sharedSpectrum;
+    private final boolean ownsSpectrum;
+    private final int frameSize;
+    private final double unitFrequency;
+    private final int lowerBoundary;
+    private final int upperBoundary;
+
+    // normalized copy of the shared spectrum, reordered by the robust value selection
+    private final double[] spectrum;
+    private final double[] robustValues;
+    private final short[] bufferFrame;
+
+    private double peakFrequency;
+    private double intensity;
+    private double standardDeviation;
+
+    /**
+     * @param sampleRate sample rate of the analysed audio in Hz
+     * @param frameSize  samples per frame, a power of 2 of at least 8
+     */
+    public SpectralDetectionEngine(int sampleRate, int frameSize) {
+        this(new SharedSpectrum(sampleRate, frameSize), true);
+    }
+
+    /**
+     * Engine reading the window from {@code sharedSpectrum}; its owner must
+     * {@link SharedSpectrum#invalidate() invalidate} it before each new window.
+     */
+    public SpectralDetectionEngine(SharedSpectrum sharedSpectrum) {
+        this(sharedSpectrum, false);
+    }
+
+    private SpectralDetectionEngine(SharedSpectrum sharedSpectrum, boolean ownsSpectrum) {
+        this.sharedSpectrum = sharedSpectrum;
+        this.ownsSpectrum = ownsSpectrum;
+        this.frameSize = sharedSpectrum.getFrameSize();
+        init();
+
+        unitFrequency = sharedSpectrum.getUnitFrequency();
+        spectrum = new double[sharedSpectrum.getNumBins()];
+        lowerBoundary = (int) (highPass / unitFrequency);
+        // musicg rejects every frame when the band does not fit the spectrum, which spans only
+        // a quarter of the sample rate; clamp instead, e.g. to 5.5 kHz at 22.05 kHz
+        upperBoundary = Math.min((int) (lowPass / unitFrequency), spectrum.length - 1);
+
+        robustValues = new double[numRobust];
+        bufferFrame = new short[frameSize];
+    }
+
+    /**
+     * Sets the detection thresholds; called once from the constructor.
+     */
+    protected void init() {
+    }
+
+    /**
+     * Adapts thresholds tuned on musicg's 1024-sample frames at 44.1 kHz to this engine's
+     * sample rate and frame size; a no-op at those settings. Zero crossing counts scale with
+     * the frame duration, and intensities with the square root of the frame size, as both
+     * tones and noise measure. Frequencies are in Hz already. Call once, before building a
+     * {@link FixedPointEngine} on this engine.
+     */
+    public SpectralDetectionEngine rescaleThresholds() {
+        double duration = ((double) frameSize * CaptureRates.REFERENCE_SAMPLE_RATE)
+                / ((double) getSampleRate() * CaptureRates.REFERENCE_FRAME_SIZE);
+        double magnitude = Math.sqrt((double) frameSize / CaptureRates.REFERENCE_FRAME_SIZE);
+        minNumZeroCross = (int) Math.round(minNumZeroCross * duration);
+        maxNumZeroCross = (int) Math.round(maxNumZeroCross * duration);
+        minIntensity *= magnitude;
+        maxIntensity *= magnitude;
+        return this;
+    }
+
+    @Override
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    public int getSampleRate() {
+        return sharedSpectrum.getSampleRate();
+    }
+
+    public SharedSpectrum getSharedSpectrum() {
+        return sharedSpectrum;
+    }
+
+    @Override
+    public int getMinNumZeroCross() {
+        return minNumZeroCross;
+    }
+
+    @Override
+    public int getMaxNumZeroCross() {
+        return maxNumZeroCross;
+    }
+
+    @Override
+    public double getMinFrequency() {
+        return minFrequency;
+    }
+
+    @Override
+    public int getLowPass() {
+        return lowPass;
+    }
+
+    /**
+     * Frequency of the strongest bin inside the pass band of the last analysed frame,
+     * in musicg's frequency units; 0 if the frame failed the zero crossing check.
+     */
+    @Override
+    public double getPeakFrequency() {
+        return peakFrequency;
+    }
+
+    /**
+     * Mean spectrum magnitude of the last frame, or NaN if it failed the zero crossing check.
+     */
+    public double getIntensity() {
+        return intensity;
+    }
+
+    /**
+     * Spread of the strongest normalized bins of the last frame, or NaN if an earlier check
+     * rejected it.
+     */
+    public double getStandardDeviation() {
+        return standardDeviation;
+    }
+
+    @Override
+    public boolean analyze(ShortBuffer samples) {
+        if (samples.hasArray()) {
+            return analyze(samples.array(), samples.arrayOffset() + samples.position());
+        }
+        int position = samples.position();
+        for (int i = 0; i < frameSize; i++) {
+            bufferFrame[i] = samples.get(position + i);
+        }
+        return analyze(bufferFrame, 0);
+    }
+
+    @Override
+    public boolean analyze(short[] samples, int offset) {
+        if (ownsSpectrum) {
+            sharedSpectrum.invalidate();
+        }
+        int numZeroCross = sharedSpectrum.getNumZeroCross(samples, offset);
+        standardDeviation = Double.NaN;
+        if (numZeroCross < minNumZeroCross || numZeroCross > maxNumZeroCross) {
+            peakFrequency = 0;
+            intensity = Double.NaN;
+            return false;
+        }
+
+        double[] magnitudes = sharedSpectrum.getMagnitudes(samples, offset);
+        peakFrequency = getMaxValueIndex(magnitudes, lowerBoundary, upperBoundary) * unitFrequency;
+
+        intensity = sharedSpectrum.getMeanMagnitude();
+        if (intensity <= minIntensity || intensity > maxIntensity
+                || peakFrequency < minFrequency || peakFrequency > maxFrequency) {
+            return false;
+        }
+        System.arraycopy(magnitudes, 0, spectrum, 0, spectrum.length);
+        return isPassedStandardDeviation();
+    }
+
+    /**
+     * Normalizes the spectrum in place and checks the spread of its {@code numRobust} strongest bins.
+     */
+    private boolean isPassedStandardDeviation() {
+        normalizeSpectrum();
+
+        double threshold = getNthLargestValue(spectrum, numRobust);
+        int count = 0;
+        for (int i = 0; i < spectrum.length && count < numRobust; i++) {
+            if (spectrum[i] >= threshold) {
+                robustValues[count++] = spectrum[i];
+            }
+        }
+        while (count < numRobust) {
+            robustValues[count++] = 0;
+        }
+
+        double sum = 0;
+        for (double value : robustValues) {
+            sum += value;
+        }
+        double mean = sum / robustValues.length;
+        double squares = 0;
+        for (double value : robustValues) {
+            squares += Math.pow(value - mean, 2);
+        }
+        standardDeviation = Math.sqrt(squares / robustValues.length);
+        return standardDeviation >= minStandardDeviation && standardDeviation <= maxStandardDeviation;
+    }
+
+    private void normalizeSpectrum() {
+        double maxAmp = Double.MIN_VALUE;
+        double minAmp = Double.MAX_VALUE;
+        for (double value : spectrum) {
+            if (value > maxAmp) {
+                maxAmp = value;
+            } else if (value < minAmp) {
+                minAmp = value;
+            }
+        }
+        if (minAmp == 0) {
+            minAmp = MIN_VALID_AMPLITUDE;
+        }
+        double diff = Math.log10(maxAmp / minAmp);
+        for (int i = 0; i < spectrum.length; i++) {
+            if (spectrum[i] < MIN_VALID_AMPLITUDE) {
+                spectrum[i] = 0;
+            } else {
+                spectrum[i] = Math.log10(spectrum[i] / minAmp) / diff;
+            }
+        }
+    }
+
+    private static int getMaxValueIndex(double[] values, int from, int to) {
+        int maxIndex = 0;
+        double maxValue = Integer.MIN_VALUE;
+        for (int i = from; i <= to; i++) {
+            if (values[i] > maxValue) {
+                maxValue = values[i];
+                maxIndex = i - from;
+            }
+        }
+        return maxIndex;
+    }
+
+    /**
+     * Quickselect of the n-th largest value; partially reorders {@code values} the same way
+     * as musicg's {@code ArrayRankDouble}, which decides which ties are picked afterwards.
+     */
+    private static double getNthLargestValue(double[] values, int n) {
+        int index = values.length - Math.min(n, values.length);
+        locate(values, 0, values.length - 1, index);
+        return values[index];
+    }
+
+    private static void locate(double[] values, int left, int right, int index) {
+        while (left < right) {
+            double pivot = values[(left + right) / 2];
+            int i = left - 1;
+            int j = right + 1;
+            while (true) {
+                while (values[++i] < pivot) {
+                }
+                while (values[--j] > pivot) {
+                }
+                if (i >= j) {
+                    break;
+                }
+                double tmp = values[i];
+                values[i] = values[j];
+                values[j] = tmp;
+            }
+            if (i > index) {
+                right = i - 1;
+            } else {
+                left = j + 1;
+            }
+        }
+    }
+}
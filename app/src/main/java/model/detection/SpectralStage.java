@@ -0,0 +1,28 @@
+package model.detection;
+
+/**
+ * Cascade stage that locates the spectral peak of a window, in floating or fixed point.
+ * The pipeline reads the peak and the band limits through it.
+ */
+public interface SpectralStage extends DetectionEngine {
+
+    /**
+     * Frequency of the strongest bin of the last window in musicg's frequency units, or 0
+     * if the window was rejected before the spectrum was computed.
+     */
+    double getPeakFrequency();
+
+    int getMinNumZeroCross();
+
+    int getMaxNumZeroCross();
+
+    /**
+     * Lowest peak frequency the stage accepts, in Hz.
+     */
+    double getMinFrequency();
+
+    /**
+     * Upper edge of the band searched for the peak, in Hz.
+     */
+    int getLowPass();
+}
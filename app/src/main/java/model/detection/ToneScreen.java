@@ -0,0 +1,123 @@
+package model.detection;
+
+import java.nio.ShortBuffer;
+
+import model.dsp.GoertzelBank;
+import model.dsp.NoiseFloorTracker;
+
+/**
+ * Cheap spectral cascade stage: passes frames whose strongest Goertzel bin in the
+ * screened band holds at least {@code minToneRatio} of the block energy.
+ * <p>
+ * Only the start of the frame is examined, so a steady whistle passes while broadband
+ * noise and sounds outside the band are rejected before any FFT is computed.
+ * <p>
+ * With {@link #setWhitening(double)} every bin is also divided by its own tracked noise
+ * floor, and the strongest whitened bin must stand {@code minSnr} above it. Stationary
+ * tones such as fans or hum then stop passing the screen after a few seconds.
+ */
+public class ToneScreen implements DetectionEngine {
+
+    public static final double DEFAULT_MIN_FREQUENCY = 600;
+    public static final double DEFAULT_MAX_FREQUENCY = 3000;
+    public static final int DEFAULT_DECIMATION = 2;
+    public static final int DEFAULT_BLOCK_SIZE = 128;
+    public static final double DEFAULT_MIN_TONE_RATIO = 0.2;
+
+    // bin powers fluctuate a lot, so the floor follows them nearly symmetrically and
+    // settles around 0.65 of the mean noise power; adapts over ~10 s of windows
+    private static final double DEFAULT_FLOOR_RISE_RATE = 0.001;
+    private static final double DEFAULT_FLOOR_FALL_RATE = 0.003;
+    private static final double PASSED_FLOOR_RATE_SCALE = 0.1;
+
+    private final GoertzelBank bank;
+    private final int frameSize;
+    private final double minToneRatio;
+    private final short[] bufferFrame;
+    private NoiseFloorTracker noiseFloor;
+    private double minSnr;
+    private double whitenedPeak;
+
+    public ToneScreen(int sampleRate, int frameSize) {
+        this(new GoertzelBank(sampleRate, DEFAULT_DECIMATION, DEFAULT_BLOCK_SIZE,
+                DEFAULT_MIN_FREQUENCY, DEFAULT_MAX_FREQUENCY), frameSize, DEFAULT_MIN_TONE_RATIO);
+    }
+
+    public ToneScreen(GoertzelBank bank, int frameSize, double minToneRatio) {
+        if (bank.getInputLength() > frameSize) {
+            throw new IllegalArgumentException("screen block larger than the frame");
+        }
+        this.bank = bank;
+        this.frameSize = frameSize;
+        this.minToneRatio = minToneRatio;
+        this.bufferFrame = new short[bank.getInputLength()];
+    }
+
+    /**
+     * Normalizes each bin by its background level and requires the strongest bin to be
+     * {@code minSnr} times (in power) above its floor.
+     */
+    public ToneScreen setWhitening(double minSnr) {
+        this.noiseFloor = new NoiseFloorTracker(bank.getNumFilters(), DEFAULT_FLOOR_RISE_RATE, DEFAULT_FLOOR_FALL_RATE);
+        this.minSnr = minSnr;
+        return this;
+    }
+
+    @Override
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    @Override
+    public boolean analyze(short[] samples, int offset) {
+        bank.process(samples, offset);
+        if (noiseFloor == null) {
+            return bank.getPeakToneRatio() >= minToneRatio;
+        }
+        boolean tonal = bank.getPeakToneRatio() >= minToneRatio;
+        // all bins are seeded together; until then only the tone ratio can be judged, and a
+        // tonal frame must not seed the floors or the first whistle would whiten itself away
+        if (Double.isNaN(noiseFloor.getFloor(0))) {
+            whitenedPeak = Double.POSITIVE_INFINITY;
+            if (tonal) {
+                return true;
+            }
+        }
+        double peak = 0;
+        for (int f = 0; f < bank.getNumFilters(); f++) {
+            peak = Math.max(peak, noiseFloor.whiten(f, bank.getPower(f)));
+        }
+        whitenedPeak = peak;
+        boolean passed = tonal && peak >= minSnr;
+        // barely adapt while a tone is present, so frequent whistles do not whiten themselves away
+        double rateScale = passed ? PASSED_FLOOR_RATE_SCALE : 1;
+        for (int f = 0; f < bank.getNumFilters(); f++) {
+            noiseFloor.update(f, bank.getPower(f), rateScale);
+        }
+        return passed;
+    }
+
+    @Override
+    public boolean analyze(ShortBuffer samples) {
+        if (samples.hasArray()) {
+            return analyze(samples.array(), samples.arrayOffset() + samples.position());
+        }
+        int position = samples.position();
+        for (int i = 0; i < bufferFrame.length; i++) {
+            bufferFrame[i] = samples.get(position + i);
+        }
+        return analyze(bufferFrame, 0);
+    }
+
+    /**
+     * Strongest bin of the last frame relative to its noise floor; 0 without whitening and
+     * infinite before the floors are known.
+     */
+    public double getWhitenedPeak() {
+        return whitenedPeak;
+    }
+
+    public GoertzelBank getBank() {
+        return bank;
+    }
+}
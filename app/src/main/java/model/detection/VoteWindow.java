@@ -0,0 +1,128 @@
+package model.detection;
+
+/**
+ * Sliding vote over the last {@code length} per-frame decisions, kept as bits of a
+ * {@code long} and scored with a popcount, plus a hysteresis state machine that turns
+ * the noisy frame decisions into discrete events.
+ * <pre>
+ * IDLE --positive--&gt; CANDIDATE --score &gt;= passScore--&gt; CONFIRMED (fires once)
+ * CANDIDATE --score == 0--&gt; IDLE
+ * CONFIRMED --score &lt;= releaseScore--&gt; COOLDOWN --cooldownVotes later--&gt; IDLE
+ * </pre>
+ * A sound held for a long time therefore fires once, and a new event can only fire after
+ * the previous one has ended and the cooldown (debounce) has passed.
+ */
+public final class VoteWindow {
+
+    public enum State {
+        IDLE, CANDIDATE, CONFIRMED, COOLDOWN
+    }
+
+    private final int length;
+    private final long mask;
+    private final int passScore;
+    private final int releaseScore;
+    private final int cooldownVotes;
+
+    private long votes;
+    private State state = State.IDLE;
+    private int cooldownLeft;
+    private long eventCount;
+
+    /**
+     * @param length        number of recent votes considered, 1 to 64
+     * @param passScore     positive votes in the window needed to confirm an event
+     * @param releaseScore  the event ends once the score falls to this value
+     * @param cooldownVotes votes to ignore after an event ends before a new one can start
+     */
+    public VoteWindow(int length, int passScore, int releaseScore, int cooldownVotes) {
+        if (length < 1 || length > 64) {
+            throw new IllegalArgumentException("length must be between 1 and 64: " + length);
+        }
+        if (passScore < 1 || passScore > length || releaseScore < 0 || releaseScore >= passScore) {
+            throw new IllegalArgumentException("need 0 <= releaseScore < passScore <= length");
+        }
+        this.length = length;
+        this.mask = length == 64 ? -1L : (1L << length) - 1;
+        this.passScore = passScore;
+        this.releaseScore = releaseScore;
+        this.cooldownVotes = Math.max(0, cooldownVotes);
+    }
+
+    /**
+     * Adds the decision of the next frame.
+     *
+     * @return true exactly once per confirmed event
+     */
+    public boolean vote(boolean positive) {
+        votes = ((votes << 1) | (positive ? 1 : 0)) & mask;
+        int score = Long.bitCount(votes);
+        switch (state) {
+            case IDLE:
+                if (positive) {
+                    state = State.CANDIDATE;
+                    return confirmIfPassed(score);
+                }
+                return false;
+            case CANDIDATE:
+                if (score == 0) {
+                    state = State.IDLE;
+                    return false;
+                }
+                return confirmIfPassed(score);
+            case CONFIRMED:
+                if (score <= releaseScore) {
+                    state = State.COOLDOWN;
+                    cooldownLeft = cooldownVotes;
+                    if (cooldownLeft == 0) {
+                        state = State.IDLE;
+                    }
+                }
+                return false;
+            case COOLDOWN:
+            default:
+                if (--cooldownLeft <= 0) {
+                    state = score > 0 ? State.CANDIDATE : State.IDLE;
+                }
+                return false;
+        }
+    }
+
+    private boolean confirmIfPassed(int score) {
+        if (score >= passScore) {
+            state = State.CONFIRMED;
+            eventCount++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Number of positive votes currently in the window.
+     */
+    public int getScore() {
+        return Long.bitCount(votes);
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Number of events confirmed since creation or the last {@link #reset()}.
+     */
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    public void reset() {
+        votes = 0;
+        state = State.IDLE;
+        cooldownLeft = 0;
+        eventCount = 0;
+    }
+}
@@ -0,0 +1,45 @@
+package model.detection;
+
+/**
+ * Parameters of the {@link QuantizedClassifier} behind {@code WHISTLE_CLASSIFIER}, generated by
+ * {@code tools.TrainClassifierMain} from 19326 windows (5335 positive) of 24 recordings at
+ * 44100 Hz, frame 1024, hop 512: 16 inputs, 12 hidden units, threshold 0.5. Do not edit.
+ */
+public final class WhistleClassifierModel {
+
+    private WhistleClassifierModel() {
+    }
+
+    public static QuantizedClassifier create() {
+        return new QuantizedClassifier(
+                44100, 1024,
+                new float[]{
+                        -56.550632F, -55.415833F, -53.99727F, -53.074875F, -46.68641F, -40.001186F,
+                        -37.47595F, -48.761383F, -21.647236F, 5148.782F, 2499.2847F, 35.198284F,
+                        0.01407717F, 0.8949394F, 0.28336126F, 0.15321533F
+                },
+                new float[]{
+                        5.169415F, 5.2808886F, 4.998992F, 4.312081F, 2.2401009F, 1.8735012F,
+                        2.240487F, 3.1279023F, 5.7715673F, 0.020556081F, 0.040820256F, 2.7503622F,
+                        902.43866F, 168.76366F, 25.926794F, 17.164743F
+                },
+                new byte[]{
+                        0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+                        18, -53, -5, 32, -54, 37, 28, 22, 5, -74, 45, -127, -22, -72, 27, -33,
+                        -20, -9, -22, -33, -12, -12, -59, -120, 127, 27, 40, -21, 23, -82, 6, -2,
+                        11, 33, 70, 43, 57, 127, -5, 109, 22, -5, 7, -112, 53, 23, -55, 0,
+                        54, 19, 75, 31, 59, -80, -39, 111, -6, 117, 127, 27, -35, 25, 67, -23,
+                        4, -4, -10, -1, 32, 7, 12, 127, -40, -25, 61, -40, 18, 44, -49, -5,
+                        6, -36, -23, -57, 18, -12, -127, 6, -17, 14, -41, 40, -16, 45, -1, -2,
+                        -19, -14, -28, -25, -115, 9, 16, 127, -2, 47, -21, 25, -22, 42, -83, -7,
+                        10, 14, 31, 44, 22, -69, 82, -127, -9, 14, 66, 70, 8, -45, 51, 9,
+                        18, 17, 28, 30, 97, -80, 127, 101, 68, -106, -96, 20, -35, 31, -53, 18,
+                        0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+                        3, -8, 6, -20, -4, 68, -54, 49, 127, 23, 25, 39, -31, -4, 25, -13
+                },
+                new int[]{677277287, 1112, -1001, 1784, 2224, 1913, -863, 197, -2061, 3730, 817810384, -2177},
+                new int[]{0, 81397, 138494, 69609, 41770, 134850, 102686, 112452, 87409, 57773, 0, 92267},
+                new byte[]{3, -60, -100, -81, -83, -127, 34, 68, -53, 62, 2, 100},
+                116, 0.003662586F, 0);
+    }
+}
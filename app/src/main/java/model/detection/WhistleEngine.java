@@ -0,0 +1,35 @@
+package model.detection;
+
+/**
+ * Whistle detector with the thresholds of musicg's {@code WhistleApi}.
+ */
+public class WhistleEngine extends SpectralDetectionEngine {
+
+    public WhistleEngine(int sampleRate, int frameSize) {
+        super(sampleRate, frameSize);
+    }
+
+    public WhistleEngine(SharedSpectrum sharedSpectrum) {
+        super(sharedSpectrum);
+    }
+
+    @Override
+    protected void init() {
+        minFrequency = 600.0F;
+        maxFrequency = Double.MAX_VALUE;
+
+        minIntensity = 100.0F;
+        maxIntensity = 100000.0F;
+
+        minStandardDeviation = 0.1F;
+        maxStandardDeviation = 1.0F;
+
+        highPass = 100;
+        lowPass = 10000;
+
+        minNumZeroCross = 50;
+        maxNumZeroCross = 200;
+
+        numRobust = 10;
+    }
+}
@@ -0,0 +1,120 @@
+package model.detection;
+
+/**
+ * Template for a whistle signal: a sequence of whistles, each with a duration range and a
+ * pitch shape, separated by short gaps. Matched by {@link ContourMatcher}.
+ */
+public final class WhistlePattern {
+
+    /**
+     * Pitch movement over one whistle, from the mean of its first windows to the mean of
+     * its last ones.
+     */
+    public enum Shape {
+        ANY, FLAT, RISING, FALLING;
+
+        boolean matches(double bendCents) {
+            switch (this) {
+                case FLAT:
+                    return Math.abs(bendCents) < GLIDE_CENTS;
+                case RISING:
+                    return bendCents >= GLIDE_CENTS;
+                case FALLING:
+                    return bendCents <= -GLIDE_CENTS;
+                default:
+                    return true;
+            }
+        }
+    }
+
+    /**
+     * One whistle of a pattern.
+     */
+    public static final class Segment {
+        final Shape shape;
+        final int minMillis;
+        final int maxMillis;
+
+        public Segment(Shape shape, int minMillis, int maxMillis) {
+            if (minMillis < 0 || maxMillis < minMillis) {
+                throw new IllegalArgumentException("bad duration range");
+            }
+            this.shape = shape;
+            this.minMillis = minMillis;
+            this.maxMillis = maxMillis;
+        }
+    }
+
+    // pitch change that counts as a deliberate glide: three semitones
+    public static final double GLIDE_CENTS = 300;
+    public static final int DEFAULT_MAX_GAP_MS = 500;
+
+    public static final WhistlePattern RISING = new WhistlePattern("RISING", DEFAULT_MAX_GAP_MS,
+            new Segment(Shape.RISING, 200, 5000));
+    public static final WhistlePattern FALLING = new WhistlePattern("FALLING", DEFAULT_MAX_GAP_MS,
+            new Segment(Shape.FALLING, 200, 5000));
+    public static final WhistlePattern TWO_SHORT = new WhistlePattern("TWO_SHORT", DEFAULT_MAX_GAP_MS,
+            new Segment(Shape.ANY, 80, 450), new Segment(Shape.ANY, 80, 450));
+    public static final WhistlePattern LONG = new WhistlePattern("LONG", DEFAULT_MAX_GAP_MS,
+            new Segment(Shape.ANY, 800, 10000));
+
+    private final String name;
+    private final int maxGapMillis;
+    private final Segment[] segments;
+
+    /**
+     * @param maxGapMillis longest silence allowed between two whistles of the pattern
+     */
+    public WhistlePattern(String name, int maxGapMillis, Segment... segments) {
+        if (segments.length == 0 || segments.length > ContourMatcher.MAX_SEGMENTS) {
+            throw new IllegalArgumentException("need 1 to " + ContourMatcher.MAX_SEGMENTS + " segments");
+        }
+        this.name = name;
+        this.maxGapMillis = maxGapMillis;
+        this.segments = segments.clone();
+    }
+
+    /**
+     * The built-in signals, glides first so that a long rising whistle is not reported as
+     * {@link #LONG}.
+     */
+    public static WhistlePattern[] defaults() {
+        return new WhistlePattern[]{RISING, FALLING, TWO_SHORT, LONG};
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxGapMillis() {
+        return maxGapMillis;
+    }
+
+    public int getSegmentCount() {
+        return segments.length;
+    }
+
+    /**
+     * Whether the first {@code count} whistles of a sequence are exactly this pattern;
+     * {@code gapsMillis[i]} is the silence before whistle {@code i}.
+     */
+    boolean matches(int count, double[] durationsMillis, double[] bendsCents, double[] gapsMillis) {
+        if (count != segments.length) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            Segment segment = segments[i];
+            if (durationsMillis[i] < segment.minMillis || durationsMillis[i] > segment.maxMillis
+                    || !segment.shape.matches(bendsCents[i])
+                    || (i > 0 && gapsMillis[i] > maxGapMillis)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
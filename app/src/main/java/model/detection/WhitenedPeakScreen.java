@@ -0,0 +1,108 @@
+package model.detection;
+
+import java.nio.ShortBuffer;
+
+import model.dsp.NoiseFloorTracker;
+
+/**
+ * Cascade stage that whitens the shared spectrum by a tracked per-bin noise floor and
+ * passes windows whose strongest bin in the band stands {@code minSnr} above its own floor.
+ * <p>
+ * It reads the {@link SharedSpectrum} magnitudes the spectral engine after it reuses, so it
+ * adds no FFT, only one pass over the bins. Stationary tones such as fans, hum or a kettle
+ * raise their own floors and stop passing within seconds, while the engine's thresholds stay
+ * exactly musicg's. This is the full-spectrum counterpart of {@link ToneScreen#setWhitening}.
+ */
+public final class WhitenedPeakScreen implements DetectionEngine {
+
+    // as in ToneScreen: the floor settles around 0.65 of the mean noise power of a bin and
+    // adapts over ~10 s of windows
+    private static final double FLOOR_RISE_RATE = 0.001;
+    private static final double FLOOR_FALL_RATE = 0.003;
+    private static final double PASSED_FLOOR_RATE_SCALE = 0.1;
+
+    private final SharedSpectrum spectrum;
+    private final int lowBin;
+    private final int highBin;
+    private final double minSnr;
+    private final NoiseFloorTracker noiseFloor;
+    private final short[] bufferFrame;
+    private double whitenedPeak;
+
+    /**
+     * @param minFrequency lowest frequency screened, usually the engine's
+     * @param minSnr       power ratio the strongest bin needs over its floor
+     */
+    public WhitenedPeakScreen(SharedSpectrum spectrum, double minFrequency, double minSnr) {
+        this.spectrum = spectrum;
+        this.lowBin = Math.max(1, (int) Math.ceil(minFrequency / spectrum.getUnitFrequency()));
+        this.highBin = spectrum.getNumBins() - 1;
+        if (lowBin >= highBin) {
+            throw new IllegalArgumentException("no bins above " + minFrequency + " Hz");
+        }
+        this.minSnr = minSnr;
+        this.noiseFloor = new NoiseFloorTracker(highBin - lowBin + 1, FLOOR_RISE_RATE, FLOOR_FALL_RATE);
+        this.bufferFrame = new short[spectrum.getFrameSize()];
+    }
+
+    @Override
+    public int getFrameSize() {
+        return spectrum.getFrameSize();
+    }
+
+    @Override
+    public boolean analyze(short[] samples, int offset) {
+        double[] magnitudes = spectrum.getMagnitudes(samples, offset);
+        if (Double.isNaN(noiseFloor.getFloor(0))) {
+            // until the floors are seeded the peak is judged against the window's own mean,
+            // and a window with a clear peak must not seed them or it would whiten itself away
+            double peak = 0;
+            double sum = 0;
+            for (int k = lowBin; k <= highBin; k++) {
+                double power = magnitudes[k] * magnitudes[k];
+                peak = Math.max(peak, power);
+                sum += power;
+            }
+            whitenedPeak = Double.POSITIVE_INFINITY;
+            if (peak * (highBin - lowBin + 1) >= minSnr * sum) {
+                return true;
+            }
+            for (int k = lowBin; k <= highBin; k++) {
+                noiseFloor.update(k - lowBin, magnitudes[k] * magnitudes[k]);
+            }
+            return false;
+        }
+        double peak = 0;
+        for (int k = lowBin; k <= highBin; k++) {
+            peak = Math.max(peak, noiseFloor.whiten(k - lowBin, magnitudes[k] * magnitudes[k]));
+        }
+        whitenedPeak = peak;
+        boolean passed = peak >= minSnr;
+        // barely adapt while a tone is present, so frequent whistles do not whiten themselves away
+        double rateScale = passed ? PASSED_FLOOR_RATE_SCALE : 1;
+        for (int k = lowBin; k <= highBin; k++) {
+            noiseFloor.update(k - lowBin, magnitudes[k] * magnitudes[k], rateScale);
+        }
+        return passed;
+    }
+
+    @Override
+    public boolean analyze(ShortBuffer samples) {
+        if (samples.hasArray()) {
+            return analyze(samples.array(), samples.arrayOffset() + samples.position());
+        }
+        int position = samples.position();
+        for (int i = 0; i < bufferFrame.length; i++) {
+            bufferFrame[i] = samples.get(position + i);
+        }
+        return analyze(bufferFrame, 0);
+    }
+
+    /**
+     * Strongest bin of the last window relative to its noise floor; infinite before the
+     * floors are known.
+     */
+    public double getWhitenedPeak() {
+        return whitenedPeak;
+    }
+}
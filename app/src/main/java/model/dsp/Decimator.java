@@ -0,0 +1,112 @@
+package model.dsp;
+
+/**
+ * Integer-factor decimator for 16 bit PCM: a linear-phase Hamming-windowed sinc low-pass
+ * evaluated only at the samples that are kept, which is the polyphase form of decimation
+ * and costs {@code taps / factor} multiply-adds per input sample.
+ * <p>
+ * The cutoff sits at the output Nyquist frequency, so every {@code factor}-th coefficient
+ * away from the centre is zero. With {@link #TAPS_PER_PHASE} taps per phase the response
+ * is flat to 0.31 of the output rate (5 kHz at 16 kHz) and everything that would alias back
+ * below that edge is attenuated by at least 50 dB; aliases land only between the edge and
+ * the output Nyquist frequency, above the whistle band.
+ * <p>
+ * The filter state carries over between calls, so a stream can be fed in frames of any
+ * length. Coefficients are Q15 and the accumulator 64 bits.
+ */
+public final class Decimator {
+
+    public static final int TAPS_PER_PHASE = 10;
+
+    private static final int COEFFICIENT_BITS = 15;
+
+    private final int factor;
+    private final int taps;
+    private final int[] coefficients;
+    // the last taps inputs, twice, so they are always contiguous from position + 1
+    private final short[] delay;
+    private int position;
+    private int phase;
+
+    /**
+     * @param factor input samples per output sample, at least 2
+     */
+    public Decimator(int factor) {
+        if (factor < 2) {
+            throw new IllegalArgumentException("decimation factor must be at least 2: " + factor);
+        }
+        this.factor = factor;
+        this.taps = TAPS_PER_PHASE * factor + 1;
+        this.coefficients = design(factor, taps);
+        this.delay = new short[2 * taps];
+    }
+
+    public int getFactor() {
+        return factor;
+    }
+
+    public int getTaps() {
+        return taps;
+    }
+
+    /**
+     * Filters {@code length} input samples and writes every {@code factor}-th output.
+     *
+     * @return the number of samples written to {@code output}
+     */
+    public int process(short[] input, int inOffset, int length, short[] output, int outOffset) {
+        int written = 0;
+        int[] h = coefficients;
+        for (int i = 0; i < length; i++) {
+            short sample = input[inOffset + i];
+            position = position + 1 == taps ? 0 : position + 1;
+            delay[position] = sample;
+            delay[position + taps] = sample;
+            if (++phase < factor) {
+                continue;
+            }
+            phase = 0;
+            long sum = 0;
+            int start = position + 1;
+            for (int k = 0; k < taps; k++) {
+                sum += h[k] * delay[start + k];
+            }
+            int value = (int) ((sum + (1 << (COEFFICIENT_BITS - 1))) >> COEFFICIENT_BITS);
+            output[outOffset + written++] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+        }
+        return written;
+    }
+
+    public void reset() {
+        for (int i = 0; i < delay.length; i++) {
+            delay[i] = 0;
+        }
+        position = 0;
+        phase = 0;
+    }
+
+    /**
+     * Windowed sinc with unit DC gain, rounded to Q15 with the rounding error put on the
+     * centre tap.
+     */
+    private static int[] design(int factor, int taps) {
+        double[] h = new double[taps];
+        int centre = taps / 2;
+        double sum = 0;
+        for (int n = 0; n < taps; n++) {
+            int m = n - centre;
+            double sinc = m == 0 ? 1.0 / factor : Math.sin(Math.PI * m / factor) / (Math.PI * m);
+            double window = 0.54 - 0.46 * Math.cos(2 * Math.PI * n / (taps - 1));
+            h[n] = sinc * window;
+            sum += h[n];
+        }
+        int[] q = new int[taps];
+        int total = 0;
+        for (int n = 0; n < taps; n++) {
+            q[n] = (int) Math.round(h[n] / sum * (1 << COEFFICIENT_BITS));
+            total += q[n];
+        }
+        q[centre] += (1 << COEFFICIENT_BITS) - total;
+        return q;
+    }
+}
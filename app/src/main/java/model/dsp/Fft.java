@@ -0,0 +1,80 @@
+package model.dsp;
+
+/**
+ * In-place radix-2 complex FFT with precomputed twiddle and bit-reversal tables.
+ * <p>
+ * Data is interleaved {@code re, im, re, im, ...}. The transform is the forward
+ * DFT (negative exponent), matching {@code com.sun.media.sound.FFT(n, -1)} used by musicg.
+ * Instances are not thread safe but hold no per-call state, so one plan can be
+ * reused for every frame of the same size.
+ */
+public final class Fft {
+
+    private final int size;
+    private final double[] cos;
+    private final double[] sin;
+    private final int[] bitReverse;
+
+    /**
+     * @param size number of complex points, must be a power of 2
+     */
+    public Fft(int size) {
+        if (size < 2 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("FFT size must be a power of 2: " + size);
+        }
+        this.size = size;
+        int half = size / 2;
+        cos = new double[half];
+        sin = new double[half];
+        for (int k = 0; k < half; k++) {
+            double angle = -2 * Math.PI * k / size;
+            cos[k] = Math.cos(angle);
+            sin[k] = Math.sin(angle);
+        }
+        int bits = Integer.numberOfTrailingZeros(size);
+        bitReverse = new int[size];
+        for (int i = 0; i < size; i++) {
+            bitReverse[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Transforms {@code 2 * size} interleaved values in place.
+     */
+    public void transform(double[] data) {
+        for (int i = 0; i < size; i++) {
+            int j = bitReverse[i];
+            if (j > i) {
+                int a = i << 1;
+                int b = j << 1;
+                double re = data[a];
+                double im = data[a + 1];
+                data[a] = data[b];
+                data[a + 1] = data[b + 1];
+                data[b] = re;
+                data[b + 1] = im;
+            }
+        }
+        for (int span = 1; span < size; span <<= 1) {
+            int twiddleStep = size / (span << 1);
+            for (int start = 0; start < size; start += span << 1) {
+                for (int k = 0, t = 0; k < span; k++, t += twiddleStep) {
+                    int a = (start + k) << 1;
+                    int b = (start + k + span) << 1;
+                    double wr = cos[t];
+                    double wi = sin[t];
+                    double br = data[b] * wr - data[b + 1] * wi;
+                    double bi = data[b] * wi + data[b + 1] * wr;
+                    data[b] = data[a] - br;
+                    data[b + 1] = data[a + 1] - bi;
+                    data[a] += br;
+                    data[a + 1] += bi;
+                }
+            }
+        }
+    }
+}
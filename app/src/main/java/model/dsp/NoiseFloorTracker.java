@@ -0,0 +1,81 @@
+package model.dsp;
+
+/**
+ * Online per-band noise floor estimate with O(1) state per band.
+ * <p>
+ * Each band follows an asymmetric exponential average: it drops quickly towards quieter
+ * values and rises slowly towards louder ones, so it tracks the minimum-ish background
+ * level while short events such as a whistle barely move it. This is a cheap stand-in
+ * for minimum statistics that needs no history window.
+ */
+public final class NoiseFloorTracker {
+
+    private final double[] floors;
+    private final double riseRate;
+    private final double fallRate;
+
+    /**
+     * @param numBands number of independently tracked bands
+     * @param riseRate fraction of the distance covered per update when the value is above
+     *                 the floor, e.g. 0.002 (time constant of ~500 updates)
+     * @param fallRate fraction covered when the value is below the floor, e.g. 0.2
+     */
+    public NoiseFloorTracker(int numBands, double riseRate, double fallRate) {
+        if (riseRate <= 0 || riseRate > 1 || fallRate <= 0 || fallRate > 1) {
+            throw new IllegalArgumentException("rates must be in (0, 1]");
+        }
+        this.floors = new double[numBands];
+        this.riseRate = riseRate;
+        this.fallRate = fallRate;
+        reset();
+    }
+
+    public int getNumBands() {
+        return floors.length;
+    }
+
+    /**
+     * Feeds the latest value of {@code band} and returns the updated floor.
+     */
+    public double update(int band, double value) {
+        return update(band, value, 1);
+    }
+
+    /**
+     * Like {@link #update(int, double)} with both rates scaled by {@code rateScale}, e.g. to
+     * adapt much more slowly while a target sound is believed to be present.
+     */
+    public double update(int band, double value, double rateScale) {
+        double floor = floors[band];
+        if (Double.isNaN(floor)) {
+            floor = value;
+        } else if (value > floor) {
+            floor += riseRate * rateScale * (value - floor);
+        } else {
+            floor += fallRate * rateScale * (value - floor);
+        }
+        floors[band] = floor;
+        return floor;
+    }
+
+    /**
+     * Current floor of {@code band}, or NaN before its first update.
+     */
+    public double getFloor(int band) {
+        return floors[band];
+    }
+
+    /**
+     * Ratio of {@code value} to the floor of {@code band}; the whitened value of that band.
+     */
+    public double whiten(int band, double value) {
+        double floor = floors[band];
+        return floor > 0 ? value / floor : 1;
+    }
+
+    public void reset() {
+        for (int i = 0; i < floors.length; i++) {
+            floors[i] = Double.NaN;
+        }
+    }
+}
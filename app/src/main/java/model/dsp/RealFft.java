@@ -0,0 +1,223 @@
+package model.dsp;
+
+/**
+ * Forward FFT of real {@code float} frames, with every table precomputed in the constructor.
+ * <p>
+ * A frame of {@code size} real samples is packed into a complex sequence of half the length
+ * (even samples as real parts, odd samples as imaginary parts), transformed, and split into
+ * the spectrum of the real frame with one extra pass. This costs about half of a complex
+ * FFT of the full frame.
+ * <p>
+ * The complex transform runs radix-4 stages, after one radix-2 stage when the half size is
+ * an odd power of 2. Real and imaginary parts live in separate contiguous arrays, and each
+ * stage reads its twiddles sequentially from its own table slice, so the inner loops are
+ * plain strided array arithmetic that the JIT can unroll and vectorize.
+ * <p>
+ * Instances keep scratch buffers and are not thread safe; build one plan per size and
+ * thread and reuse it for every frame, as with {@link Fft}.
+ */
+public final class RealFft {
+
+    private final int size;
+    private final int half;
+    private final int[] bitReverse;
+    // twiddles of all radix-4 stages, one slice of 3 * span values per stage and table
+    private final float[] twiddleRe;
+    private final float[] twiddleIm;
+    // e^{-2 pi i k / size} for the real split, k = 0 .. half / 2
+    private final float[] splitRe;
+    private final float[] splitIm;
+    private final float[] re;
+    private final float[] im;
+
+    /**
+     * @param size number of real samples per frame, a power of 2 of at least 8
+     */
+    public RealFft(int size) {
+        if (size < 8 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("FFT size must be a power of 2 of at least 8: " + size);
+        }
+        this.size = size;
+        this.half = size / 2;
+        int bits = Integer.numberOfTrailingZeros(half);
+        bitReverse = new int[half];
+        for (int i = 0; i < half; i++) {
+            bitReverse[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+
+        int tableLength = 0;
+        for (int span = firstRadix4Span(); span < half; span <<= 2) {
+            tableLength += 3 * span;
+        }
+        twiddleRe = new float[tableLength];
+        twiddleIm = new float[tableLength];
+        int base = 0;
+        for (int span = firstRadix4Span(); span < half; span <<= 2) {
+            // W^k, W^2k and W^3k with W = e^{-2 pi i / (4 span)}
+            for (int m = 1; m <= 3; m++) {
+                for (int k = 0; k < span; k++) {
+                    double angle = -2 * Math.PI * m * k / (4.0 * span);
+                    twiddleRe[base + (m - 1) * span + k] = (float) Math.cos(angle);
+                    twiddleIm[base + (m - 1) * span + k] = (float) Math.sin(angle);
+                }
+            }
+            base += 3 * span;
+        }
+
+        splitRe = new float[half / 2 + 1];
+        splitIm = new float[half / 2 + 1];
+        for (int k = 0; k <= half / 2; k++) {
+            double angle = -2 * Math.PI * k / size;
+            splitRe[k] = (float) Math.cos(angle);
+            splitIm[k] = (float) Math.sin(angle);
+        }
+        re = new float[half];
+        im = new float[half];
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Number of spectrum bins, DC to Nyquist: {@code size / 2 + 1}.
+     */
+    public int getNumBins() {
+        return half + 1;
+    }
+
+    /**
+     * Spectrum of {@code size} real samples from {@code input[offset]}: bins 0 to
+     * {@code size / 2} go to {@code outRe} and {@code outIm}, unscaled.
+     */
+    public void transform(float[] input, int offset, float[] outRe, float[] outIm) {
+        // pack and bit-reverse in one pass
+        for (int j = 0; j < half; j++) {
+            int r = bitReverse[j];
+            re[r] = input[offset + 2 * j];
+            im[r] = input[offset + 2 * j + 1];
+        }
+        complexTransform();
+        split(outRe, outIm);
+    }
+
+    /**
+     * Squared magnitudes of the {@code size / 2 + 1} bins of {@code size} real samples.
+     */
+    public void powerSpectrum(float[] input, int offset, float[] power) {
+        transform(input, offset, power, null);
+    }
+
+    private int firstRadix4Span() {
+        // an odd number of radix-2 levels leaves one radix-2 stage up front
+        return (Integer.numberOfTrailingZeros(half) & 1) == 1 ? 2 : 1;
+    }
+
+    private void complexTransform() {
+        float[] re = this.re;
+        float[] im = this.im;
+        int span = firstRadix4Span();
+        if (span == 2) {
+            for (int a = 0; a < half; a += 2) {
+                float br = re[a + 1];
+                float bi = im[a + 1];
+                re[a + 1] = re[a] - br;
+                im[a + 1] = im[a] - bi;
+                re[a] += br;
+                im[a] += bi;
+            }
+        }
+        int base = 0;
+        for (; span < half; span <<= 2) {
+            int w1 = base;
+            int w2 = base + span;
+            int w3 = base + 2 * span;
+            for (int start = 0; start < half; start += 4 * span) {
+                int p0 = start;
+                int p1 = start + span;
+                int p2 = start + 2 * span;
+                int p3 = start + 3 * span;
+                for (int k = 0; k < span; k++) {
+                    // inputs are the sub-transforms of residues 0, 2, 1 and 3 (binary bit reversal)
+                    float ar = re[p0 + k];
+                    float ai = im[p0 + k];
+                    float xr = re[p1 + k];
+                    float xi = im[p1 + k];
+                    float br = xr * twiddleRe[w2 + k] - xi * twiddleIm[w2 + k];
+                    float bi = xr * twiddleIm[w2 + k] + xi * twiddleRe[w2 + k];
+                    xr = re[p2 + k];
+                    xi = im[p2 + k];
+                    float cr = xr * twiddleRe[w1 + k] - xi * twiddleIm[w1 + k];
+                    float ci = xr * twiddleIm[w1 + k] + xi * twiddleRe[w1 + k];
+                    xr = re[p3 + k];
+                    xi = im[p3 + k];
+                    float dr = xr * twiddleRe[w3 + k] - xi * twiddleIm[w3 + k];
+                    float di = xr * twiddleIm[w3 + k] + xi * twiddleRe[w3 + k];
+
+                    float sumAbR = ar + br;
+                    float sumAbI = ai + bi;
+                    float difAbR = ar - br;
+                    float difAbI = ai - bi;
+                    float sumCdR = cr + dr;
+                    float sumCdI = ci + di;
+                    float difCdR = cr - dr;
+                    float difCdI = ci - di;
+
+                    re[p0 + k] = sumAbR + sumCdR;
+                    im[p0 + k] = sumAbI + sumCdI;
+                    // -i (c - d)
+                    re[p1 + k] = difAbR + difCdI;
+                    im[p1 + k] = difAbI - difCdR;
+                    re[p2 + k] = sumAbR - sumCdR;
+                    im[p2 + k] = sumAbI - sumCdI;
+                    // +i (c - d)
+                    re[p3 + k] = difAbR - difCdI;
+                    im[p3 + k] = difAbI + difCdR;
+                }
+            }
+            base += 3 * span;
+        }
+    }
+
+    /**
+     * Recovers bins k and half - k of the real frame from Z[k] and Z[half - k]; with a
+     * null {@code outIm} the squared magnitudes go to {@code outRe}.
+     */
+    private void split(float[] outRe, float[] outIm) {
+        float[] re = this.re;
+        float[] im = this.im;
+        for (int k = 0; k <= half / 2; k++) {
+            int m = k == 0 ? 0 : half - k;
+            // even part (Z[k] + conj Z[m]) / 2 and odd part (Z[k] - conj Z[m]) / 2i
+            float evenR = 0.5f * (re[k] + re[m]);
+            float evenI = 0.5f * (im[k] - im[m]);
+            float oddR = 0.5f * (im[k] + im[m]);
+            float oddI = -0.5f * (re[k] - re[m]);
+            float tr = oddR * splitRe[k] - oddI * splitIm[k];
+            float ti = oddR * splitIm[k] + oddI * splitRe[k];
+            int mirror = half - k;
+            if (outIm == null) {
+                outRe[k] = (evenR + tr) * (evenR + tr) + (evenI + ti) * (evenI + ti);
+                // X[half - k] = conj(even - t), by the same symmetry
+                outRe[mirror] = (evenR - tr) * (evenR - tr) + (evenI - ti) * (evenI - ti);
+            } else {
+                outRe[k] = evenR + tr;
+                outIm[k] = evenI + ti;
+                outRe[mirror] = evenR - tr;
+                outIm[mirror] = -(evenI - ti);
+            }
+        }
+        // DC and Nyquist are both real and come from Z[0] alone
+        float dc = re[0] + im[0];
+        float nyquist = re[0] - im[0];
+        if (outIm == null) {
+            outRe[0] = dc * dc;
+            outRe[half] = nyquist * nyquist;
+        } else {
+            outRe[0] = dc;
+            outIm[0] = 0;
+            outRe[half] = nyquist;
+            outIm[half] = 0;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package model.dsp;
+
+/**
+ * Sliding analysis window over a continuous sample stream, producing a window every
+ * {@code hopSize} samples (e.g. half the window for 50% overlap).
+ * <p>
+ * Samples are kept in a mirrored circular buffer: each sample is stored at {@code i} and
+ * {@code i + windowSize}, so the latest window is always a contiguous run of the buffer and
+ * the history is never shifted or re-copied when a new hop arrives. Windows can be handed
+ * straight to an engine with {@code analyze(getSamples(), getWindowOffset())}.
+ * <pre>
+ * int done = 0;
+ * while (done &lt; length) {
+ *     done += stft.write(frame, offset + done, length - done);
+ *     if (stft.isWindowReady()) {
+ *         engine.analyze(stft.getSamples(), stft.getWindowOffset());
+ *     }
+ * }
+ * </pre>
+ */
+public final class StftStream {
+
+    private final int windowSize;
+    private final int hopSize;
+    private final short[] samples;
+
+    private int writeIndex;
+    private int sinceLastWindow;
+    private long totalSamples;
+    private boolean windowReady;
+
+    public StftStream(int windowSize, int hopSize) {
+        if (windowSize <= 0 || hopSize <= 0 || hopSize > windowSize) {
+            throw new IllegalArgumentException("hop must be between 1 and the window size");
+        }
+        this.windowSize = windowSize;
+        this.hopSize = hopSize;
+        this.samples = new short[windowSize * 2];
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public int getHopSize() {
+        return hopSize;
+    }
+
+    /**
+     * Appends up to {@code length} samples, stopping at the next hop boundary so that no
+     * window is skipped.
+     *
+     * @return the number of samples consumed
+     */
+    public int write(short[] source, int offset, int length) {
+        int count = Math.min(length, hopSize - sinceLastWindow);
+        int first = Math.min(count, windowSize - writeIndex);
+        System.arraycopy(source, offset, samples, writeIndex, first);
+        System.arraycopy(source, offset, samples, writeIndex + windowSize, first);
+        if (first < count) {
+            System.arraycopy(source, offset + first, samples, 0, count - first);
+            System.arraycopy(source, offset + first, samples, windowSize, count - first);
+        }
+        writeIndex = (writeIndex + count) % windowSize;
+        totalSamples += count;
+        sinceLastWindow += count;
+        windowReady = false;
+        if (sinceLastWindow == hopSize) {
+            sinceLastWindow = 0;
+            windowReady = totalSamples >= windowSize;
+        }
+        return count;
+    }
+
+    /**
+     * True when the last {@link #write} completed a hop and a full window is available.
+     */
+    public boolean isWindowReady() {
+        return windowReady;
+    }
+
+    public short[] getSamples() {
+        return samples;
+    }
+
+    /**
+     * Offset in {@link #getSamples()} of the latest {@code windowSize} samples, oldest first.
+     */
+    public int getWindowOffset() {
+        return writeIndex;
+    }
+
+    /**
+     * Number of samples written since creation or the last {@link #reset()}.
+     */
+    public long getTotalSamples() {
+        return totalSamples;
+    }
+
+    public void reset() {
+        writeIndex = 0;
+        sinceLastWindow = 0;
+        totalSamples = 0;
+        windowReady = false;
+    }
+}
@@ -0,0 +1,116 @@
+package model.helper;
+
+import android.os.Process;
+import android.util.Log;
+
+/**
+ * Owns the capture and analysis threads of one detection session and their lifecycle.
+ * <p>
+ * Capture runs at {@link #CAPTURE_PRIORITY} so the microphone is drained on time even when
+ * the watch is busy; analysis is a single worker one step below, fed through the bounded
+ * frame ring, so a slow detector drops frames instead of piling up threads or memory.
+ * Android offers no public CPU affinity API, so placement is left to the scheduler, which
+ * favours audio priorities of a foreground service.
+ * <p>
+ * Each scheduler is started once; a new session needs new threads and a new scheduler.
+ * {@link #stop(long)} joins both threads, so no detector outlives its session.
+ */
+public final class AudioScheduler {
+
+    public static final int CAPTURE_PRIORITY = Process.THREAD_PRIORITY_URGENT_AUDIO;
+    public static final int ANALYSIS_PRIORITY = Process.THREAD_PRIORITY_AUDIO;
+
+    public enum State {
+        IDLE, RUNNING, PAUSED, STOPPED
+    }
+
+    private static final String TAG = "AudioScheduler";
+
+    private final RecorderThread recorder;
+    private final DetectorThread detector;
+    private State state = State.IDLE;
+
+    public AudioScheduler(RecorderThread recorder, DetectorThread detector) {
+        this.recorder = recorder;
+        this.detector = detector;
+    }
+
+    /**
+     * Starts the microphone, then the detector.
+     */
+    public synchronized void start() {
+        if (state != State.IDLE) {
+            throw new IllegalStateException("scheduler already " + state);
+        }
+        recorder.startRecording();
+        detector.start();
+        state = State.RUNNING;
+    }
+
+    /**
+     * Releases the microphone; the detector idles on the empty ring until {@link #resume()}.
+     */
+    public synchronized void pause() {
+        if (state != State.RUNNING) {
+            return;
+        }
+        recorder.pauseRecording();
+        state = State.PAUSED;
+    }
+
+    public synchronized void resume() {
+        if (state != State.PAUSED) {
+            return;
+        }
+        recorder.resumeRecording();
+        state = State.RUNNING;
+    }
+
+    /**
+     * Stops the detector, then the microphone, waiting up to {@code timeoutMillis} for each
+     * thread to end.
+     *
+     * @return false if a thread was still running after its timeout
+     */
+    public synchronized boolean stop(long timeoutMillis) {
+        if (state == State.STOPPED) {
+            return true;
+        }
+        boolean stopped = true;
+        if (state != State.IDLE) {
+            stopped = detector.stopDetection(timeoutMillis);
+            stopped &= recorder.stopRecording(timeoutMillis);
+            if (!stopped) {
+                Log.w(TAG, "Audio threads did not stop within " + timeoutMillis + " ms");
+            }
+        }
+        state = State.STOPPED;
+        return stopped;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public RecorderThread getRecorder() {
+        return recorder;
+    }
+
+    public DetectorThread getDetector() {
+        return detector;
+    }
+
+    /**
+     * CPU time used by the capture thread so far.
+     */
+    public long getCaptureCpuTimeNanos() {
+        return recorder.getCpuTimeNanos();
+    }
+
+    /**
+     * CPU time used by the analysis thread so far.
+     */
+    public long getAnalysisCpuTimeNanos() {
+        return detector.getCpuTimeNanos();
+    }
+}
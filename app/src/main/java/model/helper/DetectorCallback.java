@@ -1,5 +1,9 @@
 package model.helper;
 
+import model.detection.WhistlePattern;
+
 public interface DetectorCallback {
-    void onWhistleDetected(); // Called when a whistle is detected
+    void onSoundDetected(DetectorType type); // Called when a detector confirms a sound
+
+    void onPatternDetected(WhistlePattern pattern); // Called when a whistle signal is recognised
 }
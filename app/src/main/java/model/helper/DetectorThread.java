@@ -22,202 +22,351 @@ package model.helper;
 
 //import static android.support.v4.content.ContextCompat.getSystemService;
 
-import java.util.LinkedList;
-
-import com.musicg.api.ClapApi;
-import com.musicg.api.DetectionApi;
-import com.musicg.api.WhistleApi;
-import com.musicg.wave.WaveHeader;
-
-import android.content.Context;
-import android.media.AudioFormat;
-import android.media.AudioRecord;
 import android.os.Build;
+import android.os.Debug;
+import android.os.Process;
+import android.os.SystemClock;
 import android.os.VibrationEffect;
 import android.os.Vibrator;
 import android.util.Log;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import model.audio.AudioSource;
+import model.constant.Constant;
+import model.detection.DetectionCascade;
+import model.detection.DetectionPipeline;
+import model.detection.VoteWindow;
+import model.journal.EventJournal;
+import model.metrics.DetectorMetrics;
+import model.offload.OffloadClient;
+import model.offload.OffloadTransport;
+
 import static model.constant.Constant.vibrationPattern;
 import static model.constant.Constant.vibrationRepeat;
 
 public class DetectorThread extends Thread {
 
 
-    private DetectorType mType;
-    private RecorderThread recorder;
-    private WaveHeader waveHeader;
-    private DetectionApi mDetectionApi;
-    private Thread _thread;
-
-    private LinkedList<Boolean> whistleResultList = new LinkedList<Boolean>();
-    private int numWhistles;
-    private int totalWhistlesDetected = 0;
-    private int whistleCheckLength = 3;
-    private int whistlePassScore = 3;
-    private boolean isSound;
+    private DetectorType[] mTypes;
+    private AudioSource source;
+    private DetectionPipeline pipeline;
+    private int hopSize;
+    private OffloadTransport.Factory offloadFactory;
+    // the link is opened on this executor, never on the analysis thread; guarded by offloadLock
+    private ScheduledExecutorService offloadExecutor;
+    private OffloadTransport offloadTransport;
+    private final Object offloadLock = new Object();
+    private volatile OffloadClient offload;
+    private volatile boolean running;
+    private volatile long cpuTimeNanos;
+    private volatile long lastActivityMillis;
+    private long gatePasses;
 
     Vibrator vibrator;
 
     private final DetectorCallback detectorCallback;
 
     private final String TAG = "DetectorTAG";
-    public DetectorThread(RecorderThread recorder, DetectorType type,  DetectorCallback detectorCallback) {
+    private static final long FRAME_TIMEOUT_MS = 200;
+
+    public DetectorThread(AudioSource source, DetectorType type,  DetectorCallback detectorCallback) {
+        this(source, source.getFrameSize() / 2, detectorCallback, type);
+    }
+
+    /**
+     * @param hopSize samples between the starts of consecutive analysis windows;
+     *                half the frame size gives 50% overlap, the frame size none
+     */
+    public DetectorThread(AudioSource source, DetectorType type, int hopSize, DetectorCallback detectorCallback) {
+        this(source, hopSize, detectorCallback, type);
+    }
+
+    /**
+     * Runs several detectors over the one capture stream; each confirmed event is reported
+     * with the type of the detector that fired.
+     */
+    public DetectorThread(AudioSource source, int hopSize, DetectorCallback detectorCallback, DetectorType... types) {
+        super("DetectorThread");
         //this.vibrator=vibrator;
         this.detectorCallback = detectorCallback;
-        ;
-        mType = type;
-        this.recorder = recorder;
-        AudioRecord audioRecord = recorder.getAudioRecord();
-
-        int bitsPerSample = 0;
-        if (audioRecord.getAudioFormat() == AudioFormat.ENCODING_PCM_16BIT) {
-            bitsPerSample = 16;
-        } else if (audioRecord.getAudioFormat() == AudioFormat.ENCODING_PCM_8BIT) {
-            bitsPerSample = 8;
-        }
+        mTypes = types.clone();
+        this.source = source;
+        this.hopSize = hopSize;
+        pipeline = DetectionPipeline.create(source.getSampleRate(), source.getFrameSize(), hopSize,
+                Constant.fixedPointDetection, types);
+        pipeline.setPatternListener((pattern, endSample) -> detectorCallback.onPatternDetected(pattern));
+    }
+
+    public DetectionPipeline getPipeline() {
+        return pipeline;
+    }
+
+    /**
+     * Per-stage frame counters of the first detector's cascade, after the shared gate.
+     */
+    public DetectionCascade getCascade() {
+        return pipeline.getCascade(0);
+    }
 
-        int channel = 0;
+    /**
+     * Vote and hysteresis state that turns the first detector's window decisions into events.
+     */
+    public VoteWindow getVoteWindow() {
+        return pipeline.getVoteWindow(0);
+    }
 
-        if (audioRecord.getChannelConfiguration() == AudioFormat.CHANNEL_IN_MONO) {
-            channel = 1;
+    /**
+     * Journals every window that gets past the silence gate, and every event; call before
+     * {@link #start()}. Null stops journaling.
+     */
+    public void setJournal(final EventJournal journal) {
+        if (journal == null) {
+            pipeline.setWindowListener(null);
+            return;
         }
+        pipeline.setWindowListener((samples, offset, endSample, detected, event) -> {
+            int stagesPassed = pipeline.getStagesPassed();
+            if (stagesPassed == 0 && !event) {
+                return;
+            }
+            journal.append(System.currentTimeMillis(), (float) pipeline.getEnergy(),
+                    (float) pipeline.getPeakFrequency(), pipeline.getVoteScore(),
+                    (detected ? EventJournal.FLAG_DETECTED : 0) | (event ? EventJournal.FLAG_EVENT : 0),
+                    stagesPassed);
+        });
+    }
 
-        waveHeader = new WaveHeader();
-        waveHeader.setChannels(channel);
-        waveHeader.setBitsPerSample(bitsPerSample);
-        waveHeader.setSampleRate(audioRecord.getSampleRate());
-
-        switch (type) {
-            case CLAP:
-                mDetectionApi = new ClapApi(waveHeader);
-                break;
-            case WHISTLE:
-                mDetectionApi = new WhistleApi(waveHeader);
-                break;
+    @Override
+    public synchronized void start() {
+        running = true;
+        if (offloadFactory != null) {
+            synchronized (offloadLock) {
+                offloadExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "OffloadConnect");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            scheduleOffload(0);
         }
+        super.start();
     }
 
-    private void initBuffer() {
-        numWhistles = 0;
-        whistleResultList.clear();
+    public void stopDetection() {
+        stopDetection(FRAME_TIMEOUT_MS * 2);
+    }
 
-        // init the first frames
-        for (int i = 0; i < whistleCheckLength; i++) {
-            whistleResultList.add(false);
+    /**
+     * Stops the analysis loop and waits up to {@code timeoutMillis} for the thread to end.
+     *
+     * @return false if the thread was still running after the timeout
+     */
+    public boolean stopDetection(long timeoutMillis) {
+        running = false;
+        interrupt();
+        try {
+            join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
-        // end init the first frames
+        return !isAlive();
     }
 
-    public void start() {
-        _thread = new Thread(this);
-        _thread.start();
+    /**
+     * CPU time used by the detector thread, updated after every frame.
+     */
+    public long getCpuTimeNanos() {
+        return cpuTimeNanos;
     }
 
-    public void stopDetection() {
-        _thread = null;
+    /**
+     * Sends the frames past the silence gate to a phone that runs the detectors, instead of
+     * detecting here. The transport is opened on a separate thread, and frames are analysed
+     * here until it is connected, whenever it cannot be opened and after the link fails;
+     * then it is retried every {@link Constant#offloadRetryMs}. Call before {@link #start()}.
+     * Events then reach the callback on the transport thread.
+     */
+    public void setOffload(OffloadTransport.Factory offloadFactory) {
+        this.offloadFactory = offloadFactory;
+    }
+
+    /**
+     * Offload client while offloading, else null.
+     */
+    public OffloadClient getOffloadClient() {
+        return offload;
+    }
+
+    /**
+     * {@link SystemClock#elapsedRealtime()} of the last window that passed the silence gate,
+     * or 0 if none has.
+     */
+    public long getLastActivityMillis() {
+        return lastActivityMillis;
     }
 
     @Override
     public void run() {
         Log.e(TAG, "DetectorThread started...");
-         boolean isGWhistle=false;
+        Process.setThreadPriority(AudioScheduler.ANALYSIS_PRIORITY);
         try {
-            byte[] buffer;
-            initBuffer();
+            short[] samples = source.getSamples();
+            pipeline.reset();
 
-            Thread thisThread = Thread.currentThread();
-            while (_thread == thisThread) {
+            while (running) {
                 // detect sound
-                buffer = recorder.getFrameBytes();
-
-                Log.d(TAG, "recorder.getFrameBytes() " + buffer);
-
-                // audio analyst
-                if (buffer != null) {
-                    // sound detected
-                    // MainActivity.whistleValue = numWhistles;
-
-                    // whistle detection
-                    // System.out.println("*Whistle:");
-
-                    try {
-                        /*
-                        switch (mType) {
-                            case CLAP:
-
-                                boolean isClap = ((ClapApi) mDetectionApi).isClap(buffer);
-                                isSound = isClap;
-
-                                Log.e(TAG, "isClap : " + isClap + " "+ buffer.length);
-
-                                break;
-                            case WHISTLE:
-                                boolean isWhistle = ((WhistleApi) mDetectionApi).isWhistle(buffer);
-                                isSound = isWhistle;
-                                isGWhistle= isWhistle;
-                                Log.e(TAG, "isWhistle : " + isWhistle + ",  buffer:"+ buffer.length);
-                                break;
-                        }
-                        */
-                        boolean isWhistle = ((WhistleApi) mDetectionApi).isWhistle(buffer);
-                        isSound = isWhistle;
-                        isGWhistle= isWhistle;
-                        Log.e(TAG, "isWhistle : " + isWhistle + ",  buffer:"+ buffer.length);
-
-                        if(isGWhistle){
-                           // triggerVibration();
-                           detectorCallback.onWhistleDetected();
-                        }
-                        if (whistleResultList.getFirst()) {
-                            numWhistles--;
-                        }
-
-                        whistleResultList.removeFirst();
-                        whistleResultList.add(isSound);
-
-                        if (isSound) {
-                            numWhistles++;
-                        }
-
-                        Log.e(TAG, "numWhistles : " + numWhistles);
-
-                        if (numWhistles >= whistlePassScore) {
-                            // clear buffer
-                            initBuffer();
-                            totalWhistlesDetected++;
-
-                            Log.e(TAG, "totalWhistlesDetected : "
-                                    + totalWhistlesDetected);
-                            /*
-                            if (onSoundListener != null) {
-                                onSoundListener.onSound(mType);
-                            }
-
-                             */
-                        }
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                        Log.w(TAG, "error " + e.getMessage()+" Cause :: " + e.getCause());
-                    }
-                    // end whistle detection
-                } else {
-                    // Debug.e("", "no sound detected");
-                    // no sound detected
-                    if (whistleResultList.getFirst()) {
-                        numWhistles--;
-                    }
-                    whistleResultList.removeFirst();
-                    whistleResultList.add(false);
-
-                    // MainActivity.whistleValue = numWhistles;
+                int offset = source.takeFrame(FRAME_TIMEOUT_MS);
+                if (offset == AudioSource.END_OF_STREAM) {
+                    break;
+                }
+                if (offset < 0) {
+                    continue;
                 }
-                // end audio analyst
+                analyzeFrame(samples, offset);
+                source.releaseFrame();
+                cpuTimeNanos = Debug.threadCpuTimeNanos();
             }
 
             Log.e(TAG, "Terminating detector thread...");
 
+        } catch (InterruptedException e) {
+            Log.d(TAG, "Detector thread interrupted");
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            synchronized (offloadLock) {
+                running = false;
+                if (offloadExecutor != null) {
+                    // interrupts a connection attempt in progress
+                    offloadExecutor.shutdownNow();
+                }
+                closeOffload();
+            }
+        }
+    }
+
+    private void scheduleOffload(long delayMillis) {
+        synchronized (offloadLock) {
+            if (!running || offloadExecutor == null) {
+                return;
+            }
+            try {
+                offloadExecutor.schedule(this::connectOffload, delayMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // shut down by the end of run()
+            }
+        }
+    }
+
+    /**
+     * Opens the transport on the offload executor and hands the client to the analysis
+     * loop, which keeps detecting locally meanwhile.
+     */
+    private void connectOffload() {
+        OffloadTransport transport = null;
+        OffloadClient client;
+        try {
+            transport = offloadFactory.open();
+            client = new OffloadClient(transport, source.getSampleRate(), source.getFrameSize(), hopSize,
+                    detectorCallback, mTypes);
+        } catch (IOException e) {
+            Log.w(TAG, "Offload unavailable, detecting locally", e);
+            closeTransport(transport);
+            scheduleOffload(Constant.offloadRetryMs);
+            return;
+        }
+        synchronized (offloadLock) {
+            if (!running) {
+                closeTransport(transport);
+                return;
+            }
+            offloadTransport = transport;
+            offload = client;
+        }
+        Log.d(TAG, "Offloading detection");
+    }
+
+    /**
+     * Goes back to local detection after the link failed, and retries it later.
+     */
+    private void dropOffload(OffloadClient client) {
+        Log.w(TAG, "Offload link lost, detecting locally", client.getLastError());
+        synchronized (offloadLock) {
+            closeOffload();
+        }
+        // the pipeline's windows and votes stop where offloading started
+        pipeline.reset();
+        scheduleOffload(Constant.offloadRetryMs);
+    }
+
+    // called with offloadLock held
+    private void closeOffload() {
+        offload = null;
+        closeTransport(offloadTransport);
+        offloadTransport = null;
+    }
+
+    private void closeTransport(OffloadTransport transport) {
+        if (transport == null) {
+            return;
+        }
+        try {
+            transport.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Closing offload transport failed", e);
+        }
+    }
+
+    private void analyzeFrame(short[] samples, int offset) {
+        OffloadClient client = offload;
+        if (client != null && client.isFailed()) {
+            dropOffload(client);
+            client = null;
+        }
+        if (client != null) {
+            if (client.process(samples, offset)) {
+                lastActivityMillis = SystemClock.elapsedRealtime();
+            }
+            return;
+        }
+        // audio analyst: the cascade gates silence before any spectral work
+        try {
+            long start = DetectorMetrics.ENABLED ? System.nanoTime() : 0;
+            int events = pipeline.process(samples, offset);
+            long passes = pipeline.getGate().getPassCount(0);
+            if (passes != gatePasses) {
+                gatePasses = passes;
+                lastActivityMillis = SystemClock.elapsedRealtime();
+            }
+            if (DetectorMetrics.ENABLED) {
+                recordMetrics(System.nanoTime() - start, events);
+            }
+            for (int d = 0; events != 0; d++, events >>>= 1) {
+                if ((events & 1) != 0) {
+                    // triggerVibration();
+                    detectorCallback.onSoundDetected(mTypes[d]);
+                }
+            }
         } catch (Exception e) {
             e.printStackTrace();
+            Log.w(TAG, "error " + e.getMessage()+" Cause :: " + e.getCause());
         }
+        // end audio analyst
+    }
+
+    private void recordMetrics(long analysisNanos, int events) {
+        DetectionCascade gate = pipeline.getGate();
+        DetectorMetrics.record(DetectorMetrics.ANALYSIS_TIME, analysisNanos);
+        DetectorMetrics.add(DetectorMetrics.FRAMES_ANALYZED, 1);
+        DetectorMetrics.add(DetectorMetrics.DETECTIONS, Integer.bitCount(events));
+        DetectorMetrics.set(DetectorMetrics.WINDOWS_ANALYZED, gate.getFrameCount());
+        DetectorMetrics.set(DetectorMetrics.WINDOWS_GATE_PASSED, gate.getPassCount(0));
+        DetectorMetrics.set(DetectorMetrics.WINDOWS_POSITIVE, pipeline.getPositiveWindowCount());
     }
 /*
     private OnSoundListener onSoundListener;
@@ -231,7 +380,7 @@ public class DetectorThread extends Thread {
     }
 */
     public int getTotalWhistlesDetected() {
-        return totalWhistlesDetected;
+        return (int) pipeline.getEventCount();
     }
 
     private void triggerVibration() {
@@ -5,5 +5,17 @@ package model.helper;
  */
 public enum DetectorType {
 
-    WHISTLE, CLAP;
+    WHISTLE, CLAP,
+
+    /**
+     * Whistle detection behind a Goertzel tone screen of the 600 Hz - 3 kHz band;
+     * only frames with a dominant tone there get the full spectral check.
+     */
+    WHISTLE_LOW_POWER,
+
+    /**
+     * Whistle detection by a small int8 classifier over spectral feature vectors instead of
+     * musicg's thresholds; see {@code model.detection.ClassifierEngine}.
+     */
+    WHISTLE_CLASSIFIER;
 }
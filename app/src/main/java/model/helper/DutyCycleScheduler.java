@@ -0,0 +1,179 @@
+package model.helper;
+
+import android.os.SystemClock;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Duty-cycles an {@link AudioScheduler}: while the surroundings stay quiet, the microphone
+ * listens for {@code listenMillis} and then sleeps for {@code sleepMillis}. Whenever the
+ * energy gate passes a window, listening becomes continuous and only drops back to the
+ * cycle after {@code quietMillis} without gate activity, so an ongoing sound is never cut
+ * off by a sleep period.
+ * <p>
+ * The cycle is driven by a background thread that only wakes at window boundaries; with
+ * {@code sleepMillis} 0 no thread is started and the microphone stays on. Sounds shorter
+ * than the sleep period can be missed entirely while the cycle runs.
+ */
+public final class DutyCycleScheduler {
+
+    private final AudioScheduler scheduler;
+    private final long listenMillis;
+    private final long sleepMillis;
+    private final long quietMillis;
+    private final Thread cycler;
+
+    private volatile boolean running;
+    private volatile boolean continuous;
+    private volatile boolean sleeping;
+    private volatile long startTime;
+    private volatile long listenStartTime;
+    private volatile long listenedMillis;
+    private volatile long sleepCount;
+
+    /**
+     * @param listenMillis length of a listen window, long enough to pass the gate and the vote
+     * @param sleepMillis  microphone off time between listen windows; 0 listens continuously
+     * @param quietMillis  time without gate activity before continuous listening ends
+     */
+    public DutyCycleScheduler(AudioScheduler scheduler, long listenMillis, long sleepMillis, long quietMillis) {
+        if (listenMillis <= 0 || sleepMillis < 0 || quietMillis < 0) {
+            throw new IllegalArgumentException("need a positive listen window and no negative periods");
+        }
+        this.scheduler = scheduler;
+        this.listenMillis = listenMillis;
+        this.sleepMillis = sleepMillis;
+        this.quietMillis = quietMillis;
+        this.cycler = new Thread(this::cycleLoop, "DutyCycleScheduler");
+        this.cycler.setDaemon(true);
+    }
+
+    public void start() {
+        startTime = SystemClock.elapsedRealtime();
+        listenStartTime = startTime;
+        running = true;
+        scheduler.start();
+        if (sleepMillis > 0) {
+            cycler.start();
+        }
+    }
+
+    /**
+     * Stops the cycle, then the audio threads; see {@link AudioScheduler#stop(long)}.
+     */
+    public boolean stop(long timeoutMillis) {
+        running = false;
+        LockSupport.unpark(cycler);
+        try {
+            cycler.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!sleeping) {
+            listenedMillis += SystemClock.elapsedRealtime() - listenStartTime;
+        }
+        sleeping = true;
+        return scheduler.stop(timeoutMillis);
+    }
+
+    private void cycleLoop() {
+        while (running) {
+            // listen window, extended for as long as the gate keeps seeing sound
+            long listenEnd = listenStartTime + listenMillis;
+            while (running) {
+                long now = SystemClock.elapsedRealtime();
+                long activityEnd = scheduler.getDetector().getLastActivityMillis() + quietMillis;
+                continuous = activityEnd > now;
+                long wakeup = Math.max(listenEnd, activityEnd);
+                if (wakeup <= now) {
+                    break;
+                }
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(wakeup - now));
+            }
+            continuous = false;
+            if (!running) {
+                break;
+            }
+
+            scheduler.pause();
+            long sleepStart = SystemClock.elapsedRealtime();
+            listenedMillis += sleepStart - listenStartTime;
+            sleeping = true;
+            sleepCount++;
+            long sleepEnd = sleepStart + sleepMillis;
+            long now;
+            while (running && (now = SystemClock.elapsedRealtime()) < sleepEnd) {
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(sleepEnd - now));
+            }
+            if (!running) {
+                break;
+            }
+            listenStartTime = SystemClock.elapsedRealtime();
+            sleeping = false;
+            scheduler.resume();
+        }
+    }
+
+    public AudioScheduler getAudioScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * True while gate activity holds the microphone on beyond the listen window.
+     */
+    public boolean isContinuous() {
+        return continuous;
+    }
+
+    /**
+     * Configured share of time listening while quiet, in 0..1.
+     */
+    public double getNominalDutyCycle() {
+        return (double) listenMillis / (listenMillis + sleepMillis);
+    }
+
+    /**
+     * Measured share of time the microphone was on since {@link #start()}, in 0..1.
+     */
+    public double getDutyCycle() {
+        long now = SystemClock.elapsedRealtime();
+        long elapsed = now - startTime;
+        long listened = listenedMillis + (sleeping ? 0 : now - listenStartTime);
+        return elapsed <= 0 ? 1 : Math.min(1, (double) listened / elapsed);
+    }
+
+    /**
+     * Mean extra delay before a sound starting at a random moment in quiet surroundings
+     * reaches a listening microphone: half the sleep period, weighted by the time asleep.
+     */
+    public double getExpectedLatencyMillis() {
+        return sleepMillis * (double) sleepMillis / (2.0 * (listenMillis + sleepMillis));
+    }
+
+    /**
+     * Longest extra delay caused by the cycle, a sound starting just as the microphone sleeps.
+     */
+    public long getWorstCaseLatencyMillis() {
+        return sleepMillis;
+    }
+
+    /**
+     * CPU milliseconds used by the capture and analysis threads per hour of running time.
+     */
+    public double getCpuMillisPerHour() {
+        long elapsed = SystemClock.elapsedRealtime() - startTime;
+        if (elapsed <= 0) {
+            return 0;
+        }
+        long cpuNanos = scheduler.getCaptureCpuTimeNanos() + scheduler.getAnalysisCpuTimeNanos();
+        return cpuNanos / 1e6 * TimeUnit.HOURS.toMillis(1) / elapsed;
+    }
+
+    /**
+     * Number of times the microphone was put to sleep.
+     */
+    public long getSleepCount() {
+        return sleepCount;
+    }
+}
@@ -23,34 +23,165 @@ package model.helper;
 import android.media.AudioFormat;
 import android.media.AudioRecord;
 import android.media.MediaRecorder;
+import android.os.Debug;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 
-public class RecorderThread extends Thread {
+import model.audio.AudioSource;
+import model.audio.CaptureRates;
+import model.audio.PcmFrameRing;
+import model.constant.Constant;
+import model.dsp.Decimator;
+import model.metrics.DetectorMetrics;
 
+public class RecorderThread extends Thread implements AudioSource {
+
+    private static final String TAG = "RecorderThread";
 
     private AudioRecord audioRecord;
     private int channelConfiguration;
     private int audioEncoding;
     private int sampleRate;
-    private int frameByteSize; // for 1024 fft size (16bit sample size)
-    byte[] buffer;
+    private int captureRate;
+    private int frameByteSize; // 2 bytes per 16 bit sample
+    private int frameSize;
+    private int ringCapacity = 16; // ~370 ms of audio
+    private Decimator decimator;
+    private short[] captureBuffer;
+    // copy of the newest frame for getMaxAmplitude(), guarded by amplitudeLock; not the
+    // Thread monitor, which join() waits on
+    private short[] amplitudeFrame;
+    private final Object amplitudeLock = new Object();
+    private int batchFrames = 1;
+    private PcmFrameRing frameRing;
+    private volatile boolean isCapturing;
+    private volatile boolean isPaused;
+    private final Object pauseLock = new Object();
+    // guarded by pauseLock: whoever finishes last of stopRecording() and run() releases the record
+    private boolean captureLoopDone;
+    private boolean releaseOnExit;
+    private volatile long cpuTimeNanos;
+    private volatile long captureStartTime;
+    private volatile long captureWakeups;
 
     public RecorderThread() {
-        sampleRate = 44100;
-        frameByteSize =2048;// 1024 * 2;
+        this(0);
+    }
+
+    public RecorderThread(int maxBatchLatencyMillis) {
+        this(maxBatchLatencyMillis, 0);
+    }
 
+    /**
+     * @param maxBatchLatencyMillis audio to collect per read; the capture thread then wakes
+     *                              once per batch instead of once per frame, adding up to this
+     *                              much detection latency. 0 reads a single frame at a time.
+     * @param historyMillis         recent audio kept in the frame ring after analysis, e.g.
+     *                              for {@link model.audio.PreTriggerCapture}
+     */
+    public RecorderThread(int maxBatchLatencyMillis, int historyMillis) {
+        this(maxBatchLatencyMillis, historyMillis, Constant.captureSampleRate);
+    }
+
+    /**
+     * @param targetSampleRate detection sample rate; when the microphone does not offer it,
+     *                         44.1 or 48 kHz is captured and decimated to it, or to the
+     *                         nearest rate above it that 44.1 kHz divides into. Frames keep
+     *                         about 23 ms, see {@link CaptureRates#frameSizeFor(int)}.
+     */
+    public RecorderThread(int maxBatchLatencyMillis, int historyMillis, int targetSampleRate) {
+        super("RecorderThread");
         channelConfiguration = AudioFormat.CHANNEL_IN_MONO;
         audioEncoding = AudioFormat.ENCODING_PCM_16BIT;
+        try {
+            openRecord(targetSampleRate, maxBatchLatencyMillis);
+            if (audioRecord == null) {
+                int exactRate = CaptureRates.exactCaptureRate(targetSampleRate);
+                if (exactRate > 0) {
+                    openRecord(exactRate, exactRate / targetSampleRate, maxBatchLatencyMillis);
+                }
+            }
+            if (audioRecord == null) {
+                int factor = CaptureRates.fallbackFactor(targetSampleRate);
+                openRecord(CaptureRates.REFERENCE_SAMPLE_RATE, factor, maxBatchLatencyMillis);
+            }
+        } catch (SecurityException e) {
+            Log.e(TAG, "RECORD_AUDIO permission missing", e);
+        }
+        if (audioRecord == null) {
+            return;
+        }
+        Log.d(TAG, "Capturing at " + captureRate + " Hz, detecting at " + sampleRate + " Hz in frames of " + frameSize);
 
-        int recBufSize = AudioRecord.getMinBufferSize(sampleRate,
-                channelConfiguration, audioEncoding); // need to be larger than
-        // size of a frame
-        try{
-        audioRecord = new AudioRecord(MediaRecorder.AudioSource.MIC,
-                sampleRate, channelConfiguration, audioEncoding, recBufSize);
-        buffer = new byte[frameByteSize];
+        ringCapacity = Math.max(ringCapacity, batchFrames * 4);
+        ringCapacity += (int) ((long) historyMillis * sampleRate / 1000 / frameSize) + 1;
+        frameRing = new PcmFrameRing(frameSize, ringCapacity);
+        amplitudeFrame = new short[frameSize];
+        if (decimator != null) {
+            captureBuffer = new short[batchFrames * frameSize * decimator.getFactor()];
+        }
+    }
+
+    private void openRecord(int rate, int maxBatchLatencyMillis) {
+        openRecord(rate, 1, maxBatchLatencyMillis);
+    }
+
+    /**
+     * Opens the microphone at {@code rate}, keeping {@link #audioRecord} null if the device
+     * refuses it.
+     */
+    private void openRecord(int rate, int factor, int maxBatchLatencyMillis) {
+        int minBufferSize = AudioRecord.getMinBufferSize(rate, channelConfiguration, audioEncoding);
+        if (minBufferSize <= 0) {
+            return;
+        }
+        int detectionRate = rate / factor;
+        int detectionFrameSize = CaptureRates.frameSizeFor(detectionRate);
+        int batch = Math.max(1, maxBatchLatencyMillis * detectionRate / 1000 / detectionFrameSize);
+        int captureFrameBytes = detectionFrameSize * factor * 2;
+        // larger than a frame, and holding two batches so the HAL keeps filling while we process one
+        int recBufSize = Math.max(minBufferSize, 2 * batch * captureFrameBytes);
+        AudioRecord record;
+        try {
+            record = new AudioRecord(MediaRecorder.AudioSource.MIC,
+                    rate, channelConfiguration, audioEncoding, recBufSize);
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        if (record.getState() != AudioRecord.STATE_INITIALIZED) {
+            record.release();
+            return;
+        }
+        audioRecord = record;
+        captureRate = rate;
+        sampleRate = detectionRate;
+        frameSize = detectionFrameSize;
+        frameByteSize = frameSize * 2;
+        batchFrames = batch;
+        decimator = factor > 1 ? new Decimator(factor) : null;
+    }
+
+    /**
+     * Largest absolute sample of the newest captured frame, or 0 before the first frame.
+     * May be called from any thread; the capture loop does no extra work for it. Also 0 when
+     * the microphone could not be opened.
+     */
+    public double getMaxAmplitude() {
+        if (frameRing == null) {
+            return 0;
+        }
+        synchronized (amplitudeLock) {
+            long newest = frameRing.getPublishedCount() - 1;
+            if (!frameRing.copyFrames(newest, 1, amplitudeFrame, 0)) {
+                return 0;
+            }
+            int max = 0;
+            for (short sample : amplitudeFrame) {
+                max = Math.max(max, Math.abs(sample));
+            }
+            return max;
         }
-        catch (SecurityException e){}
     }
 
     public AudioRecord getAudioRecord() {
@@ -65,51 +196,244 @@ public class RecorderThread extends Thread {
         return false;
     }
 
+    /**
+     * Starts the microphone and the capture loop that fills the frame ring.
+     */
     public void startRecording() {
         try {
             audioRecord.startRecording();
+            isCapturing = true;
+            captureStartTime = SystemClock.elapsedRealtime();
+            start();
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
     public void stopRecording() {
+        stopRecording(500);
+    }
+
+    /**
+     * Stops the microphone and waits up to {@code timeoutMillis} for the capture loop to end.
+     * The native record is released once the loop has left {@code read()}: here, or by the
+     * capture thread itself when it ends after the timeout.
+     *
+     * @return false if the capture thread was still running after the timeout
+     */
+    public boolean stopRecording(long timeoutMillis) {
+        isCapturing = false;
+        synchronized (pauseLock) {
+            pauseLock.notifyAll();
+        }
         try {
             audioRecord.stop();
-            audioRecord.release();
-
+            join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         } catch (Exception e) {
             e.printStackTrace();
         }
+        synchronized (pauseLock) {
+            if (!captureLoopDone && getState() != State.NEW) {
+                releaseOnExit = true;
+                return false;
+            }
+        }
+        audioRecord.release();
+        return true;
     }
 
-    public double getMaxAmplitude() {
-        int amplitude = (buffer[0] & 0xff) << 8 | buffer[1];
-        return Math.abs(amplitude);
+    /**
+     * Stops the microphone but keeps the capture thread, parked until
+     * {@link #resumeRecording()}.
+     */
+    public void pauseRecording() {
+        synchronized (pauseLock) {
+            if (!isCapturing || isPaused) {
+                return;
+            }
+            isPaused = true;
+            audioRecord.stop();
+        }
+    }
+
+    public void resumeRecording() {
+        synchronized (pauseLock) {
+            if (!isCapturing || !isPaused) {
+                return;
+            }
+            audioRecord.startRecording();
+            isPaused = false;
+            pauseLock.notifyAll();
+        }
     }
 
-    public byte[] getFrameBytes() {
-        audioRecord.read(buffer, 0, frameByteSize);
+    public boolean isPaused() {
+        return isPaused;
+    }
 
-        // analyze sound
-        int totalAbsValue = 0;
-        short sample = 0;
-        float averageAbsValue = 0.0f;
+    /**
+     * CPU time used by the capture thread, updated on every wakeup.
+     */
+    public long getCpuTimeNanos() {
+        return cpuTimeNanos;
+    }
 
-        for (int i = 0; i < frameByteSize; i += 2) {
-            sample = (short) ((buffer[i]) | buffer[i + 1] << 8);
-            totalAbsValue += Math.abs(sample);
+    @Override
+    public void run() {
+        try {
+            captureLoop();
+        } finally {
+            boolean release;
+            synchronized (pauseLock) {
+                captureLoopDone = true;
+                release = releaseOnExit;
+            }
+            if (release) {
+                audioRecord.release();
+            }
         }
-        averageAbsValue = totalAbsValue / frameByteSize / 2;
+    }
 
-        Log.e("", "averageAbsValue : " + averageAbsValue);
+    private void captureLoop() {
+        Process.setThreadPriority(AudioScheduler.CAPTURE_PRIORITY);
+        short[] samples = frameRing.getSamples();
+        while (isCapturing) {
+            if (isPaused && !awaitResume()) {
+                break;
+            }
+            int offset = frameRing.claim(batchFrames);
+            long readStart = DetectorMetrics.ENABLED ? System.nanoTime() : 0;
+            int read;
+            if (decimator == null) {
+                read = audioRecord.read(samples, offset, frameRing.getClaimedFrames() * frameSize);
+            } else {
+                // captured samples go through the decimator straight into the claimed frames
+                int captured = audioRecord.read(captureBuffer, 0,
+                        frameRing.getClaimedFrames() * frameSize * decimator.getFactor());
+                read = captured < 0 ? captured : decimator.process(captureBuffer, 0, captured, samples, offset);
+            }
+            captureWakeups++;
+            cpuTimeNanos = Debug.threadCpuTimeNanos();
+            if (isPaused) {
+                // the read was cut short by pauseRecording(); drop the partial batch
+                continue;
+            }
+            if (DetectorMetrics.ENABLED) {
+                DetectorMetrics.record(DetectorMetrics.READ_TIME, System.nanoTime() - readStart);
+                DetectorMetrics.add(DetectorMetrics.CAPTURE_WAKEUPS, 1);
+            }
+            if (read >= frameSize) {
+                frameRing.publish(read / frameSize);
+                if (DetectorMetrics.ENABLED) {
+                    DetectorMetrics.add(DetectorMetrics.FRAMES_CAPTURED, read / frameSize);
+                    DetectorMetrics.set(DetectorMetrics.DROPPED_FRAMES, frameRing.getOverrunCount());
+                }
+            } else if (read < 0) {
+                Log.w(TAG, "AudioRecord.read failed: " + read);
+                break;
+            }
+        }
+    }
 
-        // no input
-        if (averageAbsValue < 30) {
-            return null;
+    /**
+     * Parks the capture thread while paused.
+     *
+     * @return false if recording was stopped meanwhile
+     */
+    private boolean awaitResume() {
+        synchronized (pauseLock) {
+            while (isPaused && isCapturing) {
+                try {
+                    pauseLock.wait();
+                } catch (InterruptedException e) {
+                    return false;
+                }
+            }
+        }
+        if (decimator != null) {
+            decimator.reset();
         }
+        return isCapturing;
+    }
+
+    public PcmFrameRing getFrameRing() {
+        return frameRing;
+    }
+
+    /**
+     * Detection sample rate of the frames in the ring.
+     */
+    @Override
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Rate the microphone runs at; a multiple of {@link #getSampleRate()} when decimating.
+     */
+    public int getCaptureRate() {
+        return captureRate;
+    }
+
+    @Override
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    @Override
+    public short[] getSamples() {
+        return frameRing.getSamples();
+    }
+
+    /**
+     * Waits for the next captured frame.
+     *
+     * @return the offset of the frame in {@link PcmFrameRing#getSamples()}, or -1 on timeout
+     */
+    @Override
+    public int takeFrame(long timeoutMillis) throws InterruptedException {
+        return frameRing.take(timeoutMillis);
+    }
+
+    /**
+     * Returns the frame obtained from {@link #takeFrame(long)} to the capture thread.
+     */
+    @Override
+    public void releaseFrame() {
+        frameRing.release();
+    }
+
+    /**
+     * Number of frames dropped because the detector could not keep up.
+     */
+    @Override
+    public long getOverrunCount() {
+        return frameRing.getOverrunCount();
+    }
+
+    /**
+     * Frames read per capture wakeup.
+     */
+    public int getBatchFrames() {
+        return batchFrames;
+    }
+
+    /**
+     * Achieved capture thread wakeups per minute since recording started.
+     */
+    public double getWakeupsPerMinute() {
+        long elapsed = SystemClock.elapsedRealtime() - captureStartTime;
+        return elapsed <= 0 ? 0 : captureWakeups * 60000.0 / elapsed;
+    }
 
-        return buffer;
+    /**
+     * Achieved detector wakeups per minute since recording started.
+     */
+    public double getConsumerWakeupsPerMinute() {
+        long elapsed = SystemClock.elapsedRealtime() - captureStartTime;
+        return elapsed <= 0 ? 0 : frameRing.getConsumerWakeups() * 60000.0 / elapsed;
     }
 
 }
\ No newline at end of file
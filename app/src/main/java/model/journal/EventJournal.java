@@ -0,0 +1,225 @@
+package model.journal;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Append-only binary journal of per-window detection features, written to a rotating set
+ * of memory-mapped files by a background thread.
+ * <p>
+ * The detection thread calls {@link #append}, which copies the record into a preallocated
+ * single-producer/single-consumer queue of primitive arrays and returns at once; when the
+ * queue is full the record is dropped and counted rather than blocking detection. The
+ * writer wakes every {@link #FLUSH_INTERVAL_MS}, drains the queue into the current file
+ * and moves on to a new file when it is full, deleting the oldest beyond the limit.
+ * <p>
+ * File layout, little-endian: a {@link #HEADER_SIZE} byte header (magic, version,
+ * record size, record count, creation time in ms) followed by fixed-size records of
+ * timestamp (ms, long), energy (float), peak frequency (Hz, float), vote score (short),
+ * flags (byte, {@link #FLAG_DETECTED} and {@link #FLAG_EVENT}) and stages passed (byte).
+ */
+public final class EventJournal implements Closeable {
+
+    public static final int MAGIC = 0x314A4457; // "WDJ1"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 32;
+    public static final int RECORD_SIZE = 20;
+    public static final String FILE_PREFIX = "journal-";
+    public static final String FILE_SUFFIX = ".wdj";
+
+    // header fields
+    public static final int MAGIC_OFFSET = 0;
+    public static final int VERSION_OFFSET = 4;
+    public static final int RECORD_SIZE_OFFSET = 6;
+    public static final int COUNT_OFFSET = 8;
+    public static final int CREATED_OFFSET = 12;
+
+    public static final int FLAG_DETECTED = 1;
+    public static final int FLAG_EVENT = 2;
+
+    private static final long FLUSH_INTERVAL_MS = 500;
+    private static final int QUEUE_CAPACITY = 1024;
+
+    private final RotatingFiles files;
+    private final int recordsPerFile;
+
+    // queue slots, one array per record field
+    private final int mask = QUEUE_CAPACITY - 1;
+    private final long[] timestamps = new long[QUEUE_CAPACITY];
+    private final float[] energies = new float[QUEUE_CAPACITY];
+    private final float[] peaks = new float[QUEUE_CAPACITY];
+    private final short[] scores = new short[QUEUE_CAPACITY];
+    private final byte[] flags = new byte[QUEUE_CAPACITY];
+    private final byte[] stages = new byte[QUEUE_CAPACITY];
+    private final AtomicLong writeSequence = new AtomicLong();
+    private final AtomicLong readSequence = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    private final Thread writer;
+    private volatile boolean running;
+    private volatile IOException lastError;
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int fileRecords;
+    private long writtenCount;
+
+    /**
+     * @param directory      where the journal files are kept; created if missing
+     * @param recordsPerFile records per file before rotating
+     * @param maxFiles       files kept, the oldest are deleted first
+     */
+    public EventJournal(File directory, int recordsPerFile, int maxFiles) {
+        if (recordsPerFile <= 0) {
+            throw new IllegalArgumentException("recordsPerFile must be positive");
+        }
+        this.files = new RotatingFiles(directory, FILE_PREFIX, FILE_SUFFIX, maxFiles);
+        this.recordsPerFile = recordsPerFile;
+        this.writer = new Thread(this::writeLoop, "EventJournal");
+        this.writer.setDaemon(true);
+    }
+
+    public void start() {
+        running = true;
+        writer.start();
+    }
+
+    /**
+     * Queues one record; never blocks.
+     *
+     * @return false if the queue was full and the record was dropped
+     */
+    public boolean append(long timestampMillis, float energy, float peakFrequency,
+                          int voteScore, int recordFlags, int stagesPassed) {
+        long write = writeSequence.get();
+        if (write - readSequence.get() >= QUEUE_CAPACITY) {
+            droppedCount.incrementAndGet();
+            return false;
+        }
+        int slot = (int) (write & mask);
+        timestamps[slot] = timestampMillis;
+        energies[slot] = energy;
+        peaks[slot] = peakFrequency;
+        scores[slot] = (short) voteScore;
+        flags[slot] = (byte) recordFlags;
+        stages[slot] = (byte) stagesPassed;
+        writeSequence.lazySet(write + 1);
+        return true;
+    }
+
+    private void writeLoop() {
+        try {
+            while (running) {
+                drain();
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MS));
+            }
+            drain();
+        } catch (IOException e) {
+            lastError = e;
+        } finally {
+            closeFile();
+        }
+    }
+
+    private void drain() throws IOException {
+        long read = readSequence.get();
+        long write = writeSequence.get();
+        for (; read < write; read++) {
+            if (buffer == null || fileRecords == recordsPerFile) {
+                rotate();
+            }
+            int slot = (int) (read & mask);
+            buffer.putLong(timestamps[slot])
+                    .putFloat(energies[slot])
+                    .putFloat(peaks[slot])
+                    .putShort(scores[slot])
+                    .put(flags[slot])
+                    .put(stages[slot]);
+            fileRecords++;
+            writtenCount++;
+            // hand the slot back as soon as it is copied
+            readSequence.lazySet(read + 1);
+        }
+        if (buffer != null) {
+            buffer.putInt(COUNT_OFFSET, fileRecords);
+        }
+    }
+
+    private void rotate() throws IOException {
+        closeFile();
+        long now = System.currentTimeMillis();
+        File file = files.newFile(now);
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) recordsPerFile * RECORD_SIZE);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC_OFFSET, MAGIC)
+                .putShort(VERSION_OFFSET, (short) VERSION)
+                .putShort(RECORD_SIZE_OFFSET, (short) RECORD_SIZE)
+                .putInt(COUNT_OFFSET, 0)
+                .putLong(CREATED_OFFSET, now);
+        buffer.position(HEADER_SIZE);
+        fileRecords = 0;
+        files.deleteOldFiles();
+    }
+
+    private void closeFile() {
+        if (buffer != null) {
+            buffer.putInt(COUNT_OFFSET, fileRecords);
+            buffer.force();
+            buffer = null;
+        }
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                lastError = e;
+            }
+            channel = null;
+        }
+    }
+
+    /**
+     * Journal files in {@code directory}, oldest first.
+     */
+    public static File[] listFiles(File directory) {
+        return RotatingFiles.list(directory, FILE_PREFIX, FILE_SUFFIX);
+    }
+
+    /**
+     * Stops the writer after it has written every queued record.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getWrittenCount() {
+        return writtenCount;
+    }
+
+    /**
+     * I/O failure that stopped the writer, or null.
+     */
+    public IOException getLastError() {
+        return lastError;
+    }
+}
@@ -0,0 +1,83 @@
+package model.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * A directory of files named {@code prefix + creation time + suffix}, of which only the
+ * newest {@code maxFiles} are kept.
+ * <p>
+ * The creation time is zero-padded milliseconds, so name order is creation order. Files
+ * created in the same millisecond, or named like an existing file, take the next free
+ * millisecond, so a name is never reused.
+ */
+public final class RotatingFiles {
+
+    private final File directory;
+    private final String prefix;
+    private final String suffix;
+    private final int maxFiles;
+    private long lastTime = Long.MIN_VALUE;
+
+    /**
+     * @param maxFiles files kept, the oldest are deleted first
+     */
+    public RotatingFiles(File directory, String prefix, String suffix, int maxFiles) {
+        if (maxFiles <= 0) {
+            throw new IllegalArgumentException("maxFiles must be positive");
+        }
+        this.directory = directory;
+        this.prefix = prefix;
+        this.suffix = suffix;
+        this.maxFiles = maxFiles;
+    }
+
+    /**
+     * Name of a new file created at {@code timeMillis}, not yet used in the directory,
+     * creating the directory if missing. Not thread-safe.
+     */
+    public File newFile(long timeMillis) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("cannot create " + directory);
+        }
+        long time = Math.max(timeMillis, lastTime + 1);
+        File file = name(time);
+        while (file.exists()) {
+            file = name(++time);
+        }
+        lastTime = time;
+        return file;
+    }
+
+    private File name(long time) {
+        return new File(directory, String.format(Locale.ROOT, "%s%013d%s", prefix, time, suffix));
+    }
+
+    /**
+     * Deletes the oldest files beyond {@code maxFiles}.
+     */
+    public void deleteOldFiles() {
+        File[] files = list(directory, prefix, suffix);
+        for (int i = 0; i < files.length - maxFiles; i++) {
+            files[i].delete();
+        }
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Files of the set in {@code directory}, oldest first.
+     */
+    public static File[] list(File directory, String prefix, String suffix) {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(suffix));
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files);
+        return files;
+    }
+}
@@ -0,0 +1,99 @@
+package model.metrics;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+
+import model.constant.Constant;
+
+/**
+ * Process-wide counters and latency histograms for the capture and detection threads,
+ * kept in preallocated primitive arrays so recording costs no allocation, string building
+ * or log I/O.
+ * <p>
+ * Call sites guard every update with {@code if (DetectorMetrics.ENABLED)}; the flag is a
+ * compile-time constant, so with {@link Constant#metricsEnabled} off the instrumentation
+ * is removed by the compiler. Each metric has a single writer thread, and
+ * {@link #dump(PrintWriter)} reads an approximate snapshot from any thread.
+ */
+public final class DetectorMetrics {
+
+    public static final boolean ENABLED = Constant.metricsEnabled;
+
+    // counters
+    public static final int FRAMES_CAPTURED = 0;
+    public static final int CAPTURE_WAKEUPS = 1;
+    public static final int DROPPED_FRAMES = 2;
+    public static final int FRAMES_ANALYZED = 3;
+    public static final int WINDOWS_ANALYZED = 4;
+    public static final int WINDOWS_GATE_PASSED = 5;
+    public static final int WINDOWS_POSITIVE = 6;
+    public static final int DETECTIONS = 7;
+
+    // histograms, in nanoseconds
+    public static final int READ_TIME = 0;
+    public static final int ANALYSIS_TIME = 1;
+
+    private static final String[] COUNTER_NAMES = {
+            "frames captured", "capture wakeups", "dropped frames", "frames analyzed",
+            "windows analyzed", "windows passed gate", "windows positive", "detections"
+    };
+    private static final String[] HISTOGRAM_NAMES = {
+            "read time/batch", "analysis time/frame"
+    };
+
+    private static final long[] counters = new long[COUNTER_NAMES.length];
+    private static final LatencyHistogram[] histograms = {
+            new LatencyHistogram(), new LatencyHistogram()
+    };
+
+    private DetectorMetrics() {
+    }
+
+    public static void add(int counter, long delta) {
+        counters[counter] += delta;
+    }
+
+    /**
+     * Overwrites a counter that mirrors a total kept elsewhere, e.g. ring overruns.
+     */
+    public static void set(int counter, long value) {
+        counters[counter] = value;
+    }
+
+    public static void record(int histogram, long nanos) {
+        histograms[histogram].record(nanos);
+    }
+
+    public static long get(int counter) {
+        return counters[counter];
+    }
+
+    public static LatencyHistogram getHistogram(int histogram) {
+        return histograms[histogram];
+    }
+
+    public static void reset() {
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = 0;
+        }
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+    }
+
+    public static void dump(PrintWriter writer) {
+        if (!ENABLED) {
+            writer.println("detector metrics disabled");
+            return;
+        }
+        for (int i = 0; i < counters.length; i++) {
+            writer.printf(Locale.ROOT, "%-22s %d%n", COUNTER_NAMES[i], counters[i]);
+        }
+        long windows = counters[WINDOWS_ANALYZED];
+        writer.printf(Locale.ROOT, "%-22s %.2f%%%n", "gate pass rate",
+                windows == 0 ? 0 : 100.0 * counters[WINDOWS_GATE_PASSED] / windows);
+        for (int i = 0; i < histograms.length; i++) {
+            writer.printf(Locale.ROOT, "%-22s %s%n", HISTOGRAM_NAMES[i], histograms[i].toString(1000, "us"));
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package model.offload;
+
+import java.io.IOException;
+
+/**
+ * In-process {@link OffloadTransport}: two connected ends, each delivering its packets
+ * synchronously to the other end's receiver on the sending thread. Lets the whole offload
+ * path run, be checked and be benchmarked in one JVM, without the radio.
+ */
+public final class LoopbackTransport implements OffloadTransport {
+
+    private LoopbackTransport peer;
+    private volatile Receiver receiver;
+    private volatile boolean closed;
+    private long packetCount;
+    private long byteCount;
+
+    private LoopbackTransport() {
+    }
+
+    /**
+     * Two connected ends, e.g. the watch and the phone.
+     */
+    public static LoopbackTransport[] createPair() {
+        LoopbackTransport first = new LoopbackTransport();
+        LoopbackTransport second = new LoopbackTransport();
+        first.peer = second;
+        second.peer = first;
+        return new LoopbackTransport[]{first, second};
+    }
+
+    @Override
+    public void setReceiver(Receiver receiver) {
+        this.receiver = receiver;
+    }
+
+    @Override
+    public void send(byte[] data, int offset, int length) throws IOException {
+        if (closed || peer.closed) {
+            throw new IOException("loopback closed");
+        }
+        packetCount++;
+        byteCount += length;
+        Receiver peerReceiver = peer.receiver;
+        if (peerReceiver != null) {
+            peerReceiver.onPacket(data, offset, length);
+        }
+    }
+
+    /**
+     * Packets sent from this end.
+     */
+    public long getPacketCount() {
+        return packetCount;
+    }
+
+    /**
+     * Payload bytes sent from this end.
+     */
+    public long getByteCount() {
+        return byteCount;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Receiver peerReceiver = peer.receiver;
+        if (!peer.closed && peerReceiver != null) {
+            peerReceiver.onClosed();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package model.offload;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.android.gms.wearable.ChannelClient;
+import com.google.android.gms.wearable.Wearable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Phone side host of offloaded detection: accepts the Wearable Data Layer channels watches
+ * open on {@link WearableChannelTransport#CHANNEL_PATH} and runs an {@link OffloadEngine} on
+ * each, until the channel closes.
+ * <p>
+ * The phone app calls {@link #start()} while it offers detection, e.g. from a foreground
+ * service, and {@link #stop()} after. Channel callbacks arrive on the main thread, so the
+ * channel streams are opened and closed on a background thread.
+ */
+public final class OffloadChannelHost {
+
+    private static final String TAG = "OffloadChannelHost";
+
+    private final ChannelClient channelClient;
+    private final long timeoutMillis;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, TAG);
+        thread.setDaemon(true);
+        return thread;
+    });
+    // touched on the executor only; each transport's receiver is its OffloadEngine
+    private final Map<ChannelClient.Channel, StreamTransport> transports = new HashMap<>();
+
+    private final ChannelClient.ChannelCallback callback = new ChannelClient.ChannelCallback() {
+        @Override
+        public void onChannelOpened(ChannelClient.Channel channel) {
+            if (WearableChannelTransport.CHANNEL_PATH.equals(channel.getPath())) {
+                executor.execute(() -> accept(channel));
+            }
+        }
+
+        @Override
+        public void onChannelClosed(ChannelClient.Channel channel, int closeReason, int appSpecificErrorCode) {
+            executor.execute(() -> release(channel));
+        }
+    };
+
+    /**
+     * @param timeoutMillis how long to wait for the streams of a new channel
+     */
+    public OffloadChannelHost(Context context, long timeoutMillis) {
+        this.channelClient = Wearable.getChannelClient(context);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public void start() {
+        channelClient.registerChannelCallback(callback);
+    }
+
+    /**
+     * Stops accepting channels and closes the open ones.
+     */
+    public void stop() {
+        channelClient.unregisterChannelCallback(callback);
+        executor.execute(() -> {
+            for (ChannelClient.Channel channel : new ArrayList<>(transports.keySet())) {
+                release(channel);
+                channelClient.close(channel);
+            }
+        });
+        executor.shutdown();
+    }
+
+    private void accept(ChannelClient.Channel channel) {
+        try {
+            InputStream input = Tasks.await(channelClient.getInputStream(channel), timeoutMillis, TimeUnit.MILLISECONDS);
+            OutputStream output = Tasks.await(channelClient.getOutputStream(channel), timeoutMillis, TimeUnit.MILLISECONDS);
+            StreamTransport transport = new StreamTransport(input, output, TAG + " " + channel.getNodeId());
+            new OffloadEngine(transport);
+            transports.put(channel, transport);
+            Log.d(TAG, "Detecting for " + channel.getNodeId());
+        } catch (ExecutionException | TimeoutException e) {
+            Log.w(TAG, "Cannot open offload channel of " + channel.getNodeId(), e);
+            channelClient.close(channel);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            channelClient.close(channel);
+        }
+    }
+
+    private void release(ChannelClient.Channel channel) {
+        StreamTransport transport = transports.remove(channel);
+        if (transport == null) {
+            return;
+        }
+        try {
+            transport.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Closing offload channel failed", e);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package model.offload;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import model.detection.DetectionPipeline;
+import model.detection.EnergyGate;
+import model.detection.WhistlePattern;
+import model.dsp.MuLaw;
+import model.helper.DetectorCallback;
+import model.helper.DetectorType;
+
+/**
+ * Watch side of offloaded detection: runs only the silence gate of the detection pipeline
+ * and sends the frames that pass it, mu-law coded, to an {@link OffloadEngine} on the phone.
+ * The frame before a passing frame and {@value #HANGOVER_FRAMES} frames after the last one
+ * go along, so the phone's overlapping windows and vote see the whole sound. For about
+ * {@value #QUIET_TAIL_MS} ms after that, small SILENCE packets let the phone's timeline
+ * advance, so cooldowns end and whistle patterns complete without waiting for the next
+ * sound. Events and whistle patterns decided on the phone come back to the
+ * {@link DetectorCallback} on the transport's receiving thread.
+ * <p>
+ * {@link #process(short[], int)} is called from one thread, frame by frame, and allocates
+ * nothing. A failed send or a link closed by the other end marks the client as
+ * {@linkplain #isFailed() failed}; its owner then goes back to local detection.
+ */
+public final class OffloadClient implements OffloadTransport.Receiver {
+
+    public static final int HANGOVER_FRAMES = 4;
+    // longer than a whistle pattern's gap
+    public static final int QUIET_TAIL_MS = 1000;
+    private static final int SILENCE_MARK_FRAMES = 8;
+
+    // send times of recent frames, for the decision round trip
+    private static final int SEND_TIME_SLOTS = 64;
+
+    private final OffloadTransport transport;
+    private final DetectorCallback callback;
+    private final DetectorType[] types;
+    private final int frameSize;
+    private final EnergyGate gate;
+    private final int quietTailFrames;
+    private final short[] previousFrame;
+    private final byte[] packet;
+    private final ByteBuffer packetBuffer;
+    private final long[] sendTimes = new long[SEND_TIME_SLOTS];
+
+    private long sequence = -1;
+    private long lastSentSequence = -1;
+    private int hangover;
+    private int silentFrames;
+
+    private long framesSent;
+    private long bytesSent;
+    private volatile boolean failed;
+    private volatile long sendErrors;
+    private volatile IOException lastError;
+    private volatile long eventCount;
+    private volatile long lastRoundTripNanos;
+
+    public OffloadClient(OffloadTransport transport, int sampleRate, int frameSize, int hopSize,
+                         DetectorCallback callback, DetectorType... types) throws IOException {
+        int typeMask = OffloadProtocol.typeMask(types);
+        this.transport = transport;
+        this.callback = callback;
+        this.types = OffloadProtocol.types(typeMask);
+        this.frameSize = frameSize;
+        this.gate = DetectionPipeline.createGate(sampleRate, frameSize, types);
+        this.quietTailFrames = (int) ((long) QUIET_TAIL_MS * sampleRate / 1000 / frameSize);
+        this.previousFrame = new short[frameSize];
+        this.packet = new byte[Math.max(OffloadProtocol.FRAME_HEADER_SIZE + frameSize, OffloadProtocol.CONFIG_SIZE)];
+        this.packetBuffer = ByteBuffer.wrap(packet);
+
+        transport.setReceiver(this);
+        packetBuffer.clear();
+        packetBuffer.put(OffloadProtocol.CONFIG).putInt(sampleRate).putInt(frameSize).putInt(hopSize).putInt(typeMask);
+        transport.send(packet, 0, packetBuffer.position());
+    }
+
+    /**
+     * Gates one captured frame and sends it if the phone needs it.
+     *
+     * @return whether the frame passed the silence gate
+     */
+    public boolean process(short[] samples, int offset) {
+        sequence++;
+        if (gate.analyze(samples, offset)) {
+            if (lastSentSequence != sequence - 1 && sequence > 0) {
+                // the window straddling the onset needs the frame before
+                send(sequence - 1, previousFrame, 0);
+            }
+            send(sequence, samples, offset);
+            hangover = HANGOVER_FRAMES;
+            return true;
+        }
+        if (hangover > 0) {
+            send(sequence, samples, offset);
+            hangover--;
+        } else {
+            System.arraycopy(samples, offset, previousFrame, 0, frameSize);
+            silentFrames++;
+            if (silentFrames % SILENCE_MARK_FRAMES == 0 && silentFrames <= quietTailFrames + SILENCE_MARK_FRAMES) {
+                sendSilence(sequence);
+            }
+        }
+        return false;
+    }
+
+    private void sendSilence(long frameSequence) {
+        packetBuffer.clear();
+        packetBuffer.put(OffloadProtocol.SILENCE).putLong(frameSequence).putFloat((float) gate.getNoiseFloor());
+        try {
+            transport.send(packet, 0, packetBuffer.position());
+            bytesSent += OffloadProtocol.SILENCE_SIZE;
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void send(long frameSequence, short[] samples, int offset) {
+        packetBuffer.clear();
+        packetBuffer.put(OffloadProtocol.FRAME).putLong(frameSequence).putFloat((float) gate.getNoiseFloor());
+        MuLaw.encode(samples, offset, packet, OffloadProtocol.FRAME_HEADER_SIZE, frameSize);
+        int length = OffloadProtocol.FRAME_HEADER_SIZE + frameSize;
+        sendTimes[(int) (frameSequence % SEND_TIME_SLOTS)] = System.nanoTime();
+        try {
+            transport.send(packet, 0, length);
+            lastSentSequence = frameSequence;
+            silentFrames = 0;
+            framesSent++;
+            bytesSent += length;
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void fail(IOException e) {
+        sendErrors++;
+        lastError = e;
+        failed = true;
+    }
+
+    @Override
+    public void onPacket(byte[] data, int offset, int length) {
+        ByteBuffer in = ByteBuffer.wrap(data, offset, length);
+        byte type = in.get();
+        long frameSequence = in.getLong();
+        lastRoundTripNanos = System.nanoTime() - sendTimes[(int) (frameSequence % SEND_TIME_SLOTS)];
+        if (type == OffloadProtocol.EVENT) {
+            int events = in.getInt();
+            for (int d = 0; events != 0 && d < types.length; d++, events >>>= 1) {
+                if ((events & 1) != 0) {
+                    eventCount++;
+                    callback.onSoundDetected(types[d]);
+                }
+            }
+        } else if (type == OffloadProtocol.PATTERN) {
+            byte[] name = new byte[in.getShort()];
+            in.get(name);
+            WhistlePattern pattern = findPattern(new String(name, StandardCharsets.UTF_8));
+            if (pattern != null) {
+                callback.onPatternDetected(pattern);
+            }
+        }
+    }
+
+    @Override
+    public void onClosed() {
+        failed = true;
+    }
+
+    private static WhistlePattern findPattern(String name) {
+        for (WhistlePattern pattern : WhistlePattern.defaults()) {
+            if (pattern.getName().equals(name)) {
+                return pattern;
+            }
+        }
+        return null;
+    }
+
+    public EnergyGate getGate() {
+        return gate;
+    }
+
+    /**
+     * Frames seen by {@link #process(short[], int)}.
+     */
+    public long getFrameCount() {
+        return sequence + 1;
+    }
+
+    public long getFramesSent() {
+        return framesSent;
+    }
+
+    /**
+     * Packet bytes sent for frames and silence, without the transport's own framing.
+     */
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    /**
+     * Whether a send failed or the phone closed the link; events no longer come back.
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    public long getSendErrors() {
+        return sendErrors;
+    }
+
+    /**
+     * Error of the last failed send, or null.
+     */
+    public IOException getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Events reported by the phone.
+     */
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * Time from sending a frame to receiving the decision it completed, for the last decision.
+     */
+    public long getLastRoundTripNanos() {
+        return lastRoundTripNanos;
+    }
+}
@@ -0,0 +1,173 @@
+package model.offload;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import model.detection.DetectionPipeline;
+import model.dsp.MuLaw;
+import model.helper.DetectorType;
+
+/**
+ * Phone side of offloaded detection: builds the full detection pipeline from the watch's
+ * CONFIG packet, runs it on every received frame and answers with EVENT and PATTERN packets.
+ * <p>
+ * Frames the watch left out as silence, at the latest when the next FRAME or SILENCE packet
+ * tells of them, are skipped with {@link DetectionPipeline#skipFrame()}, so the pipeline
+ * keeps the watch's timeline: event cooldowns and the gaps of whistle patterns are counted
+ * in windows. The skipped windows never reach the silence gate; its adaptive floor is fed
+ * the background level the watch tracked instead, so it falls back to the watch's ambient
+ * level, not towards zero, between sounds. Gaps longer
+ * than {@value #MAX_GAP_MS} ms are shortened to that. Packets are handled on the
+ * transport's receiving thread.
+ */
+public final class OffloadEngine implements OffloadTransport.Receiver {
+
+    // longer than any cooldown or pattern gap
+    public static final int MAX_GAP_MS = 10000;
+
+    private final OffloadTransport transport;
+    private final byte[] reply = new byte[256];
+    private final ByteBuffer replyBuffer = ByteBuffer.wrap(reply);
+
+    private DetectionPipeline pipeline;
+    private DetectorType[] types;
+    private short[] frame;
+    private int maxGapFrames;
+    private long expectedSequence;
+    private long currentSequence;
+
+    private volatile long framesReceived;
+    private volatile long gapFrames;
+    private volatile long eventCount;
+    private volatile long protocolErrors;
+    private volatile boolean closed;
+    private volatile IOException lastError;
+
+    public OffloadEngine(OffloadTransport transport) {
+        this.transport = transport;
+        transport.setReceiver(this);
+    }
+
+    @Override
+    public void onPacket(byte[] data, int offset, int length) {
+        ByteBuffer in = ByteBuffer.wrap(data, offset, length);
+        byte type = in.get();
+        if (type == OffloadProtocol.CONFIG) {
+            configure(in.getInt(), in.getInt(), in.getInt(), in.getInt());
+        } else if (type == OffloadProtocol.FRAME && pipeline != null
+                && length == OffloadProtocol.FRAME_HEADER_SIZE + frame.length) {
+            long sequence = in.getLong();
+            fillGap(sequence, in.getFloat());
+            MuLaw.decode(data, offset + OffloadProtocol.FRAME_HEADER_SIZE, frame, 0, frame.length);
+            framesReceived++;
+            process(sequence, frame);
+            expectedSequence = sequence + 1;
+        } else if (type == OffloadProtocol.SILENCE && pipeline != null) {
+            long sequence = in.getLong();
+            fillGap(sequence + 1, in.getFloat());
+            expectedSequence = Math.max(expectedSequence, sequence + 1);
+        } else {
+            protocolErrors++;
+        }
+    }
+
+    @Override
+    public void onClosed() {
+        closed = true;
+    }
+
+    private void configure(int sampleRate, int frameSize, int hopSize, int typeMask) {
+        types = OffloadProtocol.types(typeMask);
+        pipeline = DetectionPipeline.create(sampleRate, frameSize, hopSize, types);
+        pipeline.setPatternListener((pattern, endSample) -> sendPattern(pattern.getName()));
+        frame = new short[frameSize];
+        maxGapFrames = (int) ((long) MAX_GAP_MS * sampleRate / 1000 / frameSize);
+        expectedSequence = 0;
+    }
+
+    /**
+     * Skips the frames before {@code sequence} the watch did not send, at the level of the
+     * background it tracked.
+     */
+    private void fillGap(long sequence, float noiseFloor) {
+        long missing = Math.min(sequence - expectedSequence, maxGapFrames);
+        for (long i = 0; i < missing; i++) {
+            gapFrames++;
+            currentSequence = expectedSequence + i;
+            reply(currentSequence, pipeline.skipFrame(noiseFloor));
+        }
+    }
+
+    private void process(long sequence, short[] samples) {
+        currentSequence = sequence;
+        reply(sequence, pipeline.process(samples, 0));
+    }
+
+    private void reply(long sequence, int events) {
+        if (events != 0) {
+            eventCount += Integer.bitCount(events);
+            replyBuffer.clear();
+            replyBuffer.put(OffloadProtocol.EVENT).putLong(sequence).putInt(events);
+            send();
+        }
+    }
+
+    private void sendPattern(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        replyBuffer.clear();
+        replyBuffer.put(OffloadProtocol.PATTERN).putLong(currentSequence).putShort((short) bytes.length).put(bytes);
+        send();
+    }
+
+    private void send() {
+        try {
+            transport.send(reply, 0, replyBuffer.position());
+        } catch (IOException e) {
+            lastError = e;
+        }
+    }
+
+    /**
+     * Pipeline built from the last CONFIG packet, or null before it.
+     */
+    public DetectionPipeline getPipeline() {
+        return pipeline;
+    }
+
+    public long getFramesReceived() {
+        return framesReceived;
+    }
+
+    /**
+     * Frames skipped for frames the watch did not send.
+     */
+    public long getGapFrames() {
+        return gapFrames;
+    }
+
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * Packets that were malformed or arrived before the CONFIG packet.
+     */
+    public long getProtocolErrors() {
+        return protocolErrors;
+    }
+
+    /**
+     * Whether the watch closed the link or it broke.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Error of the last failed reply, or null.
+     */
+    public IOException getLastError() {
+        return lastError;
+    }
+}
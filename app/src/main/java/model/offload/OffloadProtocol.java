@@ -0,0 +1,58 @@
+package model.offload;
+
+import model.helper.DetectorType;
+
+/**
+ * Packets of the offload link, big-endian, each starting with a type byte:
+ * <pre>
+ * CONFIG   watch to phone  int sampleRate, int frameSize, int hopSize, int detector type mask
+ * FRAME    watch to phone  long sequence, float noise floor, frameSize mu-law samples
+ * SILENCE  watch to phone  long sequence of the last of a run of frames left out as silence,
+ *                          float noise floor
+ * EVENT    phone to watch  long sequence, int mask of the detectors that fired
+ * PATTERN  phone to watch  long sequence, short length, UTF-8 whistle pattern name
+ * </pre>
+ * Frame sequences count every captured frame, sent or not, so the phone sees where the
+ * watch left silence out. The noise floor is the watch gate's background level in mean
+ * absolute amplitude, NaN before it is known. The detector order of event masks is the order of the CONFIG
+ * type mask bits.
+ */
+public final class OffloadProtocol {
+
+    public static final byte CONFIG = 1;
+    public static final byte FRAME = 2;
+    public static final byte EVENT = 3;
+    public static final byte PATTERN = 4;
+    public static final byte SILENCE = 5;
+
+    public static final int CONFIG_SIZE = 1 + 4 * 4;
+    public static final int FRAME_HEADER_SIZE = 1 + 8 + 4;
+    public static final int SILENCE_SIZE = 1 + 8 + 4;
+    public static final int EVENT_SIZE = 1 + 8 + 4;
+
+    private OffloadProtocol() {
+    }
+
+    public static int typeMask(DetectorType... types) {
+        int mask = 0;
+        for (DetectorType type : types) {
+            mask |= 1 << type.ordinal();
+        }
+        return mask;
+    }
+
+    /**
+     * Detector types of a CONFIG type mask, in ordinal order.
+     */
+    public static DetectorType[] types(int typeMask) {
+        DetectorType[] all = DetectorType.values();
+        DetectorType[] types = new DetectorType[Integer.bitCount(typeMask & ((1 << all.length) - 1))];
+        int count = 0;
+        for (DetectorType type : all) {
+            if ((typeMask & (1 << type.ordinal())) != 0) {
+                types[count++] = type;
+            }
+        }
+        return types;
+    }
+}
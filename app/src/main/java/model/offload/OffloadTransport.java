@@ -0,0 +1,40 @@
+package model.offload;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Packet link between the watch and the phone running the detector. Packets keep their
+ * boundaries; see {@link OffloadProtocol} for their contents.
+ */
+public interface OffloadTransport extends Closeable {
+
+    /**
+     * Receives the packets of the other end; must not keep {@code data} after returning.
+     */
+    interface Receiver {
+        void onPacket(byte[] data, int offset, int length);
+
+        /**
+         * The other end closed the link or it broke; no packets follow.
+         */
+        void onClosed();
+    }
+
+    /**
+     * Opens a transport, possibly blocking while the link is set up.
+     */
+    interface Factory {
+        OffloadTransport open() throws IOException;
+    }
+
+    /**
+     * Sets the receiver of incoming packets; call before the first packet can arrive.
+     */
+    void setReceiver(Receiver receiver);
+
+    /**
+     * Sends one packet; the caller may reuse {@code data} once this returns.
+     */
+    void send(byte[] data, int offset, int length) throws IOException;
+}
@@ -0,0 +1,99 @@
+package model.offload;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * {@link OffloadTransport} over a pair of byte streams, such as a Wearable Data Layer
+ * channel: each packet is written with a 4 byte length prefix, and a reader thread, started
+ * with the first {@link #setReceiver(Receiver)}, splits the input back into packets. When the
+ * input ends or fails before {@link #close()}, the receiver hears of it.
+ */
+public class StreamTransport implements OffloadTransport {
+
+    // larger packets mean a corrupt stream
+    private static final int MAX_PACKET_SIZE = 1 << 20;
+
+    private final DataInputStream input;
+    private final DataOutputStream output;
+    private final Thread reader;
+    private volatile Receiver receiver;
+    private volatile boolean closed;
+    private volatile IOException lastError;
+
+    public StreamTransport(InputStream input, OutputStream output, String name) {
+        this.input = new DataInputStream(new BufferedInputStream(input));
+        this.output = new DataOutputStream(new BufferedOutputStream(output));
+        this.reader = new Thread(this::readLoop, name);
+        this.reader.setDaemon(true);
+    }
+
+    @Override
+    public synchronized void setReceiver(Receiver receiver) {
+        this.receiver = receiver;
+        if (reader.getState() == Thread.State.NEW) {
+            reader.start();
+        }
+    }
+
+    @Override
+    public synchronized void send(byte[] data, int offset, int length) throws IOException {
+        output.writeInt(length);
+        output.write(data, offset, length);
+        output.flush();
+    }
+
+    private void readLoop() {
+        byte[] packet = new byte[256];
+        try {
+            while (!closed) {
+                int length = input.readInt();
+                if (length < 0 || length > MAX_PACKET_SIZE) {
+                    throw new IOException("bad packet length " + length);
+                }
+                if (length > packet.length) {
+                    packet = new byte[Math.max(length, 2 * packet.length)];
+                }
+                input.readFully(packet, 0, length);
+                Receiver current = receiver;
+                if (current != null) {
+                    current.onPacket(packet, 0, length);
+                }
+            }
+        } catch (EOFException e) {
+            // the other end closed the stream
+        } catch (IOException e) {
+            if (!closed) {
+                lastError = e;
+            }
+        }
+        Receiver current = receiver;
+        if (!closed && current != null) {
+            current.onClosed();
+        }
+    }
+
+    /**
+     * Error that ended the reader thread, or null.
+     */
+    public IOException getLastError() {
+        return lastError;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        try {
+            output.close();
+        } finally {
+            // unblocks the reader
+            input.close();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package model.offload;
+
+import android.content.Context;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.android.gms.wearable.ChannelClient;
+import com.google.android.gms.wearable.Node;
+import com.google.android.gms.wearable.Wearable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * {@link StreamTransport} over a Wearable Data Layer channel to the nearest connected phone.
+ * {@link #open(Context, long)} blocks while the channel is set up, so it must not run on
+ * the main thread.
+ */
+public final class WearableChannelTransport extends StreamTransport {
+
+    public static final String CHANNEL_PATH = "/deafwhistler/offload";
+
+    private final ChannelClient channelClient;
+    private final ChannelClient.Channel channel;
+
+    private WearableChannelTransport(ChannelClient channelClient, ChannelClient.Channel channel,
+                                     InputStream input, OutputStream output) {
+        super(input, output, "WearableChannelTransport");
+        this.channelClient = channelClient;
+        this.channel = channel;
+    }
+
+    /**
+     * Opens a channel to a nearby connected node, or the first connected one.
+     *
+     * @throws IOException if no node is connected or the channel cannot be opened in time
+     */
+    public static WearableChannelTransport open(Context context, long timeoutMillis) throws IOException {
+        try {
+            List<Node> nodes = Tasks.await(Wearable.getNodeClient(context).getConnectedNodes(),
+                    timeoutMillis, TimeUnit.MILLISECONDS);
+            Node target = null;
+            for (Node node : nodes) {
+                if (target == null || node.isNearby() && !target.isNearby()) {
+                    target = node;
+                }
+            }
+            if (target == null) {
+                throw new IOException("no connected phone");
+            }
+            ChannelClient channelClient = Wearable.getChannelClient(context);
+            ChannelClient.Channel channel = Tasks.await(channelClient.openChannel(target.getId(), CHANNEL_PATH),
+                    timeoutMillis, TimeUnit.MILLISECONDS);
+            OutputStream output = Tasks.await(channelClient.getOutputStream(channel), timeoutMillis, TimeUnit.MILLISECONDS);
+            InputStream input = Tasks.await(channelClient.getInputStream(channel), timeoutMillis, TimeUnit.MILLISECONDS);
+            return new WearableChannelTransport(channelClient, channel, input, output);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IOException("cannot open offload channel", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while opening offload channel", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            channelClient.close(channel);
+        }
+    }
+}
@@ -9,7 +9,9 @@ import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.content.pm.ServiceInfo;
 import android.os.Build;
+import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
 import android.os.PowerManager;
 import android.os.VibrationEffect;
 import android.os.Vibrator;
@@ -19,32 +21,65 @@ import android.widget.Toast;
 import androidx.core.app.NotificationCompat;
 import androidx.core.content.ContextCompat;
 
+import com.google.android.gms.wearable.Node;
+import com.google.android.gms.wearable.Wearable;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import model.alert.AlertDispatcher;
+import model.alert.AlertKind;
+import model.audio.PreTriggerCapture;
+import model.constant.Constant;
+import model.detection.WhistleClassifierModel;
+import model.detection.WhistlePattern;
+import model.helper.AudioScheduler;
 import model.helper.DetectorCallback;
 import model.helper.DetectorThread;
 import model.helper.DetectorType;
+import model.helper.DutyCycleScheduler;
 import model.helper.RecorderThread;
+import model.journal.EventJournal;
+import model.metrics.DetectorMetrics;
+import model.offload.WearableChannelTransport;
 
 /**
  * A detection service that runs as a foreground service,
- * continuously listening for sound (whistle detection).
+ * continuously listening for sound (whistle and clap detection).
  */
 public class DetectionService extends Service implements DetectorCallback {
 
     private static final String TAG = "DetectionService";
     private static final int NOTIFICATION_ID = 1;
     private static final String CHANNEL_ID = "detection_channel_id";
+    private static final String ALERT_CHANNEL_ID = "alert_channel_id";
+    private static final int ALERT_NOTIFICATION_ID = 2;
+    // message path for the paired phone; the payload is the alert label in UTF-8
+    private static final String COMPANION_ALERT_PATH = "/deafwhistler/alert";
+    // one alert per kind and label per window; covers the vote hysteresis of one whistle
+    private static final long ALERT_COALESCE_MS = 3000;
+    private static final int ALERT_QUEUE_CAPACITY = 16;
+    // 64k records of 20 bytes per file, about 1.3 MB; 8 files cover hours of non-silent audio
+    private static final int JOURNAL_RECORDS_PER_FILE = 65536;
+    private static final int JOURNAL_MAX_FILES = 8;
+    private static final int MAX_CAPTURE_FILES = 20;
+    private static final long THREAD_STOP_TIMEOUT_MS = 1000;
 
-    private DetectorThread mDetectorThread;
-    private RecorderThread mRecorderThread;
+    private DutyCycleScheduler mScheduler;
+    private EventJournal mJournal;
+    private PreTriggerCapture mCapture;
+    private AlertDispatcher mAlerts;
     private Vibrator vibrator;
     private PowerManager.WakeLock wakeLock;
-    private static Context _context;
 
     /**
      * Start the detection service.
      */
     public static void startDetection(Context context) {
-        _context = context;
         Toast.makeText(context, "Detection Service Started!", Toast.LENGTH_SHORT).show();
         Intent intent = new Intent(context, DetectionService.class);
         intent.putExtra("action", "start");
@@ -60,7 +95,6 @@ public class DetectionService extends Service implements DetectorCallback {
      * Stop the detection service.
      */
     public static void stopDetection(Context context) {
-        _context = context;
         Toast.makeText(context, "Detection Service Stopped!", Toast.LENGTH_SHORT).show();
         Intent intent = new Intent(context, DetectionService.class);
         intent.putExtra("action", "stop");
@@ -71,10 +105,14 @@ public class DetectionService extends Service implements DetectorCallback {
     public void onCreate() {
         super.onCreate();
         createNotificationChannel();
+        createAlerts();
 
-        // Acquire a wake lock to keep CPU running when the screen is off
+        // Acquire a wake lock to keep CPU running when the screen is off. A batched capture
+        // needs none: the running AudioRecord wakes the capture thread once per batch. Only
+        // frame-by-frame reads and the duty cycle's microphone-off timer rely on the CPU staying on
+        boolean needsWakeLock = Constant.captureBatchLatencyMs == 0 || Constant.dutyCycleSleepMs > 0;
         PowerManager powerManager = (PowerManager) getSystemService(Context.POWER_SERVICE);
-        if (powerManager != null) {
+        if (powerManager != null && needsWakeLock) {
             wakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, "DetectionService::Wakelock");
             wakeLock.acquire();
         }
@@ -116,6 +154,8 @@ public class DetectionService extends Service implements DetectorCallback {
             } else if ("stop".equals(action)) {
                 stopDetectionTask();
                 stopSelf();
+            } else if ("metrics".equals(action)) {
+                logMetrics();
             }
         } else {
             startDetectionTask();
@@ -138,17 +178,31 @@ public class DetectionService extends Service implements DetectorCallback {
             NotificationManager manager = getSystemService(NotificationManager.class);
             if (manager != null) {
                 manager.createNotificationChannel(channel);
+                NotificationChannel alertChannel = new NotificationChannel(ALERT_CHANNEL_ID,
+                        "Detection Alerts", NotificationManager.IMPORTANCE_HIGH);
+                alertChannel.setDescription("Whistles and claps heard while detecting");
+                manager.createNotificationChannel(alertChannel);
             }
         }
     }
 
+    /**
+     * Sets up the alert kinds; they run on the main thread, away from detection.
+     */
+    private void createAlerts() {
+        mAlerts = new AlertDispatcher(new Handler(Looper.getMainLooper()), ALERT_COALESCE_MS, ALERT_QUEUE_CAPACITY);
+        mAlerts.setSink(AlertKind.VIBRATION, (label, timeMillis) -> triggerVibration());
+        mAlerts.setSink(AlertKind.NOTIFICATION, this::postAlertNotification);
+        mAlerts.setSink(AlertKind.COMPANION_MESSAGE, this::sendCompanionAlert);
+    }
+
     /**
      * Creates a notification for the foreground service.
      */
     private Notification createNotification() {
         return new NotificationCompat.Builder(this, CHANNEL_ID)
                 .setContentTitle("Detection Service")
-                .setContentText("Listening for whistle sounds...")
+                .setContentText("Listening for whistles and claps...")
                 .setSmallIcon(android.R.drawable.ic_btn_speak_now)
                 .setPriority(NotificationCompat.PRIORITY_LOW)
                 .setOngoing(true) // Ensure it is a foreground service
@@ -156,12 +210,26 @@ public class DetectionService extends Service implements DetectorCallback {
     }
 
     /**
-     * Called when a whistle is detected.
+     * Called on the detector thread when a whistle or a clap is detected.
      */
     @Override
-    public void onWhistleDetected() {
-        Log.d(TAG, "onWhistleDetected");
-        triggerVibration();
+    public void onSoundDetected(DetectorType type) {
+        Log.d(TAG, "onSoundDetected: " + type);
+        if (mCapture != null) {
+            mCapture.trigger();
+        }
+        mAlerts.dispatch(type.name(), System.currentTimeMillis());
+    }
+
+    /**
+     * Called on the detector thread when a sequence of whistles matches a signal such as two
+     * short whistles. The whistles themselves have already vibrated.
+     */
+    @Override
+    public void onPatternDetected(WhistlePattern pattern) {
+        Log.d(TAG, "onPatternDetected: " + pattern);
+        mAlerts.dispatch(pattern.toString(), System.currentTimeMillis(),
+                AlertKind.NOTIFICATION.bit() | AlertKind.COMPANION_MESSAGE.bit());
     }
 
     /**
@@ -175,47 +243,120 @@ public class DetectionService extends Service implements DetectorCallback {
             e.printStackTrace();
         }
 
-        // Initialize and start the RecorderThread
-        mRecorderThread = new RecorderThread();
-        mRecorderThread.startRecording();
+        // Initialize the RecorderThread and the DetectorThread; both detectors share one capture and FFT
+        int historyMs = Constant.captureOnDetection ? Constant.preTriggerMs + Constant.postTriggerMs : 0;
+        RecorderThread recorderThread = new RecorderThread(Constant.captureBatchLatencyMs, historyMs);
+        DetectorType whistleType = DetectorType.WHISTLE;
+        if (Constant.classifierWhistleDetection) {
+            if (WhistleClassifierModel.create().matches(recorderThread.getSampleRate(), recorderThread.getFrameSize())) {
+                whistleType = DetectorType.WHISTLE_CLASSIFIER;
+            } else {
+                Log.w(TAG, "Whistle classifier not trained for this capture rate, using the whistle engine");
+            }
+        }
+        DetectorThread detectorThread = new DetectorThread(recorderThread, recorderThread.getFrameSize() / 2, this,
+                whistleType, DetectorType.CLAP);
+        if (Constant.captureOnDetection) {
+            int frameMs = 1000 * recorderThread.getFrameSize() / recorderThread.getSampleRate();
+            mCapture = new PreTriggerCapture(recorderThread.getFrameRing(), recorderThread.getSampleRate(),
+                    Constant.preTriggerMs / frameMs, Constant.postTriggerMs / frameMs,
+                    new File(getFilesDir(), "captures"), MAX_CAPTURE_FILES);
+            mCapture.start();
+        }
+        mJournal = new EventJournal(new File(getFilesDir(), "journal"), JOURNAL_RECORDS_PER_FILE, JOURNAL_MAX_FILES);
+        mJournal.start();
+        detectorThread.setJournal(mJournal);
+        if (Constant.offloadDetection) {
+            detectorThread.setOffload(() -> WearableChannelTransport.open(this, Constant.offloadConnectTimeoutMs));
+        }
 
-        // Initialize and start the DetectorThread for whistle detection
-        mDetectorThread = new DetectorThread(mRecorderThread, DetectorType.WHISTLE, this);
-        mDetectorThread.start();
+        mScheduler = new DutyCycleScheduler(new AudioScheduler(recorderThread, detectorThread),
+                Constant.dutyCycleListenMs, Constant.dutyCycleSleepMs, Constant.dutyCycleQuietMs);
+        mScheduler.start();
     }
 
     /**
-     * Triggers vibration when detection is activated.
+     * Triggers vibration when detection is activated; runs on the main thread.
      */
     private void triggerVibration() {
         if (vibrator != null && vibrator.hasVibrator()) {
-            long[] vibrationPattern = {0, 500, 250, 500}; // Vibrate, pause, vibrate
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-                VibrationEffect effect = VibrationEffect.createWaveform(vibrationPattern, -1); // No repeat
+                VibrationEffect effect = VibrationEffect.createWaveform(Constant.vibrationPattern, Constant.vibrationRepeat);
                 vibrator.vibrate(effect);
             } else {
-                vibrator.vibrate(vibrationPattern, -1); // Deprecated in API 26 but works for older devices
+                vibrator.vibrate(Constant.vibrationPattern, Constant.vibrationRepeat); // Deprecated in API 26 but works for older devices
             }
             Log.d(TAG, "Vibration triggered.");
-            Toast.makeText(_context, "Vibration triggered.", Toast.LENGTH_SHORT).show();
         } else {
             Log.w(TAG, "Device does not support vibration.");
-            Toast.makeText(_context, "Vibration not triggered.", Toast.LENGTH_SHORT).show();
         }
     }
 
+    /**
+     * Shows the latest detection as a heads-up notification; runs on the main thread.
+     */
+    private void postAlertNotification(String label, long timeMillis) {
+        NotificationManager manager = getSystemService(NotificationManager.class);
+        if (manager == null) {
+            return;
+        }
+        manager.notify(ALERT_NOTIFICATION_ID, new NotificationCompat.Builder(this, ALERT_CHANNEL_ID)
+                .setContentTitle("Heard " + label.toLowerCase(Locale.ROOT).replace('_', ' '))
+                .setSmallIcon(android.R.drawable.ic_btn_speak_now)
+                .setPriority(NotificationCompat.PRIORITY_HIGH)
+                .setCategory(NotificationCompat.CATEGORY_ALARM)
+                .setWhen(timeMillis)
+                .setAutoCancel(true)
+                .build());
+    }
+
+    /**
+     * Forwards the detection to the connected phone, if any; runs on the main thread and
+     * returns before the message is sent.
+     */
+    private void sendCompanionAlert(String label, long timeMillis) {
+        byte[] payload = label.getBytes(StandardCharsets.UTF_8);
+        Wearable.getNodeClient(this).getConnectedNodes().addOnSuccessListener(nodes -> {
+            for (Node node : nodes) {
+                Wearable.getMessageClient(this).sendMessage(node.getId(), COMPANION_ALERT_PATH, payload);
+            }
+        });
+    }
+
     /**
      * Stops the detection process.
      */
     private void stopDetectionTask() {
         Log.d(TAG, "Stopping detection task...");
-        if (mDetectorThread != null) {
-            mDetectorThread.stopDetection();
-            mDetectorThread = null;
+        if (mScheduler != null) {
+            RecorderThread recorderThread = mScheduler.getAudioScheduler().getRecorder();
+            Log.d(TAG, "Capture wakeups/min: " + recorderThread.getWakeupsPerMinute()
+                    + ", detector wakeups/min: " + recorderThread.getConsumerWakeupsPerMinute()
+                    + ", frames per batch: " + recorderThread.getBatchFrames()
+                    + ", dropped frames: " + recorderThread.getOverrunCount());
+            Log.d(TAG, "Duty cycle: " + mScheduler.getDutyCycle()
+                    + " (nominal " + mScheduler.getNominalDutyCycle()
+                    + "), expected extra latency ms: " + mScheduler.getExpectedLatencyMillis()
+                    + ", CPU ms/hour: " + mScheduler.getCpuMillisPerHour());
+            mScheduler.stop(THREAD_STOP_TIMEOUT_MS);
+            AudioScheduler audioScheduler = mScheduler.getAudioScheduler();
+            Log.d(TAG, "CPU ms, capture: " + audioScheduler.getCaptureCpuTimeNanos() / 1000000
+                    + ", analysis: " + audioScheduler.getAnalysisCpuTimeNanos() / 1000000);
+            mScheduler = null;
         }
-        if (mRecorderThread != null) {
-            mRecorderThread.stopRecording();
-            mRecorderThread = null;
+        if (mCapture != null) {
+            mCapture.stop();
+            Log.d(TAG, "Captures saved: " + mCapture.getSavedCount() + ", failed: " + mCapture.getFailedCount());
+            mCapture = null;
+        }
+        if (mJournal != null) {
+            mJournal.close();
+            Log.d(TAG, "Journal records written: " + mJournal.getWrittenCount()
+                    + ", dropped: " + mJournal.getDroppedCount());
+            if (mJournal.getLastError() != null) {
+                Log.w(TAG, "Journal stopped on error", mJournal.getLastError());
+            }
+            mJournal = null;
         }
     }
 
@@ -228,6 +369,7 @@ public class DetectionService extends Service implements DetectorCallback {
     @Override
     public void onDestroy() {
         stopDetectionTask();
+        mAlerts.cancel();
         // Release the wake lock if it is held.
         if (wakeLock != null && wakeLock.isHeld()) {
             wakeLock.release();
@@ -235,6 +377,37 @@ public class DetectionService extends Service implements DetectorCallback {
         super.onDestroy();
     }
 
+    /**
+     * Writes the detector metrics to logcat; sent as the "metrics" action.
+     */
+    private void logMetrics() {
+        StringWriter metrics = new StringWriter();
+        DetectorMetrics.dump(new PrintWriter(metrics));
+        Log.i(TAG, "Detector metrics:\n" + metrics);
+    }
+
+    /**
+     * {@code adb shell dumpsys activity service DetectionService [reset]} prints the
+     * detector metrics, the duty cycle and alert counts, optionally clearing them afterwards.
+     */
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        DetectorMetrics.dump(writer);
+        DutyCycleScheduler scheduler = mScheduler;
+        if (scheduler != null) {
+            writer.printf(Locale.ROOT, "duty cycle %.3f (nominal %.3f), expected extra latency %.0f ms,"
+                            + " worst %d ms, %.0f CPU ms/hour%n",
+                    scheduler.getDutyCycle(), scheduler.getNominalDutyCycle(), scheduler.getExpectedLatencyMillis(),
+                    scheduler.getWorstCaseLatencyMillis(), scheduler.getCpuMillisPerHour());
+        }
+        writer.printf(Locale.ROOT, "alerts delivered %d, coalesced %d, dropped %d%n",
+                mAlerts.getDeliveredCount(), mAlerts.getCoalescedCount(), mAlerts.getDroppedCount());
+        if (args != null && args.length > 0 && "reset".equals(args[0])) {
+            DetectorMetrics.reset();
+            writer.println("metrics reset");
+        }
+    }
+
     @Override
     public IBinder onBind(Intent intent) {
         // This service is not designed for binding.
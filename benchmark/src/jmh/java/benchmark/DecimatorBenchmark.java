@@ -0,0 +1,46 @@
+package benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import model.dsp.Decimator;
+
+/**
+ * The capture-side decimator {@code RecorderThread} runs when the detection rate is below
+ * the native one, per captured frame: 44.1 to 22.05 kHz and 48 to 16 kHz. The filter cost
+ * does not depend on the signal, so it runs on noise only.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DecimatorBenchmark {
+
+    @Param({"2", "3"})
+    public int factor;
+
+    private Frames frames;
+    private Decimator decimator;
+    private short[] output;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        frames = Frames.load("noise");
+        decimator = new Decimator(factor);
+        output = new short[frames.frameSize / factor + 1];
+    }
+
+    @Benchmark
+    public int decimate() {
+        return decimator.process(frames.samples, frames.next(), frames.frameSize, output, 0);
+    }
+}
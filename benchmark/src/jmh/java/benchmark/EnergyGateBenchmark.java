@@ -0,0 +1,50 @@
+package benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import model.detection.EnergyGate;
+
+/**
+ * The per-frame energy loop that used to live in {@code RecorderThread.hasSound()}, now the
+ * first cascade stage, with the fixed and the noise-tracking threshold.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EnergyGateBenchmark {
+
+    @Param({"silence", "noise", "whistle"})
+    public String input;
+
+    private Frames frames;
+    private EnergyGate fixedGate;
+    private EnergyGate adaptiveGate;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        frames = Frames.load(input);
+        fixedGate = new EnergyGate(frames.frameSize);
+        adaptiveGate = new EnergyGate(frames.frameSize).setMinMeanAbs(40).setAdaptiveFloor(2.0);
+    }
+
+    @Benchmark
+    public boolean fixedThreshold() {
+        return fixedGate.analyze(frames.samples, frames.next());
+    }
+
+    @Benchmark
+    public boolean adaptiveFloor() {
+        return adaptiveGate.analyze(frames.samples, frames.next());
+    }
+}
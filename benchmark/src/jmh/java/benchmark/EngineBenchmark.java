@@ -0,0 +1,56 @@
+package benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import model.detection.DetectionPipeline;
+import model.detection.ToneScreen;
+import model.helper.DetectorType;
+
+/**
+ * Whole detection path per captured frame, as {@code DetectorThread} runs it: overlapping
+ * windows, the cascade for the detector type and the vote window.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EngineBenchmark {
+
+    @Param({"silence", "noise", "whistle"})
+    public String input;
+
+    @Param({"WHISTLE", "WHISTLE_LOW_POWER", "WHISTLE_CLASSIFIER", "CLAP"})
+    public String type;
+
+    private Frames frames;
+    private DetectionPipeline pipeline;
+    private ToneScreen toneScreen;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        frames = Frames.load(input);
+        pipeline = DetectionPipeline.create(DetectorType.valueOf(type),
+                frames.sampleRate, frames.frameSize, frames.frameSize / 2);
+        toneScreen = new ToneScreen(frames.sampleRate, frames.frameSize);
+    }
+
+    @Benchmark
+    public int pipeline() {
+        return pipeline.process(frames.samples, frames.next());
+    }
+
+    @Benchmark
+    public boolean toneScreen() {
+        return toneScreen.analyze(frames.samples, frames.next());
+    }
+}
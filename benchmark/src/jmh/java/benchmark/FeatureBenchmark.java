@@ -0,0 +1,76 @@
+package benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import model.detection.DetectionPipeline;
+import model.detection.FeatureBuffer;
+import model.detection.FeatureExtractor;
+import model.detection.SharedSpectrum;
+import model.helper.DetectorType;
+
+/**
+ * Cost of the feature vector: extraction including the FFT, extraction from a spectrum the
+ * detectors already computed, and the whole pipeline with features on, to compare with
+ * {@link EngineBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FeatureBenchmark {
+
+    @Param({"noise", "whistle"})
+    public String input;
+
+    private Frames frames;
+    private SharedSpectrum spectrum;
+    private FeatureExtractor extractor;
+    // computed once and never invalidated
+    private FeatureExtractor cachedExtractor;
+    private FeatureBuffer features;
+    private DetectionPipeline pipeline;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        frames = Frames.load(input);
+        spectrum = new SharedSpectrum(frames.sampleRate, frames.frameSize);
+        extractor = new FeatureExtractor(spectrum);
+        SharedSpectrum cached = new SharedSpectrum(frames.sampleRate, frames.frameSize);
+        cached.getMagnitudes(frames.samples, frames.next());
+        cachedExtractor = new FeatureExtractor(cached);
+        features = new FeatureBuffer(64);
+        pipeline = DetectionPipeline.create(frames.sampleRate, frames.frameSize, frames.frameSize / 2,
+                DetectorType.WHISTLE, DetectorType.CLAP).enableFeatures(64);
+    }
+
+    @Benchmark
+    public float extract() {
+        int offset = frames.next();
+        spectrum.invalidate();
+        int slot = features.add(0);
+        extractor.extract(frames.samples, offset, features.getData(), slot);
+        return features.getData()[slot];
+    }
+
+    @Benchmark
+    public float extractFromSharedSpectrum() {
+        int slot = features.add(0);
+        cachedExtractor.extract(frames.samples, frames.next(), features.getData(), slot);
+        return features.getData()[slot];
+    }
+
+    @Benchmark
+    public int pipeline() {
+        return pipeline.process(frames.samples, frames.next());
+    }
+}
@@ -0,0 +1,79 @@
+package benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import model.dsp.Fft;
+import model.dsp.RealFft;
+
+/**
+ * The float real-input FFT against the double complex FFT, both on the musicg layout used
+ * by the detectors (half-size transform of the interleaved frame) and on the full frame
+ * with zero imaginary parts.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FftBenchmark {
+
+    @Param({"1024", "2048"})
+    public int size;
+
+    private float[] frame;
+    private float[] power;
+    private double[] halfData;
+    private double[] fullData;
+    private RealFft realFft;
+    private Fft halfFft;
+    private Fft fullFft;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(1);
+        frame = new float[size];
+        for (int i = 0; i < size; i++) {
+            frame[i] = (float) (random.nextGaussian() * 1000);
+        }
+        power = new float[size / 2 + 1];
+        halfData = new double[size];
+        fullData = new double[2 * size];
+        realFft = new RealFft(size);
+        halfFft = new Fft(size / 2);
+        fullFft = new Fft(size);
+    }
+
+    @Benchmark
+    public float[] realFft() {
+        realFft.powerSpectrum(frame, 0, power);
+        return power;
+    }
+
+    @Benchmark
+    public double[] musicgLayout() {
+        for (int i = 0; i < size; i++) {
+            halfData[i] = frame[i];
+        }
+        halfFft.transform(halfData);
+        return halfData;
+    }
+
+    @Benchmark
+    public double[] complexFullFrame() {
+        for (int i = 0; i < size; i++) {
+            fullData[2 * i] = frame[i];
+            fullData[2 * i + 1] = 0;
+        }
+        fullFft.transform(fullData);
+        return fullData;
+    }
+}
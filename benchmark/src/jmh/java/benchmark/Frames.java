@@ -0,0 +1,131 @@
+package benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import model.audio.CaptureRates;
+import model.audio.WavFileSource;
+import model.constant.Constant;
+
+/**
+ * Benchmark input: a fixed pool of PCM frames stored back to back in one array, cycled
+ * through so every invocation sees a different frame but nothing is allocated.
+ * <p>
+ * Synthetic frames are generated at {@link Constant#captureSampleRate} unless the
+ * {@code benchmark.sampleRate} property says otherwise; recordings keep their own rate. The
+ * frame size is {@link CaptureRates#frameSizeFor} of that rate unless
+ * {@code benchmark.frameSize} is set.
+ */
+final class Frames {
+
+    static final int FRAME_COUNT = 64;
+    // first frame of the tone in the whistle input
+    static final int WHISTLE_ONSET = 16;
+
+    final short[] samples;
+    final int frameSize;
+    final int frameCount;
+    final int sampleRate;
+    private int next;
+
+    private Frames(short[] samples, int frameSize, int sampleRate) {
+        this.samples = samples;
+        this.frameSize = frameSize;
+        this.frameCount = samples.length / frameSize;
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Offset of the next frame in {@link #samples}.
+     */
+    int next() {
+        int offset = next * frameSize;
+        next = next + 1 == frameCount ? 0 : next + 1;
+        return offset;
+    }
+
+    /**
+     * Nanoseconds of audio in one frame, for the real-time factor.
+     */
+    double frameNanos() {
+        return frameSize * 1e9 / sampleRate;
+    }
+
+    /**
+     * @param input {@code silence}, {@code noise}, {@code whistle} or {@code recording}; the
+     *              latter reads the WAV file named by the {@code benchmark.recording} property
+     */
+    static Frames load(String input) throws IOException {
+        if (input.equals("recording")) {
+            return record(System.getProperty("benchmark.recording"));
+        }
+        int sampleRate = Integer.getInteger("benchmark.sampleRate", Constant.captureSampleRate);
+        int frameSize = frameSizeFor(sampleRate);
+        Random random = new Random(42);
+        short[] samples = new short[FRAME_COUNT * frameSize];
+        for (int i = 0; i < samples.length; i++) {
+            double value;
+            switch (input) {
+                case "silence":
+                    value = random.nextGaussian() * 5;
+                    break;
+                case "noise":
+                    value = random.nextGaussian() * 600;
+                    break;
+                case "whistle":
+                    // a quiet lead-in keeps the adaptive gate's floor at the background level
+                    value = random.nextGaussian() * 60;
+                    if (i >= WHISTLE_ONSET * frameSize) {
+                        value += 3000 * Math.sin(2 * Math.PI * 1500 * i / sampleRate);
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown input: " + input);
+            }
+            samples[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(value)));
+        }
+        return new Frames(samples, frameSize, sampleRate);
+    }
+
+    private static int frameSizeFor(int sampleRate) {
+        return Integer.getInteger("benchmark.frameSize", CaptureRates.frameSizeFor(sampleRate));
+    }
+
+    private static Frames record(String path) throws IOException {
+        if (path == null) {
+            throw new IllegalStateException("set -Pbenchmark.recording=file.wav to benchmark recorded frames");
+        }
+        File file = new File(path);
+        int frameSize;
+        try (WavFileSource probe = new WavFileSource(file, 1)) {
+            frameSize = frameSizeFor(probe.getSampleRate());
+        }
+        try (WavFileSource source = new WavFileSource(file, frameSize)) {
+            int count = (int) Math.min(source.getTotalFrames(), 4096);
+            if (count == 0) {
+                throw new IOException("recording is shorter than one frame: " + path);
+            }
+            short[] samples = new short[count * frameSize];
+            for (int i = 0; i < count; i++) {
+                int offset = source.takeFrame(0);
+                System.arraycopy(source.getSamples(), offset, samples, i * frameSize, frameSize);
+            }
+            return new Frames(samples, frameSize, source.getSampleRate());
+        }
+    }
+
+    /**
+     * Frames packed as little-endian bytes, the layout musicg expects.
+     */
+    byte[][] toBytes() {
+        byte[][] bytes = new byte[frameCount][frameSize * 2];
+        for (int f = 0; f < frameCount; f++) {
+            for (int i = 0, j = f * frameSize; i < bytes[f].length; i += 2, j++) {
+                bytes[f][i] = (byte) samples[j];
+                bytes[f][i + 1] = (byte) (samples[j] >> 8);
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,89 @@
+package benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import model.detection.DetectionPipeline;
+import model.detection.WhistlePattern;
+import model.dsp.MuLaw;
+import model.helper.DetectorCallback;
+import model.helper.DetectorType;
+import model.offload.LoopbackTransport;
+import model.offload.OffloadClient;
+import model.offload.OffloadEngine;
+
+/**
+ * Watch-side cost per frame of offloaded detection, the gate plus mu-law coding of the frames
+ * that pass, against detecting on the watch; and the whole offload round trip over the
+ * in-process loopback, with the phone engine running inside the send.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class OffloadBenchmark {
+
+    private static final DetectorCallback IGNORE = new DetectorCallback() {
+        @Override
+        public void onSoundDetected(DetectorType type) {
+        }
+
+        @Override
+        public void onPatternDetected(WhistlePattern pattern) {
+        }
+    };
+
+    @Param({"silence", "noise", "whistle"})
+    public String input;
+
+    private Frames frames;
+    private DetectionPipeline local;
+    private OffloadClient watchOnly;
+    private OffloadClient roundTrip;
+    private byte[] codes;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        frames = Frames.load(input);
+        int hopSize = frames.frameSize / 2;
+        DetectorType[] types = {DetectorType.WHISTLE, DetectorType.CLAP};
+        local = DetectionPipeline.create(frames.sampleRate, frames.frameSize, hopSize, types);
+        // a peer without receiver: what the watch spends before the radio
+        watchOnly = new OffloadClient(LoopbackTransport.createPair()[0], frames.sampleRate, frames.frameSize,
+                hopSize, IGNORE, types);
+        LoopbackTransport[] link = LoopbackTransport.createPair();
+        new OffloadEngine(link[1]);
+        roundTrip = new OffloadClient(link[0], frames.sampleRate, frames.frameSize, hopSize, IGNORE, types);
+        codes = new byte[frames.frameSize];
+    }
+
+    @Benchmark
+    public int localDetection() {
+        return local.process(frames.samples, frames.next());
+    }
+
+    @Benchmark
+    public boolean watchSide() {
+        return watchOnly.process(frames.samples, frames.next());
+    }
+
+    @Benchmark
+    public boolean loopbackRoundTrip() {
+        return roundTrip.process(frames.samples, frames.next());
+    }
+
+    @Benchmark
+    public byte[] muLawEncode() {
+        MuLaw.encode(frames.samples, frames.next(), codes, 0, frames.frameSize);
+        return codes;
+    }
+}
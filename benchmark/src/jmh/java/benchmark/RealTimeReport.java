@@ -0,0 +1,75 @@
+package benchmark;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Runs the frame benchmarks and prints, for each, the time per frame, the bytes allocated
+ * per frame and the real-time factor: how many times faster than the audio arrives one
+ * core gets through it. Anything per-frame must stay far above 1 to leave the watch idle.
+ * The frame duration is that of the benchmark's input, see {@link Frames}.
+ * <pre>
+ * RealTimeReport [benchmark-regex]
+ * </pre>
+ */
+public final class RealTimeReport {
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : "benchmark\\.(EnergyGate|WhistleApi|Engine|Offload|Decimator)Benchmark")
+                .addProfiler(GCProfiler.class)
+                .forks(1)
+                .warmupIterations(3)
+                .warmupTime(TimeValue.seconds(1))
+                .measurementIterations(5)
+                .measurementTime(TimeValue.seconds(1))
+                .jvmArgsAppend("--add-exports", "java.desktop/com.sun.media.sound=ALL-UNNAMED");
+        for (String property : new String[]{"benchmark.sampleRate", "benchmark.frameSize"}) {
+            if (System.getProperty(property) != null) {
+                options.jvmArgsAppend("-D" + property + "=" + System.getProperty(property));
+            }
+        }
+        String recording = System.getProperty("benchmark.recording");
+        if (recording != null) {
+            options.jvmArgsAppend("-Dbenchmark.recording=" + recording)
+                    .param("input", "silence", "noise", "whistle", "recording");
+        }
+        Collection<RunResult> results = new Runner(options.build()).run();
+
+        // benchmarks without an input run on synthetic frames
+        Map<String, Double> frameNanos = new HashMap<>();
+        System.out.println();
+        System.out.printf(Locale.ROOT, "%-60s %12s %12s %12s%n", "benchmark", "ns/frame", "B/frame", "x realtime");
+        for (RunResult run : results) {
+            String input = run.getParams().getParam("input");
+            if (input == null) {
+                input = "noise";
+            }
+            if (!frameNanos.containsKey(input)) {
+                frameNanos.put(input, Frames.load(input).frameNanos());
+            }
+            Result primary = run.getPrimaryResult();
+            double nanos = primary.getScore();
+            Result alloc = run.getSecondaryResults().get("gc.alloc.rate.norm");
+            String name = run.getParams().getBenchmark().replace("benchmark.", "")
+                    + run.getParams().getParamsKeys().stream()
+                    .map(key -> " " + run.getParams().getParam(key))
+                    .reduce("", String::concat);
+            System.out.printf(Locale.ROOT, "%-60s %12.1f %12.1f %12.0f%n", name, nanos,
+                    alloc != null ? alloc.getScore() : Double.NaN,
+                    nanos > 0 ? frameNanos.get(input) / nanos : 0);
+        }
+    }
+}
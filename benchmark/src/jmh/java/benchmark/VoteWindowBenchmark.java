@@ -0,0 +1,79 @@
+package benchmark;
+
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import model.detection.VoteWindow;
+
+/**
+ * Per-window voting: the bitmask {@link VoteWindow} against the boxed
+ * {@code LinkedList<Boolean>} window {@code DetectorThread} used before.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class VoteWindowBenchmark {
+
+    private static final int CHECK_LENGTH = 5;
+
+    // bursty decisions: runs of positives between quiet stretches
+    private final boolean[] decisions = new boolean[256];
+    private int next;
+
+    private VoteWindow voteWindow;
+    private final LinkedList<Boolean> resultList = new LinkedList<Boolean>();
+    private int numWhistles;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        for (int i = 0; i < decisions.length; i++) {
+            decisions[i] = (i % 40) < 12 && i % 7 != 3;
+        }
+        voteWindow = new VoteWindow(CHECK_LENGTH, CHECK_LENGTH, 0, 8);
+        for (int i = 0; i < CHECK_LENGTH; i++) {
+            resultList.add(false);
+        }
+    }
+
+    private boolean nextDecision() {
+        boolean decision = decisions[next];
+        next = (next + 1) & (decisions.length - 1);
+        return decision;
+    }
+
+    @Benchmark
+    public boolean bitmaskVote() {
+        return voteWindow.vote(nextDecision());
+    }
+
+    @Benchmark
+    public boolean linkedListVote() {
+        boolean isSound = nextDecision();
+        if (resultList.getFirst()) {
+            numWhistles--;
+        }
+        resultList.removeFirst();
+        resultList.add(isSound);
+        if (isSound) {
+            numWhistles++;
+        }
+        if (numWhistles >= CHECK_LENGTH) {
+            numWhistles = 0;
+            resultList.clear();
+            for (int i = 0; i < CHECK_LENGTH; i++) {
+                resultList.add(false);
+            }
+            return true;
+        }
+        return false;
+    }
+}
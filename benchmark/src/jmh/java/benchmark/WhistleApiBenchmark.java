@@ -0,0 +1,99 @@
+package benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.musicg.api.WhistleApi;
+import com.musicg.wave.WaveHeader;
+
+import model.detection.ClassifierEngine;
+import model.detection.FeatureBuffer;
+import model.detection.FeatureExtractor;
+import model.detection.FixedPointEngine;
+import model.detection.SharedSpectrum;
+import model.detection.WhistleClassifierModel;
+import model.detection.WhistleEngine;
+
+/**
+ * musicg's {@code WhistleApi.isWhistle} against its allocation-free in-tree port, the
+ * fixed-point port of that and the int8 classifier with its feature extraction, on the same
+ * frames.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WhistleApiBenchmark {
+
+    @Param({"silence", "noise", "whistle"})
+    public String input;
+
+    private Frames frames;
+    private byte[][] frameBytes;
+    private int nextBytes;
+    private WhistleApi whistleApi;
+    private WhistleEngine whistleEngine;
+    private FixedPointEngine fixedPointEngine;
+    private SharedSpectrum spectrum;
+    private FeatureExtractor extractor;
+    private FeatureBuffer features;
+    private ClassifierEngine classifierEngine;
+    private long endSample;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        frames = Frames.load(input);
+        frameBytes = frames.toBytes();
+        WaveHeader header = new WaveHeader();
+        header.setChannels(1);
+        header.setBitsPerSample(16);
+        header.setSampleRate(frames.sampleRate);
+        whistleApi = new WhistleApi(header);
+        whistleEngine = new WhistleEngine(frames.sampleRate, frames.frameSize);
+        fixedPointEngine = new FixedPointEngine(new WhistleEngine(frames.sampleRate, frames.frameSize));
+        spectrum = new SharedSpectrum(frames.sampleRate, frames.frameSize);
+        extractor = new FeatureExtractor(spectrum);
+        features = new FeatureBuffer(ClassifierEngine.HISTORY);
+        WhistleEngine band = new WhistleEngine(spectrum);
+        band.rescaleThresholds();
+        classifierEngine = new ClassifierEngine(features, WhistleClassifierModel.create(), frames.frameSize, band);
+    }
+
+    @Benchmark
+    public boolean musicgIsWhistle() {
+        byte[] frame = frameBytes[nextBytes];
+        nextBytes = nextBytes + 1 == frameBytes.length ? 0 : nextBytes + 1;
+        return whistleApi.isWhistle(frame);
+    }
+
+    @Benchmark
+    public boolean whistleEngine() {
+        return whistleEngine.analyze(frames.samples, frames.next());
+    }
+
+    @Benchmark
+    public boolean fixedPointEngine() {
+        return fixedPointEngine.analyze(frames.samples, frames.next());
+    }
+
+    /**
+     * Spectrum, feature vector and classifier, as the pipeline runs them for a window.
+     */
+    @Benchmark
+    public boolean classifierEngine() {
+        int offset = frames.next();
+        spectrum.invalidate();
+        endSample += frames.frameSize;
+        extractor.extract(frames.samples, offset, features.getData(), features.add(endSample));
+        return classifierEngine.analyze(frames.samples, offset);
+    }
+}
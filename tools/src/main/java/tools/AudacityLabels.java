@@ -0,0 +1,71 @@
+package tools;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ground-truth intervals read from an Audacity label track export: one
+ * {@code start<TAB>end<TAB>text} line per label, times in seconds. Lines starting with a
+ * backslash hold spectral selection data and are skipped.
+ */
+final class AudacityLabels {
+
+    final double[] onsets;
+    final double[] offsets;
+
+    private AudacityLabels(double[] onsets, double[] offsets) {
+        this.onsets = onsets;
+        this.offsets = offsets;
+    }
+
+    int size() {
+        return onsets.length;
+    }
+
+    /**
+     * Label file next to {@code audio}: same name with a {@code .txt} extension.
+     */
+    static File labelFileFor(File audio) {
+        String name = audio.getName();
+        int dot = name.lastIndexOf('.');
+        return new File(audio.getParentFile(), (dot > 0 ? name.substring(0, dot) : name) + ".txt");
+    }
+
+    /**
+     * @param text only labels whose text contains this are kept; null or empty keeps all
+     */
+    static AudacityLabels read(File file, String text) throws IOException {
+        List<double[]> labels = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty() || line.startsWith("\\")) {
+                    continue;
+                }
+                String[] fields = line.split("\t", 3);
+                if (fields.length < 2) {
+                    throw new IOException(file + ": not an Audacity label line: " + line);
+                }
+                if (text != null && !text.isEmpty() && (fields.length < 3 || !fields[2].contains(text))) {
+                    continue;
+                }
+                double onset = Double.parseDouble(fields[0].trim().replace(',', '.'));
+                double offset = Double.parseDouble(fields[1].trim().replace(',', '.'));
+                labels.add(new double[]{onset, Math.max(onset, offset)});
+            }
+        }
+        labels.sort((a, b) -> Double.compare(a[0], b[0]));
+        double[] onsets = new double[labels.size()];
+        double[] offsets = new double[labels.size()];
+        for (int i = 0; i < onsets.length; i++) {
+            onsets[i] = labels.get(i)[0];
+            offsets[i] = labels.get(i)[1];
+        }
+        return new AudacityLabels(onsets, offsets);
+    }
+}
@@ -0,0 +1,273 @@
+package tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import model.audio.AudioSource;
+import model.audio.CaptureRates;
+import model.audio.DecimatingSource;
+import model.audio.WavFileSource;
+import model.detection.DetectionPipeline;
+import model.helper.DetectorType;
+
+/**
+ * Scores the detector against a labelled corpus: every recording next to an Audacity label
+ * file ({@code match.wav} + {@code match.txt}) is replayed in parallel on all cores and the
+ * confirmed events are matched to the labels.
+ * <pre>
+ * EvaluateMain [--type WHISTLE|CLAP|WHISTLE_LOW_POWER|WHISTLE_CLASSIFIER] [--frame 1024] [--hop 512]
+ *              [--raw-rate 44100] [--decimate 2] [--label text] [--tolerance-ms 250] [--threads N]
+ *              dir-or-file...
+ * </pre>
+ * As in {@link ReplayMain}, {@code --decimate} filters and decimates the recordings first, and
+ * frames default to {@link CaptureRates#frameSizeFor(int)} of each file's detection rate.
+ * An event inside a label, or up to the tolerance after its end, detects that label; the
+ * first one sets the latency from the labelled onset and later ones are duplicates. Any
+ * other event is a false alarm. The report gives precision, recall, false alarms per hour,
+ * latency percentiles and detector CPU time per hour of audio.
+ */
+public final class EvaluateMain {
+
+    private DetectorType type = DetectorType.WHISTLE;
+    private int frameSize = -1;
+    private int hopSize = -1;
+    private int decimation = 1;
+    private int rawSampleRate = 44100;
+    private String labelText;
+    private double tolerance = 0.25;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private final List<File> inputs = new ArrayList<>();
+
+    /**
+     * Outcome of one recording; merged pairwise up the fork-join tree.
+     */
+    static final class Result {
+        int files;
+        double audioSeconds;
+        long cpuNanos;
+        int labels;
+        int detected;
+        int duplicates;
+        int falseAlarms;
+        double[] latencies = new double[0];
+
+        Result merge(Result other) {
+            Result merged = new Result();
+            merged.files = files + other.files;
+            merged.audioSeconds = audioSeconds + other.audioSeconds;
+            merged.cpuNanos = cpuNanos + other.cpuNanos;
+            merged.labels = labels + other.labels;
+            merged.detected = detected + other.detected;
+            merged.duplicates = duplicates + other.duplicates;
+            merged.falseAlarms = falseAlarms + other.falseAlarms;
+            merged.latencies = Arrays.copyOf(latencies, latencies.length + other.latencies.length);
+            System.arraycopy(other.latencies, 0, merged.latencies, latencies.length, other.latencies.length);
+            return merged;
+        }
+    }
+
+    /**
+     * Splits the file list in halves until a single recording is left.
+     */
+    private final class EvaluateTask extends RecursiveTask<Result> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<File> files;
+
+        EvaluateTask(List<File> files) {
+            this.files = files;
+        }
+
+        @Override
+        protected Result compute() {
+            if (files.size() == 1) {
+                try {
+                    return evaluate(files.get(0));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(files.get(0).toString(), e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("interrupted evaluating " + files.get(0), e);
+                }
+            }
+            int middle = files.size() / 2;
+            EvaluateTask left = new EvaluateTask(files.subList(0, middle));
+            left.fork();
+            Result right = new EvaluateTask(files.subList(middle, files.size())).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        EvaluateMain evaluation = new EvaluateMain();
+        if (!evaluation.parseArgs(args)) {
+            System.err.println("usage: EvaluateMain [--type WHISTLE|CLAP|WHISTLE_LOW_POWER|WHISTLE_CLASSIFIER]"
+                    + " [--frame N] [--hop N]"
+                    + " [--raw-rate HZ] [--decimate N] [--label text] [--tolerance-ms MS] [--threads N] dir-or-file...");
+            System.exit(2);
+        }
+        evaluation.run();
+    }
+
+    private boolean parseArgs(String[] args) {
+        List<File> audio = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            boolean hasValue = i + 1 < args.length;
+            if (arg.equals("--type") && hasValue) {
+                type = DetectorType.valueOf(args[++i].toUpperCase(Locale.ROOT));
+            } else if (arg.equals("--frame") && hasValue) {
+                frameSize = Integer.parseInt(args[++i]);
+            } else if (arg.equals("--hop") && hasValue) {
+                hopSize = Integer.parseInt(args[++i]);
+            } else if (arg.equals("--raw-rate") && hasValue) {
+                rawSampleRate = Integer.parseInt(args[++i]);
+            } else if (arg.equals("--decimate") && hasValue) {
+                decimation = Integer.parseInt(args[++i]);
+            } else if (arg.equals("--label") && hasValue) {
+                labelText = args[++i];
+            } else if (arg.equals("--tolerance-ms") && hasValue) {
+                tolerance = Integer.parseInt(args[++i]) / 1000.0;
+            } else if (arg.equals("--threads") && hasValue) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (arg.startsWith("--")) {
+                return false;
+            } else {
+                ReplayMain.collect(new File(arg), audio);
+            }
+        }
+        for (File file : audio) {
+            if (AudacityLabels.labelFileFor(file).isFile()) {
+                inputs.add(file);
+            } else {
+                System.err.println("skipping " + file + ": no label file");
+            }
+        }
+        return !inputs.isEmpty() && decimation >= 1;
+    }
+
+    private void run() {
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        Result result;
+        try {
+            result = pool.invoke(new EvaluateTask(inputs));
+        } finally {
+            pool.shutdown();
+        }
+        double wallSeconds = (System.nanoTime() - start) / 1e9;
+        report(result, wallSeconds);
+    }
+
+    private Result evaluate(File file) throws IOException, InterruptedException {
+        AudacityLabels labels = AudacityLabels.read(AudacityLabels.labelFileFor(file), labelText);
+        Result result = new Result();
+        result.files = 1;
+        result.labels = labels.size();
+        double[] latencies = new double[labels.size()];
+        boolean[] matched = new boolean[labels.size()];
+
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        int frameSize = this.frameSize > 0 ? this.frameSize
+                : CaptureRates.frameSizeFor(ReplayMain.sampleRateOf(file, rawSampleRate) / decimation);
+        int hopSize = this.hopSize > 0 ? this.hopSize : frameSize / 2;
+        try (WavFileSource wav = ReplayMain.open(file, frameSize * decimation, rawSampleRate)) {
+            AudioSource source = decimation > 1 ? new DecimatingSource(wav, decimation) : wav;
+            int sampleRate = source.getSampleRate();
+            DetectionPipeline pipeline = DetectionPipeline.create(type, sampleRate, frameSize, hopSize);
+            pipeline.setWindowListener((samples, offset, endSample, detected, event) -> {
+                if (!event) {
+                    return;
+                }
+                double time = (double) endSample / sampleRate;
+                int label = findLabel(labels, time);
+                if (label < 0) {
+                    result.falseAlarms++;
+                } else if (matched[label]) {
+                    result.duplicates++;
+                } else {
+                    matched[label] = true;
+                    latencies[result.detected++] = time - labels.onsets[label];
+                }
+            });
+
+            short[] samples = source.getSamples();
+            long cpuStart = threadBean.getCurrentThreadCpuTime();
+            int offset;
+            while ((offset = source.takeFrame(0)) >= 0) {
+                pipeline.process(samples, offset);
+                source.releaseFrame();
+            }
+            result.cpuNanos = threadBean.getCurrentThreadCpuTime() - cpuStart;
+            result.audioSeconds = (double) wav.getFramesRead() * frameSize / sampleRate;
+        }
+        result.latencies = Arrays.copyOf(latencies, result.detected);
+        System.out.printf(Locale.ROOT, "%s  %.1f s, %d/%d labels detected, %d false alarms%n",
+                file.getName(), result.audioSeconds, result.detected, result.labels, result.falseAlarms);
+        return result;
+    }
+
+    /**
+     * Label whose interval, extended by the tolerance, contains {@code time}, preferring an
+     * unfinished earlier label; -1 if none.
+     */
+    private int findLabel(AudacityLabels labels, double time) {
+        for (int i = 0; i < labels.size(); i++) {
+            if (labels.onsets[i] > time) {
+                break;
+            }
+            if (time <= labels.offsets[i] + tolerance) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void report(Result result, double wallSeconds) {
+        double hours = result.audioSeconds / 3600;
+        int events = result.detected + result.falseAlarms;
+        double[] latencies = result.latencies.clone();
+        Arrays.sort(latencies);
+
+        System.out.println();
+        System.out.printf(Locale.ROOT, "detector          %s, frame %s, hop %s, decimation %d%n", type,
+                frameSize > 0 ? Integer.toString(frameSize) : "per rate",
+                hopSize > 0 ? Integer.toString(hopSize) : "half a frame", decimation);
+        System.out.printf(Locale.ROOT, "corpus            %d files, %.2f h audio, %d labels%n",
+                result.files, hours, result.labels);
+        System.out.printf(Locale.ROOT, "precision         %.3f (%d true, %d false, %d duplicate events)%n",
+                events == 0 ? 0 : (double) result.detected / events,
+                result.detected, result.falseAlarms, result.duplicates);
+        System.out.printf(Locale.ROOT, "recall            %.3f%n",
+                result.labels == 0 ? 0 : (double) result.detected / result.labels);
+        System.out.printf(Locale.ROOT, "false alarms/h    %.2f%n", hours == 0 ? 0 : result.falseAlarms / hours);
+        System.out.printf(Locale.ROOT, "latency ms        p50 %.0f  p90 %.0f  p99 %.0f  max %.0f%n",
+                percentile(latencies, 0.5) * 1000, percentile(latencies, 0.9) * 1000,
+                percentile(latencies, 0.99) * 1000, percentile(latencies, 1) * 1000);
+        System.out.printf(Locale.ROOT, "CPU s per audio h %.2f (%.0fx real time per core)%n",
+                hours == 0 ? 0 : result.cpuNanos / 1e9 / hours,
+                result.cpuNanos == 0 ? 0 : result.audioSeconds / (result.cpuNanos / 1e9));
+        System.out.printf(Locale.ROOT, "wall time         %.2f s on %d threads%n", wallSeconds, threads);
+    }
+
+    /**
+     * Nearest-rank percentile of sorted {@code values}; NaN when empty.
+     */
+    static double percentile(double[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int rank = (int) Math.ceil(fraction * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+    }
+}
@@ -0,0 +1,94 @@
+package tools;
+
+import java.util.Locale;
+import java.util.Random;
+
+import model.dsp.RealFft;
+
+/**
+ * Checks {@link RealFft} against a direct DFT in double precision on random frames of every
+ * power-of-2 size from 8 to 4096, and reports the largest error relative to the largest bin.
+ * <pre>
+ * FftAccuracyMain [--frames 8] [--max-error 1e-5]
+ * </pre>
+ * Exits with status 1 when a size exceeds {@code --max-error}, so a build can check it.
+ */
+public final class FftAccuracyMain {
+
+    private static final int MIN_SIZE = 8;
+    private static final int MAX_SIZE = 4096;
+
+    public static void main(String[] args) {
+        int frames = 8;
+        double maxError = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            boolean hasValue = i + 1 < args.length;
+            if (arg.equals("--frames") && hasValue) {
+                frames = Integer.parseInt(args[++i]);
+            } else if (arg.equals("--max-error") && hasValue) {
+                maxError = Double.parseDouble(args[++i]);
+            } else {
+                System.err.println("usage: FftAccuracyMain [--frames N] [--max-error E]");
+                System.exit(2);
+            }
+        }
+        Random random = new Random(3);
+        boolean within = true;
+        for (int size = MIN_SIZE; size <= MAX_SIZE; size <<= 1) {
+            RealFft fft = new RealFft(size);
+            float[] input = new float[size];
+            float[] outRe = new float[fft.getNumBins()];
+            float[] outIm = new float[fft.getNumBins()];
+            float[] power = new float[fft.getNumBins()];
+            double error = 0;
+            double powerError = 0;
+            for (int f = 0; f < frames; f++) {
+                for (int i = 0; i < size; i++) {
+                    // full 16 bit range
+                    input[i] = random.nextInt(65536) - 32768;
+                }
+                fft.transform(input, 0, outRe, outIm);
+                fft.powerSpectrum(input, 0, power);
+                double[][] reference = dft(input);
+                double peak = 0;
+                for (int k = 0; k < outRe.length; k++) {
+                    peak = Math.max(peak, Math.hypot(reference[0][k], reference[1][k]));
+                }
+                for (int k = 0; k < outRe.length; k++) {
+                    double re = reference[0][k];
+                    double im = reference[1][k];
+                    error = Math.max(error, Math.hypot(outRe[k] - re, outIm[k] - im) / peak);
+                    powerError = Math.max(powerError, Math.abs(power[k] - (re * re + im * im)) / (peak * peak));
+                }
+            }
+            System.out.printf(Locale.ROOT, "%5d  max error %.2e of the largest bin, power %.2e%n", size, error, powerError);
+            within &= error <= maxError && powerError <= maxError;
+        }
+        if (!within) {
+            System.err.printf(Locale.ROOT, "RealFft error over the limit of %.2e%n", maxError);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Bins 0 to {@code size / 2} of the direct DFT, real parts then imaginary parts.
+     */
+    private static double[][] dft(float[] input) {
+        int size = input.length;
+        double[][] out = new double[2][size / 2 + 1];
+        for (int k = 0; k <= size / 2; k++) {
+            double re = 0;
+            double im = 0;
+            for (int n = 0; n < size; n++) {
+                // reduce k * n first so the angle stays exact for large sizes
+                double angle = -2 * Math.PI * ((long) k * n % size) / size;
+                re += input[n] * Math.cos(angle);
+                im += input[n] * Math.sin(angle);
+            }
+            out[0][k] = re;
+            out[1][k] = im;
+        }
+        return out;
+    }
+}
@@ -0,0 +1,167 @@
+package tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import model.audio.WavFileSource;
+import model.detection.ClapEngine;
+import model.detection.FixedPointEngine;
+import model.detection.SpectralDetectionEngine;
+import model.detection.WhistleEngine;
+import model.dsp.StftStream;
+
+/**
+ * Runs the floating-point whistle and clap engines and their fixed-point ports side by side
+ * on every analysis window of recorded files, and reports decision mismatches and the
+ * largest observed errors of the intermediate values.
+ * <pre>
+ * FixedPointParityMain [--frame 1024] [--hop 512] [--raw-rate 44100] [--max-mismatches N]
+ *                      [--max-deviation-error E] file-or-dir...
+ * </pre>
+ * With {@code --max-mismatches} or {@code --max-deviation-error} it exits with status 1 when
+ * either engine exceeds the limit, so a build can check the fixtures.
+ */
+public final class FixedPointParityMain {
+
+    /**
+     * Disagreements between one floating-point engine and its fixed-point port.
+     */
+    private static final class Stats {
+        final String name;
+        long windows;
+        long mismatches;
+        long floatPositives;
+        long fixedPositives;
+        long peakMismatches;
+        double maxIntensityError;
+        double maxIntensityRelativeError;
+        double maxDeviationError;
+
+        Stats(String name) {
+            this.name = name;
+        }
+
+        void compare(SpectralDetectionEngine reference, FixedPointEngine fixed, boolean expected, boolean actual) {
+            windows++;
+            if (expected != actual) {
+                mismatches++;
+            }
+            floatPositives += expected ? 1 : 0;
+            fixedPositives += actual ? 1 : 0;
+            if (reference.getPeakFrequency() != fixed.getPeakFrequency()) {
+                peakMismatches++;
+            }
+            double intensity = reference.getIntensity();
+            if (!Double.isNaN(intensity) && !Double.isNaN(fixed.getIntensity())) {
+                double error = Math.abs(fixed.getIntensity() - intensity);
+                maxIntensityError = Math.max(maxIntensityError, error);
+                if (intensity > 1) {
+                    maxIntensityRelativeError = Math.max(maxIntensityRelativeError, error / intensity);
+                }
+            }
+            double deviation = reference.getStandardDeviation();
+            if (!Double.isNaN(deviation) && !Double.isNaN(fixed.getStandardDeviation())) {
+                maxDeviationError = Math.max(maxDeviationError, Math.abs(fixed.getStandardDeviation() - deviation));
+            }
+        }
+
+        boolean within(long maxMismatches, double maxDeviation) {
+            return mismatches <= maxMismatches && maxDeviationError <= maxDeviation;
+        }
+
+        void print() {
+            System.out.printf(Locale.ROOT, "%-8s %d windows, %d mismatches (%.4f%%), positives %d float / %d fixed,"
+                            + " %d peak mismatches, intensity error max %.3f (%.2e relative), deviation error max %.2e%n",
+                    name, windows, mismatches, windows > 0 ? 100.0 * mismatches / windows : 0,
+                    floatPositives, fixedPositives, peakMismatches,
+                    maxIntensityError, maxIntensityRelativeError, maxDeviationError);
+        }
+    }
+
+    private int frameSize = 1024;
+    private int hopSize = -1;
+    private int rawSampleRate = 44100;
+    private long maxMismatches = Long.MAX_VALUE;
+    private double maxDeviationError = Double.POSITIVE_INFINITY;
+    private final List<File> inputs = new ArrayList<>();
+    private final Stats whistleStats = new Stats("WHISTLE");
+    private final Stats clapStats = new Stats("CLAP");
+
+    public static void main(String[] args) throws IOException {
+        FixedPointParityMain parity = new FixedPointParityMain();
+        if (!parity.parseArgs(args)) {
+            System.err.println("usage: FixedPointParityMain [--frame N] [--hop N] [--raw-rate HZ] [--max-mismatches N]"
+                    + " [--max-deviation-error E] file-or-dir...");
+            System.exit(2);
+        }
+        for (File input : parity.inputs) {
+            parity.compare(input);
+        }
+        parity.whistleStats.print();
+        parity.clapStats.print();
+        if (!parity.whistleStats.within(parity.maxMismatches, parity.maxDeviationError)
+                || !parity.clapStats.within(parity.maxMismatches, parity.maxDeviationError)) {
+            System.err.printf(Locale.ROOT, "fixed-point parity over the limits of %d mismatches and deviation error %.2e%n",
+                    parity.maxMismatches, parity.maxDeviationError);
+            System.exit(1);
+        }
+    }
+
+    private boolean parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            boolean hasValue = i + 1 < args.length;
+            if (arg.equals("--frame") && hasValue) {
+                frameSize = Integer.parseInt(args[++i]);
+            } else if (arg.equals("--hop") && hasValue) {
+                hopSize = Integer.parseInt(args[++i]);
+            } else if (arg.equals("--raw-rate") && hasValue) {
+                rawSampleRate = Integer.parseInt(args[++i]);
+            } else if (arg.equals("--max-mismatches") && hasValue) {
+                maxMismatches = Long.parseLong(args[++i]);
+            } else if (arg.equals("--max-deviation-error") && hasValue) {
+                maxDeviationError = Double.parseDouble(args[++i]);
+            } else if (arg.startsWith("--")) {
+                return false;
+            } else {
+                ReplayMain.collect(new File(arg), inputs);
+            }
+        }
+        if (hopSize <= 0) {
+            hopSize = frameSize / 2;
+        }
+        return !inputs.isEmpty();
+    }
+
+    private void compare(File input) throws IOException {
+        try (WavFileSource source = ReplayMain.open(input, frameSize, rawSampleRate)) {
+            int sampleRate = source.getSampleRate();
+            WhistleEngine whistle = new WhistleEngine(sampleRate, frameSize);
+            FixedPointEngine fixedWhistle = new FixedPointEngine(whistle);
+            ClapEngine clap = new ClapEngine(sampleRate, frameSize);
+            FixedPointEngine fixedClap = new FixedPointEngine(clap);
+            StftStream stft = new StftStream(frameSize, hopSize);
+
+            short[] samples = source.getSamples();
+            int offset;
+            while ((offset = source.takeFrame(0)) >= 0) {
+                int consumed = 0;
+                while (consumed < frameSize) {
+                    consumed += stft.write(samples, offset + consumed, frameSize - consumed);
+                    if (stft.isWindowReady()) {
+                        short[] window = stft.getSamples();
+                        int windowOffset = stft.getWindowOffset();
+                        whistleStats.compare(whistle, fixedWhistle, whistle.analyze(window, windowOffset),
+                                fixedWhistle.analyze(window, windowOffset));
+                        clapStats.compare(clap, fixedClap, clap.analyze(window, windowOffset),
+                                fixedClap.analyze(window, windowOffset));
+                    }
+                }
+                source.releaseFrame();
+            }
+        }
+    }
+}
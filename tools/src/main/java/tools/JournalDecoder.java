@@ -0,0 +1,110 @@
+package tools;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import model.journal.EventJournal;
+
+/**
+ * Exports binary event journals pulled from the watch
+ * ({@code adb pull /data/data/com.eschoolsudan.deafwhistler/files/journal}) to CSV.
+ * <pre>
+ * JournalDecoder [--out journal.csv] journal-dir-or-file...
+ * </pre>
+ * Directories are read oldest file first, so the rows come out in time order.
+ */
+public final class JournalDecoder {
+
+    public static void main(String[] args) throws IOException {
+        File out = null;
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--out") && i + 1 < args.length) {
+                out = new File(args[++i]);
+            } else if (args[i].startsWith("--")) {
+                files.clear();
+                break;
+            } else {
+                File file = new File(args[i]);
+                if (file.isDirectory()) {
+                    for (File journal : EventJournal.listFiles(file)) {
+                        files.add(journal);
+                    }
+                } else {
+                    files.add(file);
+                }
+            }
+        }
+        if (files.isEmpty()) {
+            System.err.println("usage: JournalDecoder [--out journal.csv] journal-dir-or-file...");
+            System.exit(2);
+        }
+        PrintWriter writer = new PrintWriter(out != null ? new FileWriter(out) : new OutputStreamWriter(System.out));
+        long records = 0;
+        try {
+            writer.println("timestamp_ms,time_utc,energy,peak_hz,vote_score,detected,event,stages_passed");
+            for (File file : files) {
+                records += decode(file, writer);
+            }
+        } finally {
+            writer.flush();
+            if (out != null) {
+                writer.close();
+            }
+        }
+        System.err.println(records + " records from " + files.size() + " files");
+    }
+
+    /**
+     * Writes the records of one journal file as CSV rows.
+     *
+     * @return number of records written
+     */
+    static int decode(File file, PrintWriter writer) throws IOException {
+        SimpleDateFormat time = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.ROOT);
+        time.setTimeZone(TimeZone.getTimeZone("UTC"));
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.remaining() < EventJournal.HEADER_SIZE
+                    || buffer.getInt(EventJournal.MAGIC_OFFSET) != EventJournal.MAGIC) {
+                throw new IOException(file + ": not an event journal");
+            }
+            int version = buffer.getShort(EventJournal.VERSION_OFFSET);
+            int recordSize = buffer.getShort(EventJournal.RECORD_SIZE_OFFSET);
+            if (version != EventJournal.VERSION || recordSize < EventJournal.RECORD_SIZE) {
+                throw new IOException(file + ": unsupported journal version " + version);
+            }
+            // the count is updated on every flush; a crash can leave it behind the data
+            int count = Math.min(buffer.getInt(EventJournal.COUNT_OFFSET),
+                    (buffer.limit() - EventJournal.HEADER_SIZE) / recordSize);
+            for (int i = 0; i < count; i++) {
+                int position = EventJournal.HEADER_SIZE + i * recordSize;
+                long timestamp = buffer.getLong(position);
+                float energy = buffer.getFloat(position + 8);
+                float peak = buffer.getFloat(position + 12);
+                int score = buffer.getShort(position + 16);
+                int flags = buffer.get(position + 18);
+                int stages = buffer.get(position + 19);
+                writer.printf(Locale.ROOT, "%d,%s,%.1f,%.1f,%d,%d,%d,%d%n",
+                        timestamp, time.format(new Date(timestamp)), energy, peak, score,
+                        (flags & EventJournal.FLAG_DETECTED) != 0 ? 1 : 0,
+                        (flags & EventJournal.FLAG_EVENT) != 0 ? 1 : 0, stages);
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import model.audio.WavFileSource;
+import model.detection.DetectionPipeline;
+import model.detection.WhistlePattern;
+import model.helper.DetectorCallback;
+import model.helper.DetectorType;
+import model.offload.LoopbackTransport;
+import model.offload.OffloadClient;
+import model.offload.OffloadEngine;
+
+/**
+ * Replays recorded files through the offload path, the watch's gate and mu-law coding on one
+ * end of a {@link LoopbackTransport} and the phone engine on the other, next to the local
+ * pipeline. Reports the events of both, the share of frames sent, the link bit rate and the
+ * watch-side cost per frame.
+ * <pre>
+ * OffloadReplayMain [--type WHISTLE|CLAP|WHISTLE_LOW_POWER|WHISTLE_CLASSIFIER[,...]] [--frame 1024] [--hop 512]
+ *                   [--raw-rate 44100] file-or-dir...
+ * </pre>
+ */
+public final class OffloadReplayMain {
+
+    private DetectorType[] types = {DetectorType.WHISTLE};
+    private int frameSize = 1024;
+    private int hopSize = -1;
+    private int rawSampleRate = 44100;
+    private final List<File> inputs = new ArrayList<>();
+
+    private long totalLocalEvents;
+    private long totalOffloadEvents;
+    private long totalFrames;
+    private long totalFramesSent;
+    private long totalBytes;
+    private double totalSeconds;
+    private long totalClientNanos;
+
+    public static void main(String[] args) throws IOException {
+        OffloadReplayMain replay = new OffloadReplayMain();
+        if (!replay.parseArgs(args)) {
+            System.err.println("usage: OffloadReplayMain [--type WHISTLE|CLAP|WHISTLE_LOW_POWER|WHISTLE_CLASSIFIER[,...]]"
+                    + " [--frame N]"
+                    + " [--hop N] [--raw-rate HZ] file-or-dir...");
+            System.exit(2);
+        }
+        for (File input : replay.inputs) {
+            replay.replay(input);
+        }
+        replay.printTotal();
+    }
+
+    private boolean parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            boolean hasValue = i + 1 < args.length;
+            if (arg.equals("--type") && hasValue) {
+                types = ReplayMain.parseTypes(args[++i]);
+            } else if (arg.equals("--frame") && hasValue) {
+                frameSize = Integer.parseInt(args[++i]);
+            } else if (arg.equals("--hop") && hasValue) {
+                hopSize = Integer.parseInt(args[++i]);
+            } else if (arg.equals("--raw-rate") && hasValue) {
+                rawSampleRate = Integer.parseInt(args[++i]);
+            } else if (arg.startsWith("--")) {
+                return false;
+            } else {
+                ReplayMain.collect(new File(arg), inputs);
+            }
+        }
+        if (hopSize <= 0) {
+            hopSize = frameSize / 2;
+        }
+        return !inputs.isEmpty();
+    }
+
+    private void replay(File input) throws IOException {
+        try (WavFileSource source = ReplayMain.open(input, frameSize, rawSampleRate)) {
+            final int sampleRate = source.getSampleRate();
+            final String name = input.getName();
+            DetectionPipeline local = DetectionPipeline.create(sampleRate, frameSize, hopSize, types);
+            LoopbackTransport[] link = LoopbackTransport.createPair();
+            OffloadEngine engine = new OffloadEngine(link[1]);
+            final long[] frameIndex = new long[1];
+            OffloadClient client = new OffloadClient(link[0], sampleRate, frameSize, hopSize, new DetectorCallback() {
+                @Override
+                public void onSoundDetected(DetectorType type) {
+                    System.out.printf(Locale.ROOT, "%s  %.3f s  offload %s%n", name,
+                            (double) (frameIndex[0] + 1) * frameSize / sampleRate, type);
+                }
+
+                @Override
+                public void onPatternDetected(WhistlePattern pattern) {
+                    System.out.printf(Locale.ROOT, "%s  %.3f s  offload pattern %s%n", name,
+                            (double) (frameIndex[0] + 1) * frameSize / sampleRate, pattern);
+                }
+            }, types);
+
+            short[] samples = source.getSamples();
+            long clientNanos = 0;
+            int offset;
+            while ((offset = source.takeFrame(0)) >= 0) {
+                int events = local.process(samples, offset);
+                for (int d = 0; events != 0; d++, events >>>= 1) {
+                    if ((events & 1) != 0) {
+                        System.out.printf(Locale.ROOT, "%s  %.3f s  local %s%n", name,
+                                (double) (frameIndex[0] + 1) * frameSize / sampleRate, local.getType(d));
+                    }
+                }
+                // the loopback runs the phone engine inside the send; time only what the watch does
+                long start = System.nanoTime();
+                long engineBefore = engine.getFramesReceived();
+                client.process(samples, offset);
+                if (engine.getFramesReceived() == engineBefore) {
+                    clientNanos += System.nanoTime() - start;
+                }
+                frameIndex[0]++;
+                source.releaseFrame();
+            }
+
+            long frames = client.getFrameCount();
+            double seconds = (double) frames * frameSize / sampleRate;
+            totalLocalEvents += local.getEventCount();
+            totalOffloadEvents += client.getEventCount();
+            totalFrames += frames;
+            totalFramesSent += client.getFramesSent();
+            totalBytes += link[0].getByteCount();
+            totalSeconds += seconds;
+            totalClientNanos += clientNanos;
+            System.out.printf(Locale.ROOT, "%s  %d Hz, %.1f s: events %d local / %d offload, %d of %d frames sent"
+                            + " (%.1f%%), %.1f kbit/s, %d gap frames on the phone%n",
+                    name, sampleRate, seconds, local.getEventCount(), client.getEventCount(),
+                    client.getFramesSent(), frames, frames > 0 ? 100.0 * client.getFramesSent() / frames : 0,
+                    seconds > 0 ? link[0].getByteCount() * 8 / seconds / 1000 : 0, engine.getGapFrames());
+        }
+    }
+
+    private void printTotal() {
+        long framesKept = totalFrames - totalFramesSent;
+        System.out.printf(Locale.ROOT, "TOTAL  %d files, %.1f s audio, events %d local / %d offload,"
+                        + " %.1f%% of frames sent, %.1f kbit/s against %.0f kbit/s of raw PCM,"
+                        + " %.0f ns per frame kept on the watch%n",
+                inputs.size(), totalSeconds, totalLocalEvents, totalOffloadEvents,
+                totalFrames > 0 ? 100.0 * totalFramesSent / totalFrames : 0,
+                totalSeconds > 0 ? totalBytes * 8 / totalSeconds / 1000 : 0,
+                totalSeconds > 0 ? totalFrames * frameSize * 16 / totalSeconds / 1000 : 0,
+                framesKept > 0 ? (double) totalClientNanos / framesKept : 0);
+    }
+}
@@ -0,0 +1,338 @@
+package tools;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import com.musicg.api.ClapApi;
+import com.musicg.api.WhistleApi;
+import com.musicg.wave.WaveHeader;
+
+import model.audio.AudioSource;
+import model.audio.CaptureRates;
+import model.audio.DecimatingSource;
+import model.audio.WavFileSource;
+import model.detection.ClapEngine;
+import model.detection.DetectionCascade;
+import model.detection.DetectionEngine;
+import model.detection.DetectionPipeline;
+import model.detection.FeatureBuffer;
+import model.detection.FeatureExtractor;
+import model.detection.MusicgEngine;
+import model.detection.WhistleEngine;
+import model.helper.DetectorType;
+
+/**
+ * Replays recorded WAV or raw PCM files through the watch detection pipeline on the desktop,
+ * as fast as the CPU allows, and reports throughput, events and per-stage pass rates.
+ * <pre>
+ * ReplayMain [--type WHISTLE|CLAP|WHISTLE_LOW_POWER|WHISTLE_CLASSIFIER[,...]] [--frame 1024] [--hop 512]
+ *            [--raw-rate 44100] [--decimate 2] [--log decisions.csv] [--features features.csv]
+ *            [--parity] [--fixed] file-or-dir...
+ * </pre>
+ * Several comma-separated types run side by side over the same windows, as on the watch.
+ * {@code --log} writes one CSV line per analysis window; {@code --features} writes the
+ * {@link FeatureExtractor} vector of every window past the silence gate; {@code --parity} also runs the
+ * in-tree whistle and clap engines next to musicg's WhistleApi and ClapApi on every window
+ * and counts disagreements, exiting with status 1 if there are any. {@code --fixed} replays
+ * the fixed-point detection path.
+ * {@code --decimate} filters and decimates the recordings by an integer factor first, as the
+ * watch does when the microphone lacks the detection rate. Frames default to
+ * {@link CaptureRates#frameSizeFor(int)} of each file's detection rate, about 23 ms.
+ */
+public final class ReplayMain {
+
+    private DetectorType[] types = {DetectorType.WHISTLE};
+    private int frameSize = -1;
+    private int hopSize = -1;
+    private int decimation = 1;
+    private int rawSampleRate = 44100;
+    private File logFile;
+    private File featuresFile;
+    private boolean parity;
+    private boolean fixedPoint;
+    private final List<File> inputs = new ArrayList<>();
+
+    private PrintWriter log;
+    private PrintWriter featureLog;
+    private long totalFrames;
+    private double totalSeconds;
+    private long totalNanos;
+    // output and parity work done inside the listeners, kept out of the pipeline timings
+    private long listenerNanos;
+    private long totalListenerNanos;
+    private long totalEvents;
+    private long parityWindows;
+    private long parityMismatches;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        ReplayMain replay = new ReplayMain();
+        if (!replay.parseArgs(args)) {
+            System.err.println("usage: ReplayMain [--type WHISTLE|CLAP|WHISTLE_LOW_POWER|WHISTLE_CLASSIFIER[,...]]"
+                    + " [--frame N] [--hop N]"
+                    + " [--raw-rate HZ] [--decimate N] [--log decisions.csv] [--features features.csv] [--parity]"
+                    + " [--fixed] file-or-dir...");
+            System.exit(2);
+        }
+        replay.run();
+        if (replay.parityMismatches > 0) {
+            // a failed parity check fails the build
+            System.exit(1);
+        }
+    }
+
+    private boolean parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            boolean hasValue = i + 1 < args.length;
+            if (arg.equals("--type") && hasValue) {
+                types = parseTypes(args[++i]);
+            } else if (arg.equals("--frame") && hasValue) {
+                frameSize = Integer.parseInt(args[++i]);
+            } else if (arg.equals("--hop") && hasValue) {
+                hopSize = Integer.parseInt(args[++i]);
+            } else if (arg.equals("--raw-rate") && hasValue) {
+                rawSampleRate = Integer.parseInt(args[++i]);
+            } else if (arg.equals("--decimate") && hasValue) {
+                decimation = Integer.parseInt(args[++i]);
+            } else if (arg.equals("--log") && hasValue) {
+                logFile = new File(args[++i]);
+            } else if (arg.equals("--features") && hasValue) {
+                featuresFile = new File(args[++i]);
+            } else if (arg.equals("--parity")) {
+                parity = true;
+            } else if (arg.equals("--fixed")) {
+                fixedPoint = true;
+            } else if (arg.startsWith("--")) {
+                return false;
+            } else {
+                collect(new File(arg), inputs);
+            }
+        }
+        if (decimation < 1) {
+            return false;
+        }
+        return !inputs.isEmpty();
+    }
+
+    static DetectorType[] parseTypes(String list) {
+        String[] names = list.split(",");
+        DetectorType[] parsed = new DetectorType[names.length];
+        for (int i = 0; i < names.length; i++) {
+            parsed[i] = DetectorType.valueOf(names[i].trim().toUpperCase(Locale.ROOT));
+        }
+        return parsed;
+    }
+
+    static void collect(File file, List<File> out) {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children != null) {
+                Arrays.sort(children);
+                for (File child : children) {
+                    collect(child, out);
+                }
+            }
+        } else if (isAudioFile(file)) {
+            out.add(file);
+        }
+    }
+
+    static boolean isAudioFile(File file) {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        return name.endsWith(".wav") || name.endsWith(".pcm") || name.endsWith(".raw");
+    }
+
+    /**
+     * Opens a WAV file, or a raw file of 16 bit mono samples at {@code rawSampleRate}.
+     */
+    static WavFileSource open(File file, int frameSize, int rawSampleRate) throws IOException {
+        if (file.getName().toLowerCase(Locale.ROOT).endsWith(".wav")) {
+            return new WavFileSource(file, frameSize);
+        }
+        return WavFileSource.openRaw(file, rawSampleRate, frameSize);
+    }
+
+    /**
+     * Sample rate of a WAV file, or {@code rawSampleRate} for a raw one.
+     */
+    static int sampleRateOf(File file, int rawSampleRate) throws IOException {
+        try (WavFileSource source = open(file, 1, rawSampleRate)) {
+            return source.getSampleRate();
+        }
+    }
+
+    private void run() throws IOException, InterruptedException {
+        if (logFile != null) {
+            log = new PrintWriter(new FileWriter(logFile));
+            log.println("file,time_s,detected,event,vote_score");
+        }
+        if (featuresFile != null) {
+            featureLog = new PrintWriter(new FileWriter(featuresFile));
+            StringBuilder header = new StringBuilder("file,time_s");
+            for (int i = 0; i < FeatureExtractor.FEATURE_COUNT; i++) {
+                header.append(',').append(FeatureExtractor.getName(i));
+            }
+            featureLog.println(header.append(",detected,event"));
+        }
+        try {
+            for (File input : inputs) {
+                replay(input);
+            }
+        } finally {
+            if (log != null) {
+                log.close();
+            }
+            if (featureLog != null) {
+                featureLog.close();
+            }
+        }
+        double seconds = totalNanos / 1e9;
+        System.out.printf(Locale.ROOT, "TOTAL  %d files, %.1f s audio, %d frames in %.3f s: %.0f frames/s, %.0fx real time, %d events%n",
+                inputs.size(), totalSeconds, totalFrames, seconds,
+                seconds > 0 ? totalFrames / seconds : 0, seconds > 0 ? totalSeconds / seconds : 0, totalEvents);
+        System.out.printf(Locale.ROOT, "LISTENERS %.3f s of output%s work, not counted above%n",
+                totalListenerNanos / 1e9, parity ? " and parity engine" : "");
+        if (parity) {
+            System.out.printf(Locale.ROOT, "PARITY %d engine windows, %d mismatches against musicg%n",
+                    parityWindows, parityMismatches);
+        }
+    }
+
+    private void replay(File input) throws IOException, InterruptedException {
+        int frameSize = this.frameSize > 0 ? this.frameSize
+                : CaptureRates.frameSizeFor(sampleRateOf(input, rawSampleRate) / decimation);
+        int hopSize = this.hopSize > 0 ? this.hopSize : frameSize / 2;
+        try (WavFileSource file = open(input, frameSize * decimation, rawSampleRate)) {
+            AudioSource source = decimation > 1 ? new DecimatingSource(file, decimation) : file;
+            final int sampleRate = source.getSampleRate();
+            final String name = input.getName();
+            final DetectionPipeline pipeline = DetectionPipeline.create(sampleRate, frameSize, hopSize, fixedPoint, types);
+            final DetectionEngine[] engines = parity ? createParityEngines(sampleRate, frameSize, false)
+                    : new DetectionEngine[0];
+            final DetectionEngine[] references = parity ? createParityEngines(sampleRate, frameSize, true)
+                    : new DetectionEngine[0];
+            if (featureLog != null) {
+                pipeline.enableFeatures(1);
+            }
+            pipeline.setPatternListener((pattern, endSample) -> {
+                long listenerStart = System.nanoTime();
+                System.out.printf(Locale.ROOT, "%s  %.3f s  pattern %s%n", name, (double) endSample / sampleRate, pattern);
+                listenerNanos += System.nanoTime() - listenerStart;
+            });
+            pipeline.setWindowListener((samples, offset, endSample, detected, event) -> {
+                long listenerStart = System.nanoTime();
+                if (event) {
+                    System.out.printf(Locale.ROOT, "%s  %.3f s  event%n", name, (double) endSample / sampleRate);
+                }
+                if (log != null) {
+                    log.printf(Locale.ROOT, "%s,%.4f,%d,%d,%d%n", name, (double) endSample / sampleRate,
+                            detected ? 1 : 0, event ? 1 : 0, pipeline.getVoteScore());
+                }
+                if (featureLog != null && pipeline.hasWindowFeatures()) {
+                    logFeatures(name, (double) endSample / sampleRate, pipeline.getFeatures(), detected, event);
+                }
+                for (int i = 0; i < engines.length; i++) {
+                    parityWindows++;
+                    if (engines[i].analyze(samples, offset) != references[i].analyze(samples, offset)) {
+                        parityMismatches++;
+                    }
+                }
+                listenerNanos += System.nanoTime() - listenerStart;
+            });
+
+            // only the pipeline is timed, not reading, decimating or the listeners' work
+            short[] samples = source.getSamples();
+            listenerNanos = 0;
+            long nanos = 0;
+            int offset;
+            while ((offset = source.takeFrame(0)) >= 0) {
+                long start = System.nanoTime();
+                pipeline.process(samples, offset);
+                nanos += System.nanoTime() - start;
+                source.releaseFrame();
+            }
+            nanos -= listenerNanos;
+
+            long frames = file.getFramesRead();
+            double seconds = (double) frames * frameSize / sampleRate;
+            long events = pipeline.getEventCount();
+            totalFrames += frames;
+            totalSeconds += seconds;
+            totalNanos += nanos;
+            totalListenerNanos += listenerNanos;
+            totalEvents += events;
+            System.out.printf(Locale.ROOT, "%s  %d Hz, %.1f s, %d frames in %.1f ms: %.0f frames/s, %d events, stage pass rates %s%n",
+                    name, sampleRate, seconds, frames, nanos / 1e6,
+                    nanos > 0 ? frames * 1e9 / nanos : 0, events, passRates(pipeline));
+            System.out.printf(Locale.ROOT, "%s  listeners (output%s) %.1f ms, not counted above%n",
+                    name, parity ? ", parity engines" : "", listenerNanos / 1e6);
+        }
+    }
+
+    private void logFeatures(String name, double seconds, FeatureBuffer features, boolean detected, boolean event) {
+        float[] data = features.getData();
+        int offset = features.getLatestOffset();
+        featureLog.print(name);
+        featureLog.printf(Locale.ROOT, ",%.4f", seconds);
+        for (int i = 0; i < FeatureExtractor.FEATURE_COUNT; i++) {
+            featureLog.printf(Locale.ROOT, ",%.4g", data[offset + i]);
+        }
+        featureLog.printf(Locale.ROOT, ",%d,%d%n", detected ? 1 : 0, event ? 1 : 0);
+    }
+
+    /**
+     * The in-tree engines, or musicg's reference APIs, for every type that has both.
+     */
+    private DetectionEngine[] createParityEngines(int sampleRate, int frameSize, boolean reference) {
+        List<DetectionEngine> engines = new ArrayList<>();
+        for (DetectorType t : types) {
+            if (t == DetectorType.CLAP) {
+                engines.add(reference ? new MusicgEngine(new ClapApi(createHeader(sampleRate)), frameSize)
+                        : new ClapEngine(sampleRate, frameSize));
+            } else {
+                engines.add(reference ? new MusicgEngine(new WhistleApi(createHeader(sampleRate)), frameSize)
+                        : new WhistleEngine(sampleRate, frameSize));
+            }
+        }
+        return engines.toArray(new DetectionEngine[0]);
+    }
+
+    static WaveHeader createHeader(int sampleRate) {
+        WaveHeader header = new WaveHeader();
+        header.setChannels(1);
+        header.setBitsPerSample(16);
+        header.setSampleRate(sampleRate);
+        return header;
+    }
+
+    /**
+     * Shared gate pass rate, then each detector's stages with its event count.
+     */
+    static String passRates(DetectionPipeline pipeline) {
+        StringBuilder rates = new StringBuilder(passRates(pipeline.getGate()));
+        for (int d = 0; d < pipeline.getDetectorCount(); d++) {
+            rates.append(String.format(Locale.ROOT, " | %s [%d events] ", pipeline.getType(d),
+                    pipeline.getVoteWindow(d).getEventCount()));
+            rates.append(passRates(pipeline.getCascade(d)));
+        }
+        return rates.toString();
+    }
+
+    static String passRates(DetectionCascade cascade) {
+        StringBuilder rates = new StringBuilder();
+        for (int i = 0; i < cascade.getStageCount(); i++) {
+            if (i > 0) {
+                rates.append(" / ");
+            }
+            rates.append(String.format(Locale.ROOT, "%s %.1f%%",
+                    cascade.getStage(i).getClass().getSimpleName(), cascade.getPassRate(i) * 100));
+        }
+        return rates.toString();
+    }
+}
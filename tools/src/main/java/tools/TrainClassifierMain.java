@@ -0,0 +1,594 @@
+package tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import model.audio.AudioSource;
+import model.audio.CaptureRates;
+import model.audio.DecimatingSource;
+import model.audio.WavFileSource;
+import model.detection.ClassifierEngine;
+import model.detection.DetectionPipeline;
+import model.detection.FeatureBuffer;
+import model.detection.QuantizedClassifier;
+import model.helper.DetectorType;
+
+/**
+ * Trains the {@link QuantizedClassifier} of {@link DetectorType#WHISTLE_CLASSIFIER} on
+ * labelled recordings and exports it as the {@code WhistleClassifierModel} source file.
+ * <pre>
+ * TrainClassifierMain [--rate 44100 | --decimate 2] [--frame 1024] [--hop 512] [--raw-rate 44100]
+ *                     [--label whistle] [--hidden 12] [--epochs 60] [--seed 1] [--threshold 0.5]
+ *                     [--validate dir] [--out WhistleClassifierModel.java] dir-or-file...
+ * </pre>
+ * Recordings and labels are laid out as for {@link EvaluateMain}; {@link SyntheticCorpusMain}
+ * writes a corpus. The model only holds at one detection rate and frame size, which it
+ * records: train at {@code Constant.captureSampleRate}. {@code --rate} decimates every
+ * recording to that rate, {@code --decimate} by a fixed factor, as the watch does when the
+ * microphone lacks the rate; frames default to {@link CaptureRates#frameSizeFor(int)} of
+ * the rate. Every window that passes the
+ * silence gate is one example, positive when its centre lies inside a label. A float network
+ * with one ReLU hidden layer is trained with Adam on the class-weighted log loss, then
+ * quantised: inputs to int8 over {@value QuantizedClassifier#INPUT_RANGE} standard deviations,
+ * weights to int8 with a scale per hidden unit, hidden activations to 0..127 at the 99.9th
+ * percentile seen in training. Window precision and recall of the float and int8 networks are
+ * reported on the training set and on the {@code --validate} recordings.
+ */
+public final class TrainClassifierMain {
+
+    private static final double LEARNING_RATE = 0.01;
+    private static final double L2 = 1e-4;
+    private static final int BATCH_SIZE = 32;
+    private static final double HIDDEN_PERCENTILE = 0.999;
+    private static final int FLOATS_PER_LINE = 6;
+
+    /**
+     * Classifier inputs and labels of the gated windows of some recordings.
+     */
+    private static final class Examples {
+        float[] inputs = new float[1 << 16];
+        boolean[] labels = new boolean[(1 << 16) / ClassifierEngine.INPUT_COUNT];
+        int count;
+        int positives;
+        int files;
+
+        void add(float[] example, boolean label) {
+            if (count == labels.length) {
+                inputs = Arrays.copyOf(inputs, inputs.length * 2);
+                labels = Arrays.copyOf(labels, labels.length * 2);
+            }
+            System.arraycopy(example, 0, inputs, count * ClassifierEngine.INPUT_COUNT, ClassifierEngine.INPUT_COUNT);
+            labels[count++] = label;
+            if (label) {
+                positives++;
+            }
+        }
+    }
+
+    private int targetRate;
+    private int decimation = 1;
+    private int frameSize = -1;
+    private int hopSize = -1;
+    private int rawSampleRate = 44100;
+    private String labelText = "whistle";
+    private int hiddenCount = 12;
+    private int epochs = 60;
+    private long seed = 1;
+    private double threshold = 0.5;
+    private File outFile;
+    private final List<File> inputs = new ArrayList<>();
+    private final List<File> validation = new ArrayList<>();
+
+    private int sampleRate;
+
+    // float network: standardisation, then hidden and output layers
+    private float[] means;
+    private float[] deviations;
+    private double[] w1;
+    private double[] b1;
+    private double[] w2;
+    private double b2;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        TrainClassifierMain training = new TrainClassifierMain();
+        if (!training.parseArgs(args)) {
+            System.err.println("usage: TrainClassifierMain [--rate HZ | --decimate N] [--frame N] [--hop N]"
+                    + " [--raw-rate HZ] [--label text]"
+                    + " [--hidden N] [--epochs N] [--seed N] [--threshold P] [--validate dir]"
+                    + " [--out WhistleClassifierModel.java] dir-or-file...");
+            System.exit(2);
+        }
+        training.run();
+    }
+
+    private boolean parseArgs(String[] args) {
+        List<File> audio = new ArrayList<>();
+        List<File> validationAudio = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            boolean hasValue = i + 1 < args.length;
+            if (arg.equals("--rate") && hasValue) {
+                targetRate = Integer.parseInt(args[++i]);
+            } else if (arg.equals("--decimate") && hasValue) {
+                decimation = Integer.parseInt(args[++i]);
+            } else if (arg.equals("--frame") && hasValue) {
+                frameSize = Integer.parseInt(args[++i]);
+            } else if (arg.equals("--hop") && hasValue) {
+                hopSize = Integer.parseInt(args[++i]);
+            } else if (arg.equals("--raw-rate") && hasValue) {
+                rawSampleRate = Integer.parseInt(args[++i]);
+            } else if (arg.equals("--label") && hasValue) {
+                labelText = args[++i];
+            } else if (arg.equals("--hidden") && hasValue) {
+                hiddenCount = Integer.parseInt(args[++i]);
+            } else if (arg.equals("--epochs") && hasValue) {
+                epochs = Integer.parseInt(args[++i]);
+            } else if (arg.equals("--seed") && hasValue) {
+                seed = Long.parseLong(args[++i]);
+            } else if (arg.equals("--threshold") && hasValue) {
+                threshold = Double.parseDouble(args[++i]);
+            } else if (arg.equals("--validate") && hasValue) {
+                ReplayMain.collect(new File(args[++i]), validationAudio);
+            } else if (arg.equals("--out") && hasValue) {
+                outFile = new File(args[++i]);
+            } else if (arg.startsWith("--")) {
+                return false;
+            } else {
+                ReplayMain.collect(new File(arg), audio);
+            }
+        }
+        keepLabelled(audio, inputs);
+        keepLabelled(validationAudio, validation);
+        if (decimation < 1 || (targetRate > 0 && decimation > 1)) {
+            return false;
+        }
+        return !inputs.isEmpty() && hiddenCount > 0 && threshold > 0 && threshold < 1;
+    }
+
+    private static void keepLabelled(List<File> audio, List<File> out) {
+        for (File file : audio) {
+            if (AudacityLabels.labelFileFor(file).isFile()) {
+                out.add(file);
+            } else {
+                System.err.println("skipping " + file + ": no label file");
+            }
+        }
+    }
+
+    private void run() throws IOException, InterruptedException {
+        Examples training = collect(inputs);
+        System.out.printf(Locale.ROOT, "training          %d files, %d windows, %d positive%n",
+                training.files, training.count, training.positives);
+        if (training.positives == 0 || training.positives == training.count) {
+            throw new IOException("training windows need both classes");
+        }
+        standardise(training);
+        train(training);
+        QuantizedClassifier classifier = quantise(training);
+        report("training", training, classifier);
+        if (!validation.isEmpty()) {
+            Examples held = collect(validation);
+            System.out.printf(Locale.ROOT, "validation        %d files, %d windows, %d positive%n",
+                    held.files, held.count, held.positives);
+            report("validation", held, classifier);
+        }
+    }
+
+    private Examples collect(List<File> files) throws IOException, InterruptedException {
+        Examples examples = new Examples();
+        for (File file : files) {
+            AudacityLabels labels = AudacityLabels.read(AudacityLabels.labelFileFor(file), labelText);
+            int fileRate = ReplayMain.sampleRateOf(file, rawSampleRate);
+            int factor = decimation;
+            if (targetRate > 0) {
+                if (fileRate % targetRate != 0) {
+                    throw new IOException(file + ": " + fileRate + " Hz does not decimate to " + targetRate + " Hz");
+                }
+                factor = fileRate / targetRate;
+            }
+            final int rate = fileRate / factor;
+            if (sampleRate == 0) {
+                sampleRate = rate;
+                if (frameSize <= 0) {
+                    frameSize = CaptureRates.frameSizeFor(rate);
+                }
+                if (hopSize <= 0) {
+                    hopSize = frameSize / 2;
+                }
+            } else if (rate != sampleRate) {
+                throw new IOException(file + ": detection rate " + rate + " Hz, not " + sampleRate + " Hz like the first");
+            }
+            try (WavFileSource wav = ReplayMain.open(file, frameSize * factor, rawSampleRate)) {
+                AudioSource source = factor > 1 ? new DecimatingSource(wav, factor) : wav;
+                // the pipeline only lends its gate and feature extraction
+                final DetectionPipeline pipeline = DetectionPipeline.create(rate, frameSize, hopSize,
+                        DetectorType.WHISTLE).enableFeatures(ClassifierEngine.HISTORY);
+                final FeatureBuffer features = pipeline.getFeatures();
+                final float[] example = new float[ClassifierEngine.INPUT_COUNT];
+                pipeline.setWindowListener((samples, offset, endSample, detected, event) -> {
+                    if (pipeline.hasWindowFeatures()) {
+                        ClassifierEngine.buildInputs(features, features.getCount() - 1, hopSize, example);
+                        double centre = (endSample - frameSize / 2.0) / rate;
+                        examples.add(example, insideLabel(labels, centre));
+                    }
+                });
+                short[] samples = source.getSamples();
+                int offset;
+                while ((offset = source.takeFrame(0)) >= 0) {
+                    pipeline.process(samples, offset);
+                    source.releaseFrame();
+                }
+            }
+            examples.files++;
+        }
+        return examples;
+    }
+
+    private static boolean insideLabel(AudacityLabels labels, double time) {
+        for (int i = 0; i < labels.size(); i++) {
+            if (labels.onsets[i] <= time && time <= labels.offsets[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void standardise(Examples examples) {
+        int n = ClassifierEngine.INPUT_COUNT;
+        means = new float[n];
+        deviations = new float[n];
+        for (int i = 0; i < n; i++) {
+            double sum = 0;
+            double squares = 0;
+            for (int e = 0; e < examples.count; e++) {
+                double x = examples.inputs[e * n + i];
+                sum += x;
+                squares += x * x;
+            }
+            double mean = sum / examples.count;
+            means[i] = (float) mean;
+            deviations[i] = (float) Math.max(Math.sqrt(Math.max(0, squares / examples.count - mean * mean)), 1e-6);
+        }
+    }
+
+    /**
+     * Standardised input, clipped to the range the int8 inputs cover.
+     */
+    private double input(Examples examples, int example, int i) {
+        double z = (examples.inputs[example * ClassifierEngine.INPUT_COUNT + i] - means[i]) / deviations[i];
+        return Math.max(-QuantizedClassifier.INPUT_RANGE, Math.min(QuantizedClassifier.INPUT_RANGE, z));
+    }
+
+    private void train(Examples examples) {
+        int n = ClassifierEngine.INPUT_COUNT;
+        Random random = new Random(seed);
+        w1 = new double[hiddenCount * n];
+        b1 = new double[hiddenCount];
+        w2 = new double[hiddenCount];
+        for (int k = 0; k < w1.length; k++) {
+            w1[k] = random.nextGaussian() * Math.sqrt(2.0 / n);
+        }
+        for (int j = 0; j < hiddenCount; j++) {
+            w2[j] = random.nextGaussian() * Math.sqrt(1.0 / hiddenCount);
+        }
+        // both classes weigh the same in total
+        double positiveWeight = 0.5 * examples.count / examples.positives;
+        double negativeWeight = 0.5 * examples.count / (examples.count - examples.positives);
+
+        // parameters in one vector for Adam: w1, b1, w2, b2
+        int size = w1.length + hiddenCount * 2 + 1;
+        double[] gradient = new double[size];
+        double[] moment = new double[size];
+        double[] velocity = new double[size];
+        double[] x = new double[n];
+        double[] hidden = new double[hiddenCount];
+        int[] order = new int[examples.count];
+        for (int e = 0; e < order.length; e++) {
+            order[e] = e;
+        }
+        long step = 0;
+        for (int epoch = 0; epoch < epochs; epoch++) {
+            shuffle(order, random);
+            double loss = 0;
+            double rate = LEARNING_RATE * (1 - 0.9 * epoch / epochs);
+            for (int start = 0; start < order.length; start += BATCH_SIZE) {
+                Arrays.fill(gradient, 0);
+                int end = Math.min(order.length, start + BATCH_SIZE);
+                for (int b = start; b < end; b++) {
+                    int e = order[b];
+                    for (int i = 0; i < n; i++) {
+                        x[i] = input(examples, e, i);
+                    }
+                    double logit = forward(x, hidden);
+                    double p = sigmoid(logit);
+                    boolean label = examples.labels[e];
+                    double weight = label ? positiveWeight : negativeWeight;
+                    loss -= weight * Math.log(Math.max(1e-12, label ? p : 1 - p));
+                    double delta = weight * (p - (label ? 1 : 0));
+                    for (int j = 0; j < hiddenCount; j++) {
+                        gradient[w1.length + hiddenCount + j] += delta * hidden[j];
+                        if (hidden[j] > 0) {
+                            double hiddenDelta = delta * w2[j];
+                            for (int i = 0; i < n; i++) {
+                                gradient[j * n + i] += hiddenDelta * x[i];
+                            }
+                            gradient[w1.length + j] += hiddenDelta;
+                        }
+                    }
+                    gradient[size - 1] += delta;
+                }
+                step++;
+                adam(gradient, moment, velocity, end - start, rate, step);
+            }
+            if (epoch == epochs - 1 || (epoch + 1) % 10 == 0) {
+                System.out.printf(Locale.ROOT, "epoch %3d         loss %.4f%n", epoch + 1, loss / examples.count);
+            }
+        }
+    }
+
+    private void adam(double[] gradient, double[] moment, double[] velocity, int batch, double rate, long step) {
+        double beta1 = 0.9;
+        double beta2 = 0.999;
+        double correction1 = 1 - Math.pow(beta1, step);
+        double correction2 = 1 - Math.pow(beta2, step);
+        for (int k = 0; k < gradient.length; k++) {
+            double value = get(k);
+            double g = gradient[k] / batch + (k < w1.length ? L2 * value : 0);
+            moment[k] = beta1 * moment[k] + (1 - beta1) * g;
+            velocity[k] = beta2 * velocity[k] + (1 - beta2) * g * g;
+            set(k, value - rate * (moment[k] / correction1) / (Math.sqrt(velocity[k] / correction2) + 1e-8));
+        }
+    }
+
+    private double get(int k) {
+        if (k < w1.length) {
+            return w1[k];
+        }
+        k -= w1.length;
+        if (k < hiddenCount) {
+            return b1[k];
+        }
+        k -= hiddenCount;
+        return k < hiddenCount ? w2[k] : b2;
+    }
+
+    private void set(int k, double value) {
+        if (k < w1.length) {
+            w1[k] = value;
+            return;
+        }
+        k -= w1.length;
+        if (k < hiddenCount) {
+            b1[k] = value;
+            return;
+        }
+        k -= hiddenCount;
+        if (k < hiddenCount) {
+            w2[k] = value;
+        } else {
+            b2 = value;
+        }
+    }
+
+    private double forward(double[] x, double[] hidden) {
+        int n = x.length;
+        double logit = b2;
+        for (int j = 0; j < hiddenCount; j++) {
+            double sum = b1[j];
+            for (int i = 0; i < n; i++) {
+                sum += w1[j * n + i] * x[i];
+            }
+            hidden[j] = Math.max(0, sum);
+            logit += w2[j] * hidden[j];
+        }
+        return logit;
+    }
+
+    private static double sigmoid(double logit) {
+        return 1 / (1 + Math.exp(-logit));
+    }
+
+    private static void shuffle(int[] order, Random random) {
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+    }
+
+    private QuantizedClassifier quantise(Examples examples) throws IOException {
+        int n = ClassifierEngine.INPUT_COUNT;
+        double inputStep = (double) QuantizedClassifier.INPUT_RANGE / 127;
+        float[] inputScales = new float[n];
+        for (int i = 0; i < n; i++) {
+            inputScales[i] = (float) (1 / (inputStep * deviations[i]));
+        }
+
+        // hidden activation range from the training windows
+        double[] x = new double[n];
+        double[] hidden = new double[hiddenCount];
+        double[] activations = new double[examples.count * hiddenCount];
+        for (int e = 0; e < examples.count; e++) {
+            for (int i = 0; i < n; i++) {
+                x[i] = input(examples, e, i);
+            }
+            forward(x, hidden);
+            System.arraycopy(hidden, 0, activations, e * hiddenCount, hiddenCount);
+        }
+        Arrays.sort(activations);
+        double hiddenMax = Math.max(activations[(int) (HIDDEN_PERCENTILE * (activations.length - 1))], 1e-6);
+        double hiddenStep = hiddenMax / 127;
+
+        byte[] hiddenWeights = new byte[hiddenCount * n];
+        int[] hiddenBiases = new int[hiddenCount];
+        int[] hiddenMultipliers = new int[hiddenCount];
+        for (int j = 0; j < hiddenCount; j++) {
+            double largest = 1e-12;
+            for (int i = 0; i < n; i++) {
+                largest = Math.max(largest, Math.abs(w1[j * n + i]));
+            }
+            double weightStep = largest / 127;
+            for (int i = 0; i < n; i++) {
+                hiddenWeights[j * n + i] = (byte) Math.round(w1[j * n + i] / weightStep);
+            }
+            double sumStep = inputStep * weightStep;
+            hiddenBiases[j] = (int) Math.round(b1[j] / sumStep);
+            long multiplier = Math.round(sumStep / hiddenStep * (1 << QuantizedClassifier.MULTIPLIER_SHIFT));
+            if (multiplier > Integer.MAX_VALUE) {
+                throw new IOException("hidden unit " + j + " cannot be rescaled in fixed point");
+            }
+            hiddenMultipliers[j] = (int) multiplier;
+        }
+        double largest = 1e-12;
+        for (int j = 0; j < hiddenCount; j++) {
+            largest = Math.max(largest, Math.abs(w2[j]));
+        }
+        double outputWeightStep = largest / 127;
+        byte[] outputWeights = new byte[hiddenCount];
+        for (int j = 0; j < hiddenCount; j++) {
+            outputWeights[j] = (byte) Math.round(w2[j] / outputWeightStep);
+        }
+        double outputStep = hiddenStep * outputWeightStep;
+        int outputBias = (int) Math.round(b2 / outputStep);
+        double thresholdLogit = Math.log(threshold / (1 - threshold));
+        int thresholdSum = (int) Math.ceil(thresholdLogit / outputStep);
+
+        QuantizedClassifier classifier = new QuantizedClassifier(sampleRate, frameSize, means, inputScales, hiddenWeights, hiddenBiases,
+                hiddenMultipliers, outputWeights, outputBias, (float) outputStep, thresholdSum);
+        if (outFile != null) {
+            export(examples, inputScales, hiddenWeights, hiddenBiases, hiddenMultipliers, outputWeights,
+                    outputBias, (float) outputStep, thresholdSum);
+        }
+        return classifier;
+    }
+
+    private void report(String name, Examples examples, QuantizedClassifier classifier) {
+        int n = ClassifierEngine.INPUT_COUNT;
+        double thresholdLogit = Math.log(threshold / (1 - threshold));
+        double[] x = new double[n];
+        double[] hidden = new double[hiddenCount];
+        int[] floatCounts = new int[3];
+        int[] intCounts = new int[3];
+        int agreements = 0;
+        for (int e = 0; e < examples.count; e++) {
+            for (int i = 0; i < n; i++) {
+                x[i] = input(examples, e, i);
+            }
+            boolean floatDecision = forward(x, hidden) >= thresholdLogit;
+            boolean intDecision = classifier.classify(examples.inputs, e * n);
+            count(floatCounts, floatDecision, examples.labels[e]);
+            count(intCounts, intDecision, examples.labels[e]);
+            if (floatDecision == intDecision) {
+                agreements++;
+            }
+        }
+        System.out.printf(Locale.ROOT, "%-17s float precision %.3f recall %.3f | int8 precision %.3f recall %.3f"
+                        + " | %.2f%% of windows agree%n", name,
+                precision(floatCounts), recall(floatCounts, examples.positives),
+                precision(intCounts), recall(intCounts, examples.positives),
+                examples.count == 0 ? 0 : 100.0 * agreements / examples.count);
+    }
+
+    // true positives, false positives, false negatives
+    private static void count(int[] counts, boolean decision, boolean label) {
+        if (decision && label) {
+            counts[0]++;
+        } else if (decision) {
+            counts[1]++;
+        } else if (label) {
+            counts[2]++;
+        }
+    }
+
+    private static double precision(int[] counts) {
+        return counts[0] + counts[1] == 0 ? 0 : (double) counts[0] / (counts[0] + counts[1]);
+    }
+
+    private static double recall(int[] counts, int positives) {
+        return positives == 0 ? 0 : (double) counts[0] / positives;
+    }
+
+    private void export(Examples examples, float[] inputScales, byte[] hiddenWeights, int[] hiddenBiases,
+                        int[] hiddenMultipliers, byte[] outputWeights, int outputBias, float outputScale,
+                        int thresholdSum) throws IOException {
+        try (PrintWriter out = new PrintWriter(outFile, StandardCharsets.UTF_8.name())) {
+            out.println("package model.detection;");
+            out.println();
+            out.println("/**");
+            out.println(" * Parameters of the {@link QuantizedClassifier} behind {@code WHISTLE_CLASSIFIER}, generated by");
+            out.printf(Locale.ROOT, " * {@code tools.TrainClassifierMain} from %d windows (%d positive) of %d recordings at%n",
+                    examples.count, examples.positives, examples.files);
+            out.printf(Locale.ROOT, " * %d Hz, frame %d, hop %d: %d inputs, %d hidden units, threshold %s. Do not edit.%n",
+                    sampleRate, frameSize, hopSize, ClassifierEngine.INPUT_COUNT, hiddenCount, threshold);
+            out.println(" */");
+            out.println("public final class WhistleClassifierModel {");
+            out.println();
+            out.println("    private WhistleClassifierModel() {");
+            out.println("    }");
+            out.println();
+            out.println("    public static QuantizedClassifier create() {");
+            out.println("        return new QuantizedClassifier(");
+            out.printf(Locale.ROOT, "                %d, %d,%n", sampleRate, frameSize);
+            out.println("                new float[]{");
+            out.println(floats(means));
+            out.println("                },");
+            out.println("                new float[]{");
+            out.println(floats(inputScales));
+            out.println("                },");
+            out.println("                new byte[]{");
+            for (int j = 0; j < hiddenCount; j++) {
+                byte[] row = Arrays.copyOfRange(hiddenWeights, j * ClassifierEngine.INPUT_COUNT,
+                        (j + 1) * ClassifierEngine.INPUT_COUNT);
+                out.println("                        " + bytes(row) + (j < hiddenCount - 1 ? "," : ""));
+            }
+            out.println("                },");
+            out.println("                new int[]{" + ints(hiddenBiases) + "},");
+            out.println("                new int[]{" + ints(hiddenMultipliers) + "},");
+            out.println("                new byte[]{" + bytes(outputWeights) + "},");
+            out.printf(Locale.ROOT, "                %d, %sF, %d);%n", outputBias, Float.toString(outputScale), thresholdSum);
+            out.println("    }");
+            out.println("}");
+        }
+        System.out.println("wrote " + outFile);
+    }
+
+    /**
+     * Array elements, {@value #FLOATS_PER_LINE} to an indented line.
+     */
+    private static String floats(float[] values) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i % FLOATS_PER_LINE == 0) {
+                text.append(i > 0 ? ",\n" : "").append("                        ");
+            } else {
+                text.append(", ");
+            }
+            text.append(Float.toString(values[i])).append('F');
+        }
+        return text.toString();
+    }
+
+    private static String ints(int[] values) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            text.append(i > 0 ? ", " : "").append(values[i]);
+        }
+        return text.toString();
+    }
+
+    private static String bytes(byte[] values) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            text.append(i > 0 ? ", " : "").append(values[i]);
+        }
+        return text.toString();
+    }
+}